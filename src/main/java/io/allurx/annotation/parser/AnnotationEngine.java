@@ -0,0 +1,908 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser;
+
+import io.allurx.annotation.parser.cache.BoundedCache;
+import io.allurx.annotation.parser.cache.CacheSpec;
+import io.allurx.annotation.parser.cache.CacheStats;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
+import io.allurx.annotation.parser.handler.AsyncAnnotationHandler;
+import io.allurx.annotation.parser.handler.Location;
+import io.allurx.annotation.parser.handler.Memoized;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.metadata.AnnotatedTypeWalker;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.type.ArrayTypeParser;
+import io.allurx.annotation.parser.type.AsyncCalls;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.CascadeTypeParser;
+import io.allurx.annotation.parser.type.ChangeRecorder;
+import io.allurx.annotation.parser.type.CollectionTypeParser;
+import io.allurx.annotation.parser.type.EnumMapTypeParser;
+import io.allurx.annotation.parser.type.EnumSetTypeParser;
+import io.allurx.annotation.parser.type.HandlerPipeline;
+import io.allurx.annotation.parser.type.MapTypeParser;
+import io.allurx.annotation.parser.type.ObjectTypeParser;
+import io.allurx.annotation.parser.type.ParseExplainer;
+import io.allurx.annotation.parser.type.PathSelector;
+import io.allurx.annotation.parser.type.TypeParser;
+import io.allurx.annotation.parser.type.TypeVariableParser;
+import io.allurx.annotation.parser.type.WildcardTypeParser;
+import io.allurx.annotation.parser.util.ConcurrencyLimiter;
+import io.allurx.annotation.parser.util.InstanceCreator;
+import io.allurx.annotation.parser.util.InstanceRegistry;
+import io.allurx.annotation.parser.util.Singletons;
+import io.allurx.annotation.parser.util.UnableCreateInstanceException;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedType;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An immutable annotation parser that owns its {@link TypeParser} chain, instance creators, handler instances,
+ * {@link Memoized handler result caches}, {@link ConcurrencyLimiter async handler limits} and settings, so that several differently configured parsers can coexist in the same JVM without sharing
+ * mutable state. Engines are created with {@link #builder()}:
+ * <pre>
+ *     var engine = AnnotationEngine.builder()
+ *             .addTypeParser(new MyTypeParser())
+ *             .instanceCreator(Person.class, () -&gt; new Person(...))
+ *             .build();
+ *     var parsed = engine.parse(input, new AnnotatedTypeToken&lt;@Cascade Person&gt;() {
+ *     });
+ * </pre>
+ * The static methods of {@link AnnotationParser} delegate to the {@link AnnotationParser#defaultEngine() default
+ * engine}, whose type parsers are registered through {@link AnnotationParser#addTypeParser}.
+ * <p>
+ * While an engine parses, it is bound as the {@link #current() current engine} of the thread, so type parsers
+ * that recurse through {@link AnnotationParser#parse(Object, AnnotatedType)} stay within the engine that
+ * started the parse.
+ *
+ * @author allurx
+ * @see AnnotationParser
+ */
+public final class AnnotationEngine {
+
+    /**
+     * The engine that is currently parsing on this thread.
+     */
+    private static final ScopedValue<AnnotationEngine> CURRENT = ScopedValue.newInstance();
+
+    /**
+     * The classes of the {@link #defaultTypeParsers() default type parsers}.
+     */
+    private static final List<Class<?>> DEFAULT_TYPE_PARSER_CLASSES = List.of(
+            TypeVariableParser.class,
+            WildcardTypeParser.class,
+            CollectionTypeParser.class,
+            MapTypeParser.class,
+            ArrayTypeParser.class,
+            EnumSetTypeParser.class,
+            EnumMapTypeParser.class,
+            ObjectTypeParser.class,
+            CascadeTypeParser.class);
+
+    /**
+     * Binds this engine as the {@link #CURRENT current engine}, created once so that a top-level parse does not
+     * allocate a binding of its own.
+     */
+    private final ScopedValue.Carrier binding;
+    private final SortedSet<TypeParser<?, ? extends AnnotatedType>> typeParsers;
+    private final InstanceRegistry instanceRegistry;
+    private final AnnotatedTypeWalker.Visitor preparer;
+    private final ClassCache<Optional<BoundedCache<Object, Object>>> handlerCaches;
+    private final ClassValue<AtomicReference<ConcurrencyLimiter>> concurrencyLimiters = new ClassValue<>() {
+        @Override
+        protected AtomicReference<ConcurrencyLimiter> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+    private final ClassCache<Map<List<Annotation>, HandlerPipeline>> handlerPipelines;
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private volatile int fanOutThreshold;
+    private volatile SortedSet<TypeParser<?, ? extends AnnotatedType>> typeParserSnapshot;
+    private volatile List<TypeParser<?, ? extends AnnotatedType>> orderedTypeParsers;
+    private volatile boolean onlyDefaultTypeParsers;
+
+    AnnotationEngine(SortedSet<TypeParser<?, ? extends AnnotatedType>> typeParsers, InstanceRegistry instanceRegistry, Function<String, CacheSpec> cacheSpecs, int fanOutThreshold) {
+        this.typeParsers = typeParsers;
+        this.instanceRegistry = instanceRegistry;
+        this.fanOutThreshold = fanOutThreshold;
+        this.handlerCaches = new ClassCache<>(Caches.HANDLER_RESULT_CACHES, cacheSpecs.apply(Caches.HANDLER_RESULT_CACHES),
+                type -> Optional.ofNullable(type.getAnnotation(Memoized.class))
+                        .map(memoized -> resultCache(type, memoized)));
+        this.handlerPipelines = new ClassCache<>(Caches.HANDLER_PIPELINES, cacheSpecs.apply(Caches.HANDLER_PIPELINES),
+                type -> new ConcurrentHashMap<>());
+        this.preparer = new Preparer();
+        this.binding = ScopedValue.where(CURRENT, this);
+        typeParsersChanged();
+    }
+
+    /**
+     * Creates a builder preconfigured with the {@link #defaultTypeParsers() default type parsers}.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the engine that is parsing on the current thread, or the
+     * {@link AnnotationParser#defaultEngine() default engine} if no parse is in progress.
+     *
+     * @return the current engine
+     */
+    public static AnnotationEngine current() {
+        return CURRENT.orElse(AnnotationParser.defaultEngine());
+    }
+
+    /**
+     * Creates new instances of the built-in type parsers.
+     *
+     * @return the built-in type parsers
+     */
+    public static List<TypeParser<?, ? extends AnnotatedType>> defaultTypeParsers() {
+        return List.of(
+                new TypeVariableParser(),
+                new WildcardTypeParser(),
+                new CollectionTypeParser(),
+                new MapTypeParser(),
+                new ArrayTypeParser(),
+                new EnumSetTypeParser(),
+                new EnumMapTypeParser(),
+                new ObjectTypeParser(),
+                new CascadeTypeParser());
+    }
+
+    /**
+     * A wrapper method for {@link #parse(Object, AnnotatedType)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param <T>                The type of the object to be parsed.
+     * @return The parsed object.
+     */
+    public <T> T parse(T input, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return parse(input, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Parses an input with the type parsers of this engine. Every type parser that supports the input is applied
+     * in order, each receiving the result of the previous one. The annotated type is {@link AnnotatedTypes#intern
+     * interned} first, so that equal annotated types from different tokens share their cached metadata.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The parsed object.
+     */
+    public <T, AT extends AnnotatedType> T parse(T input, AT annotatedType) {
+        if (CURRENT.isBound() && CURRENT.get() == this) {
+            return applyTypeParsers(input, annotatedType);
+        }
+        if (AsyncCalls.isReplaying()) {
+            return binding.call(() -> applyTypeParsers(input, AnnotatedTypes.intern(annotatedType)));
+        }
+        long start = System.nanoTime();
+        try {
+            return binding.call(() -> applyTypeParsers(input, AnnotatedTypes.intern(annotatedType)));
+        } finally {
+            parses.increment();
+            parseNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * A wrapper method for {@link #parse(Object, AnnotatedType, PathSelector)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param selector           The branches of the input to parse.
+     * @param <T>                The type of the object to be parsed.
+     * @return The parsed object.
+     */
+    public <T> T parse(T input, AnnotatedTypeToken<T> annotatedTypeToken, PathSelector selector) {
+        return parse(input, annotatedTypeToken.getAnnotatedType(), selector);
+    }
+
+    /**
+     * Parses only the branches of an input that are selected by the {@link PathSelector}. Fields, elements and
+     * entries outside the selected branches are copied into the parsed object as they are, without walking them.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param selector      The branches of the input to parse.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The parsed object.
+     */
+    public <T, AT extends AnnotatedType> T parse(T input, AT annotatedType, PathSelector selector) {
+        return selector.apply(() -> parse(input, annotatedType));
+    }
+
+    /**
+     * A wrapper method for {@link #emit(Object, AnnotatedType, ParseSink)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param sink               The sink that receives the parsed form of the object.
+     * @param <T>                The type of the object to be parsed.
+     */
+    public <T> void emit(T input, AnnotatedTypeToken<T> annotatedTypeToken, ParseSink sink) {
+        emit(input, annotatedTypeToken.getAnnotatedType(), sink);
+    }
+
+    /**
+     * Parses an input and reports the result to a sink as it goes, instead of building a parsed copy, so that a
+     * serializer can write the parsed form directly. The input is walked with the same rules as
+     * {@link #parse(Object, AnnotatedType)}: the type parsers that support the input are applied in order, except
+     * that the last one {@link TypeParser#emit emits} its result rather than returning it. An
+     * {@link ObjectTypeParser} that finds no handler annotation on the type is skipped, so containers and
+     * {@link Cascade} objects without handlers of their own are streamed by their own type parser.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param sink          The sink that receives the parsed form of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @see ParseSink
+     */
+    public <T, AT extends AnnotatedType> void emit(T input, AT annotatedType, ParseSink sink) {
+        if (CURRENT.isBound() && CURRENT.get() == this) {
+            emitWithTypeParsers(input, annotatedType, sink);
+        } else {
+            binding.run(() -> emitWithTypeParsers(input, AnnotatedTypes.intern(annotatedType), sink));
+        }
+    }
+
+    /**
+     * Same as {@link #emit(Object, AnnotatedType, ParseSink)}, but only walks the branches selected by the
+     * {@link PathSelector}. Values outside the selected branches are reported as they are.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param sink          The sink that receives the parsed form of the object.
+     * @param selector      The branches of the input to parse.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     */
+    public <T, AT extends AnnotatedType> void emit(T input, AT annotatedType, ParseSink sink, PathSelector selector) {
+        selector.apply(() -> {
+            emit(input, annotatedType, sink);
+            return null;
+        });
+    }
+
+    /**
+     * A wrapper method for {@link #changes(Object, AnnotatedType)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param <T>                The type of the object to be parsed.
+     * @return The changes the parse would make, in traversal order.
+     */
+    public <T> List<Change> changes(T input, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return changes(input, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Parses an input and returns only the values that handlers changed, with their paths, original values,
+     * new values and annotations, for example to audit which values were masked. The input is
+     * {@link #emit emitted} to a {@link ChangeRecorder}, so no parsed copy is built and the cost is essentially
+     * that of the handlers.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The changes the parse would make, in traversal order.
+     */
+    public <T, AT extends AnnotatedType> List<Change> changes(T input, AT annotatedType) {
+        return ChangeRecorder.record(sink -> emit(input, annotatedType, sink));
+    }
+
+    /**
+     * Same as {@link #changes(Object, AnnotatedType)}, but only walks the branches selected by the
+     * {@link PathSelector}.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param selector      The branches of the input to parse.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The changes the parse would make in the selected branches, in traversal order.
+     */
+    public <T, AT extends AnnotatedType> List<Change> changes(T input, AT annotatedType, PathSelector selector) {
+        return selector.apply(() -> changes(input, annotatedType));
+    }
+
+    /**
+     * A wrapper method for {@link #explain(Object, AnnotatedType)} without a sample.
+     *
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the type.
+     * @param <T>                The type to be explained.
+     * @return The root of the explanation.
+     */
+    public <T> Explanation explain(AnnotatedTypeToken<T> annotatedTypeToken) {
+        return explain(null, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * A wrapper method for {@link #explain(Object, AnnotatedType)}.
+     *
+     * @param sample             A sample input, or null.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the type.
+     * @param <T>                The type to be explained.
+     * @return The root of the explanation.
+     */
+    public <T> Explanation explain(T sample, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return explain(sample, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Explains how this engine parses a type, as a tree of the paths that are walked. Each node tells which
+     * type parsers claim the values at its path, which handlers are bound to them and at which {@link Location}s
+     * their annotations are resolved, and whether no handler is applied anywhere below it. With a sample input,
+     * the sample is walked without being parsed, and each node also counts the values, reflective accesses and
+     * copies of its subtree, which shows where a parse of similar inputs spends its time and whether it copies
+     * branches without handlers. Without a sample, the tree is predicted from the declared type and the built-in
+     * type parsers.
+     *
+     * @param sample        A sample input, or null to explain the declared type only.
+     * @param annotatedType The {@link AnnotatedType} of the type.
+     * @param <T>           The type to be explained.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The root of the explanation.
+     * @see ParseExplainer
+     */
+    public <T, AT extends AnnotatedType> Explanation explain(T sample, AT annotatedType) {
+        return ParseExplainer.explain(this, sample, annotatedType);
+    }
+
+    /**
+     * A wrapper method for {@link #parseAsync(Object, AnnotatedType)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param <T>                The type of the object to be parsed.
+     * @return A future that completes with the parsed object.
+     */
+    public <T> CompletableFuture<T> parseAsync(T input, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return parseAsync(input, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Parses an input like {@link #parse(Object, AnnotatedType)}, but issues the calls of all
+     * {@link AsyncAnnotationHandler async handlers} concurrently, within the
+     * {@link AsyncAnnotationHandler#maxConcurrency() concurrency limit} of each handler, instead of waiting for
+     * each call in turn. The parsed object is assembled once the calls have completed, on a virtual thread, by
+     * replaying the parse with the results of the calls; see {@link AsyncCalls} for how. Every handler, synchronous
+     * or async, is still called once per value, and the parse is counted once in the
+     * {@link #parseStatistics() parse statistics}.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return A future that completes with the parsed object, or exceptionally if the parse or a call failed.
+     */
+    public <T, AT extends AnnotatedType> CompletableFuture<T> parseAsync(T input, AT annotatedType) {
+        return AsyncCalls.run(() -> parse(input, annotatedType));
+    }
+
+    /**
+     * A wrapper method for {@link #prepare(AnnotatedType...)}.
+     *
+     * @param annotatedTypeTokens the {@link AnnotatedTypeToken}s of the types that will be parsed
+     */
+    public void prepare(AnnotatedTypeToken<?>... annotatedTypeTokens) {
+        prepare(Arrays.stream(annotatedTypeTokens)
+                .map(AnnotatedTypeToken::getAnnotatedType)
+                .toArray(AnnotatedType[]::new));
+    }
+
+    /**
+     * Eagerly resolves everything that the first parse of the specified types would otherwise resolve lazily,
+     * so that this cost is paid before traffic arrives instead of showing up as latency spikes:
+     * <ul>
+     *     <li>the {@link CascadeMetadata} of every reachable {@link Cascade} class,</li>
+     *     <li>the instance creators of cascaded classes and of declared concrete containers,</li>
+     *     <li>the singleton marks of cascaded classes,</li>
+     *     <li>the handler instances of every reachable {@link Parse} annotation and their {@link Memoized result caches}.</li>
+     * </ul>
+     * The types are walked with {@link AnnotatedTypeWalker}. Calling this method during a JDK AOT cache training
+     * run ({@code -XX:AOTCacheOutput}) also loads and links all involved classes, so they are served from the
+     * AOT cache at startup and re-running this method there only rebuilds the cached metadata.
+     *
+     * @param annotatedTypes the {@link AnnotatedType}s of the types that will be parsed
+     * @throws UnableCreateInstanceException if a handler or cascaded class cannot be created
+     */
+    public void prepare(AnnotatedType... annotatedTypes) {
+        AnnotatedTypeWalker.walk(preparer, Arrays.stream(annotatedTypes).map(AnnotatedTypes::intern).toArray(AnnotatedType[]::new));
+    }
+
+    /**
+     * Same as {@link #prepare(AnnotatedType...)}, treating each class as if it were annotated with
+     * {@link Cascade @Cascade(inherited = true)}.
+     *
+     * @param classes the classes that will be parsed with {@link Cascade}
+     */
+    public void prepare(Class<?>... classes) {
+        AnnotatedTypeWalker.walk(preparer, classes);
+    }
+
+    /**
+     * The type parsers of this engine, in execution order, as an unmodifiable snapshot taken whenever they change.
+     * Type parsers are added and removed through {@link Builder#addTypeParser} and {@link Builder#removeTypeParser},
+     * or through {@link AnnotationParser#addTypeParser} and {@link AnnotationParser#removeTypeParser} for the
+     * {@link AnnotationParser#defaultEngine() default engine}.
+     *
+     * @return the type parsers of this engine
+     */
+    public SortedSet<TypeParser<?, ? extends AnnotatedType>> typeParsers() {
+        return typeParserSnapshot;
+    }
+
+    /**
+     * An immutable snapshot of the type parsers of this engine, in execution order, taken whenever they change. Unlike
+     * {@link #typeParsers()}, the snapshot can be iterated by index without synchronization and without allocating
+     * an iterator, so it is what the hot paths of a parse iterate.
+     *
+     * @return the type parsers of this engine, in execution order
+     */
+    public List<TypeParser<?, ? extends AnnotatedType>> orderedTypeParsers() {
+        return orderedTypeParsers;
+    }
+
+    /**
+     * Whether every type parser of this engine is an instance of one of the classes of the
+     * {@link #defaultTypeParsers() default type parsers}, so that the type parsers that support a value are known
+     * from its type alone. It is recomputed with the {@link #typeParsers() snapshot} of the type parsers, which cannot
+     * be changed behind it.
+     *
+     * @return true if this engine only has default type parsers, false otherwise
+     */
+    public boolean hasOnlyDefaultTypeParsers() {
+        return onlyDefaultTypeParsers;
+    }
+
+    /**
+     * Recomputes what is derived from the type parsers after they have changed.
+     */
+    void typeParsersChanged() {
+        synchronized (typeParsers) {
+            typeParserSnapshot = Collections.unmodifiableSortedSet(new TreeSet<>(typeParsers));
+            orderedTypeParsers = List.copyOf(typeParsers);
+            onlyDefaultTypeParsers = typeParsers.stream().allMatch(tp -> DEFAULT_TYPE_PARSER_CLASSES.contains(tp.getClass()));
+        }
+    }
+
+    /**
+     * The registry of instance creators and handler instances of this engine.
+     *
+     * @return the registry of this engine
+     */
+    public InstanceRegistry instanceRegistry() {
+        return instanceRegistry;
+    }
+
+    /**
+     * Returns the cache of the results of the specified handler class if it is annotated with {@link Memoized},
+     * creating it on first use.
+     *
+     * @param handlerClass the handler class
+     * @return the result cache of the handler class, or empty if the handler is not memoized
+     */
+    public Optional<BoundedCache<Object, Object>> handlerCache(Class<?> handlerClass) {
+        return handlerCaches.get(handlerClass);
+    }
+
+    /**
+     * Creates the result cache of a memoized handler class. The attributes of its {@link Memoized} annotation are
+     * checked first, since a negative or overflowing time-to-live would otherwise give a cache that never hits and a
+     * unit of estimated duration an exception of {@link Duration} on the first parse that reaches the handler.
+     *
+     * @param handlerClass the handler class
+     * @param memoized     the {@link Memoized} annotation of the handler class
+     * @return the result cache of the handler class
+     * @throws IllegalArgumentException if an attribute of the annotation is invalid
+     */
+    private static BoundedCache<Object, Object> resultCache(Class<?> handlerClass, Memoized memoized) {
+        if (memoized.maximumSize() < 1) {
+            throw new IllegalArgumentException("The maximumSize of @Memoized on %s must be at least 1 but was %d.".formatted(handlerClass, memoized.maximumSize()));
+        }
+        if (memoized.expireAfterWrite() < 0) {
+            throw new IllegalArgumentException("The expireAfterWrite of @Memoized on %s must not be negative but was %d.".formatted(handlerClass, memoized.expireAfterWrite()));
+        }
+        if (memoized.unit().isDurationEstimated() && memoized.unit() != ChronoUnit.DAYS) {
+            throw new IllegalArgumentException("The unit of @Memoized on %s must be DAYS or shorter but was %s.".formatted(handlerClass, memoized.unit()));
+        }
+        Duration expireAfterWrite;
+        try {
+            expireAfterWrite = Duration.of(memoized.expireAfterWrite(), memoized.unit());
+            expireAfterWrite.toNanos();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("The expireAfterWrite of @Memoized on %s is too long: %d %s.".formatted(handlerClass, memoized.expireAfterWrite(), memoized.unit()), e);
+        }
+        return new BoundedCache<>(memoized.maximumSize(), expireAfterWrite, memoized.evictionPolicy());
+    }
+
+    /**
+     * Returns the handlers of the specified annotated type composed into one {@link HandlerPipeline}, compiling it on
+     * first use. The pipeline holds the {@link io.allurx.annotation.parser.util.Singleton singleton} instances of its
+     * handlers in the registry of this engine, which are shared by all threads and values, see
+     * {@link io.allurx.annotation.parser.handler.AnnotationHandler}.
+     * <p>
+     * A pipeline only depends on the declared annotations of the annotated type, so annotated types with equal
+     * annotations share one pipeline. Pipelines are cached per first {@link Parse} annotation type in the
+     * {@link Caches#HANDLER_PIPELINES} cache rather than by the annotated type, which refers to the class that declares
+     * it, so the cache does not keep that class or its class loader reachable. The annotations of an
+     * {@link AnnotatedTypes#intern interned} annotated type are a key with a precomputed hash code.
+     *
+     * @param annotatedType the annotated type
+     * @return the handler pipeline of the annotated type
+     */
+    public HandlerPipeline handlerPipeline(AnnotatedType annotatedType) {
+        var annotations = AnnotatedTypes.annotations(annotatedType);
+        for (var annotation : annotations) {
+            if (annotation.annotationType().isAnnotationPresent(Parse.class)) {
+                var pipelines = handlerPipelines.get(annotation.annotationType());
+                var pipeline = pipelines.get(annotations);
+                return pipeline != null
+                        ? pipeline
+                        : pipelines.computeIfAbsent(annotations, k -> HandlerPipeline.compile(this, annotatedType));
+            }
+        }
+        return HandlerPipeline.empty();
+    }
+
+    /**
+     * The caches of this engine by name: the {@link Caches#HANDLER_PIPELINES handler pipelines}, the
+     * {@link Caches#HANDLER_RESULT_CACHES handler result caches} and the
+     * {@link Caches#INSTANCE_CREATORS discovered instance creators} of its registry.
+     *
+     * @return the caches of this engine
+     */
+    public Map<String, ClassCache<?>> caches() {
+        return Map.of(Caches.HANDLER_PIPELINES, handlerPipelines,
+                Caches.HANDLER_RESULT_CACHES, handlerCaches,
+                Caches.INSTANCE_CREATORS, instanceRegistry.instanceCreatorsCache());
+    }
+
+    /**
+     * A snapshot of the statistics of the {@link #caches() caches} of this engine, by name.
+     *
+     * @return the statistics of the caches of this engine
+     */
+    public Map<String, CacheStats> cacheStats() {
+        var stats = new TreeMap<String, CacheStats>();
+        caches().forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+
+    /**
+     * A snapshot of the number of parses, the number of parsed values and the time spent parsing since this engine
+     * was created or its statistics were {@link #resetParseStatistics() reset}.
+     *
+     * @return the parse statistics of this engine
+     */
+    public ParseStatistics parseStatistics() {
+        return new ParseStatistics(parses.sum(), nodes.sum(), Duration.ofNanos(parseNanos.sum()));
+    }
+
+    /**
+     * Resets the {@link #parseStatistics() parse statistics} of this engine.
+     */
+    public void resetParseStatistics() {
+        parses.reset();
+        nodes.reset();
+        parseNanos.reset();
+    }
+
+    /**
+     * Counts values that a type parser parsed without going through {@link #parse(Object, AnnotatedType)}, for
+     * example a column of values handled in one batch, in the {@link #parseStatistics() parse statistics}.
+     *
+     * @param count the number of values
+     */
+    public void recordNodes(long count) {
+        nodes.add(count);
+    }
+
+    /**
+     * The minimum number of fields or record components of a {@link Cascade} object that are parsed concurrently, see
+     * {@link Builder#fanOut(int)}.
+     *
+     * @return the fan-out threshold, or 0 if the fields of cascaded objects are always parsed sequentially
+     */
+    public int fanOutThreshold() {
+        return fanOutThreshold;
+    }
+
+    /**
+     * Changes the minimum number of fields or record components of a {@link Cascade} object that are parsed
+     * concurrently, see {@link Builder#fanOut(int)}. Parses that are in progress keep the threshold they started
+     * with for each object.
+     *
+     * @param threshold the minimum number of fields to parse concurrently, at least 2, or 0 to parse fields
+     *                  sequentially
+     * @throws IllegalArgumentException if the threshold is negative or 1
+     */
+    public void fanOutThreshold(int threshold) {
+        this.fanOutThreshold = checkFanOutThreshold(threshold);
+    }
+
+    private static int checkFanOutThreshold(int threshold) {
+        if (threshold < 0 || threshold == 1) {
+            throw new IllegalArgumentException("The fan-out threshold must be 0 or at least 2 but was %d.".formatted(threshold));
+        }
+        return threshold;
+    }
+
+    /**
+     * Continues a parse of this engine on another thread, such as the parse of a field of a cascaded object that is
+     * {@link Builder#fanOut(int) fanned out}, with this engine as the {@link #current() current engine}. Unlike
+     * {@link #parse(Object, AnnotatedType)}, it is not counted as a parse in the
+     * {@link #parseStatistics() parse statistics}.
+     *
+     * @param parse the part of the parse to run
+     * @param <T>   the type of the parsed object
+     * @return the result of the parse
+     */
+    public <T> T callAsCurrent(Supplier<T> parse) {
+        return CURRENT.isBound() && CURRENT.get() == this
+                ? parse.get()
+                : binding.call(parse::get);
+    }
+
+    /**
+     * Returns the limiter of the concurrent calls of the specified async handler's class, creating it with the
+     * handler's {@link AsyncAnnotationHandler#maxConcurrency() maximum concurrency} on first use.
+     *
+     * @param handler the async handler
+     * @return the concurrency limiter of the handler class
+     */
+    public ConcurrencyLimiter concurrencyLimiter(AsyncAnnotationHandler<?, ?, ?> handler) {
+        var reference = concurrencyLimiters.get(handler.getClass());
+        var limiter = reference.get();
+        if (limiter == null) {
+            reference.compareAndSet(null, new ConcurrencyLimiter(handler.maxConcurrency()));
+            limiter = reference.get();
+        }
+        return limiter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, AT extends AnnotatedType> T applyTypeParsers(T input, AT annotatedType) {
+        if (!AsyncCalls.isReplaying()) {
+            nodes.increment();
+        }
+        var typeParsers = orderedTypeParsers;
+        T value = input;
+        for (int i = 0; i < typeParsers.size(); i++) {
+            var typeParser = typeParsers.get(i);
+            if (typeParser.support(input, annotatedType)) {
+                value = ((TypeParser<T, AT>) typeParser).parse(value, annotatedType);
+            }
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, AT extends AnnotatedType> void emitWithTypeParsers(T input, AT annotatedType, ParseSink sink) {
+        T value = input;
+        TypeParser<T, AT> emitter = null;
+        for (var typeParser : orderedTypeParsers) {
+            if (!typeParser.support(input, annotatedType)
+                    || typeParser instanceof ObjectTypeParser && !ObjectTypeParser.hasParseAnnotations(annotatedType)) {
+                continue;
+            }
+            if (emitter != null) {
+                value = emitter.parse(value, annotatedType);
+            }
+            emitter = (TypeParser<T, AT>) typeParser;
+        }
+        if (emitter == null) {
+            sink.value(value);
+        } else {
+            emitter.emit(value, annotatedType, sink);
+        }
+    }
+
+    /**
+     * Resolves everything a parse of a walked type would otherwise resolve on first use.
+     */
+    private final class Preparer implements AnnotatedTypeWalker.Visitor {
+
+        @Override
+        public void visitParse(Parse parse, AnnotatedType annotatedType) {
+            instanceRegistry.create(parse.handler());
+            handlerCache(parse.handler());
+            handlerPipeline(annotatedType);
+        }
+
+        @Override
+        public void visitContainer(Class<?> containerClass) {
+            if (Collection.class.isAssignableFrom(containerClass) || Map.class.isAssignableFrom(containerClass)) {
+                instanceRegistry.find(containerClass);
+            }
+        }
+
+        @Override
+        public void visitCascade(CascadeMetadata cascadeMetadata) {
+            if (!cascadeMetadata.isRecord() && !cascadeMetadata.isEnum()) {
+                instanceRegistry.find(cascadeMetadata.type());
+                Singletons.isSingleton(cascadeMetadata.type());
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link AnnotationEngine}.
+     */
+    public static final class Builder {
+
+        private final SortedSet<TypeParser<?, ? extends AnnotatedType>> typeParsers = new TreeSet<>(defaultTypeParsers());
+        private final List<Consumer<InstanceRegistry>> registrations = new ArrayList<>();
+        private final Map<String, CacheSpec> cacheSpecs = new HashMap<>();
+        private InstanceRegistry instanceRegistry;
+        private boolean reflectionFree;
+        private int fanOutThreshold;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a type parser. A type parser whose {@link TypeParser#order() order} is already used is ignored.
+         *
+         * @param typeParser the type parser to add
+         * @return this builder
+         */
+        public Builder addTypeParser(TypeParser<?, ? extends AnnotatedType> typeParser) {
+            typeParsers.add(typeParser);
+            return this;
+        }
+
+        /**
+         * Removes the type parser with the same {@link TypeParser#order() order} as the specified one.
+         *
+         * @param typeParser the type parser to remove
+         * @return this builder
+         */
+        public Builder removeTypeParser(TypeParser<?, ? extends AnnotatedType> typeParser) {
+            typeParsers.remove(typeParser);
+            return this;
+        }
+
+        /**
+         * Uses the specified registry instead of a new, empty one. Sharing a registry between engines shares
+         * their instance creators and handler instances.
+         *
+         * @param instanceRegistry the registry to use
+         * @return this builder
+         */
+        public Builder instanceRegistry(InstanceRegistry instanceRegistry) {
+            this.instanceRegistry = instanceRegistry;
+            return this;
+        }
+
+        /**
+         * Registers an instance creator in the registry of the engine.
+         *
+         * @param clazz           the specified {@link Class}
+         * @param instanceCreator the instance creator for the specified {@link Class}
+         * @param <T>             the type of the object created by the instance creator
+         * @return this builder
+         */
+        public <T> Builder instanceCreator(Class<T> clazz, InstanceCreator<T> instanceCreator) {
+            registrations.add(registry -> registry.add(clazz, instanceCreator));
+            return this;
+        }
+
+        /**
+         * Enables or disables reflection-free mode of the new registry created when no
+         * {@link #instanceRegistry(InstanceRegistry) registry} is specified.
+         *
+         * @param reflectionFree whether only registered instance creators are used
+         * @return this builder
+         * @see InstanceRegistry#reflectionFree(boolean)
+         */
+        public Builder reflectionFree(boolean reflectionFree) {
+            this.reflectionFree = reflectionFree;
+            return this;
+        }
+
+        /**
+         * Parses the fields and record components of a {@link Cascade} object concurrently, each on a virtual thread
+         * of its own, if at least the specified number of them have a value to parse. The object is assembled once
+         * all of them are parsed, so its latency is bounded by its slowest field rather than the sum of all fields,
+         * which pays off when handlers call slow services. If the parse of one field fails, the parses of the other
+         * fields are interrupted and the failure is rethrown. Objects with fewer fields to parse, parses
+         * {@link AnnotationEngine#parseAsync(Object, AnnotatedType) driven by async handlers} and objects parsed while
+         * {@link AnnotationEngine#changes(Object, AnnotatedType) changes are recorded} stay sequential.
+         *
+         * @param threshold the minimum number of fields to parse concurrently, at least 2, or 0 to parse fields
+         *                  sequentially, which is the default
+         * @return this builder
+         * @throws IllegalArgumentException if the threshold is negative or 1
+         */
+        public Builder fanOut(int threshold) {
+            this.fanOutThreshold = checkFanOutThreshold(threshold);
+            return this;
+        }
+
+        /**
+         * Sets the maximum size and eviction policy of one of the caches of the engine, which are otherwise configured
+         * like the shared caches of the same name, see {@link Caches#spec(String)}. The
+         * {@link Caches#INSTANCE_CREATORS} cache can only be configured for the new registry created when no
+         * {@link #instanceRegistry(InstanceRegistry) registry} is specified.
+         *
+         * @param name the name of the cache: {@link Caches#HANDLER_PIPELINES}, {@link Caches#HANDLER_RESULT_CACHES}
+         *             or {@link Caches#INSTANCE_CREATORS}
+         * @param spec the maximum size and eviction policy of the cache
+         * @return this builder
+         * @throws IllegalArgumentException if the engine has no cache of the specified name or the spec is null
+         */
+        public Builder cache(String name, CacheSpec spec) {
+            if (!Caches.HANDLER_PIPELINES.equals(name) && !Caches.HANDLER_RESULT_CACHES.equals(name) && !Caches.INSTANCE_CREATORS.equals(name)) {
+                throw new IllegalArgumentException("An engine has no cache named %s.".formatted(name));
+            }
+            if (spec == null) {
+                throw new IllegalArgumentException("The cache specification must not be null.");
+            }
+            cacheSpecs.put(name, spec);
+            return this;
+        }
+
+        /**
+         * Builds the engine.
+         *
+         * @return a new engine
+         */
+        public AnnotationEngine build() {
+            var specs = Map.copyOf(cacheSpecs);
+            Function<String, CacheSpec> cacheSpecs = name -> specs.containsKey(name) ? specs.get(name) : Caches.spec(name);
+            var registry = instanceRegistry != null ? instanceRegistry : new InstanceRegistry(reflectionFree, cacheSpecs.apply(Caches.INSTANCE_CREATORS));
+            registrations.forEach(registration -> registration.accept(registry));
+            return new AnnotationEngine(Collections.unmodifiableSortedSet(new TreeSet<>(typeParsers)), registry, cacheSpecs, fanOutThreshold);
+        }
+    }
+}
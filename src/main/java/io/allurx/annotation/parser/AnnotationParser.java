@@ -15,23 +15,22 @@
  */
 package io.allurx.annotation.parser;
 
-import io.allurx.annotation.parser.type.ArrayTypeParser;
-import io.allurx.annotation.parser.type.CascadeTypeParser;
-import io.allurx.annotation.parser.type.CollectionTypeParser;
-import io.allurx.annotation.parser.type.MapTypeParser;
-import io.allurx.annotation.parser.type.ObjectTypeParser;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.PathSelector;
 import io.allurx.annotation.parser.type.Sortable;
 import io.allurx.annotation.parser.type.TypeParser;
-import io.allurx.annotation.parser.type.TypeVariableParser;
-import io.allurx.annotation.parser.type.WildcardTypeParser;
+import io.allurx.annotation.parser.util.InstanceRegistry;
 import io.allurx.kit.base.reflection.AnnotatedTypeToken;
 
 import java.lang.reflect.AnnotatedType;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -39,11 +38,19 @@ import java.util.concurrent.ThreadLocalRandom;
  * <ol>
  *     <li>{@link AnnotationParser#parse(Object, AnnotatedTypeToken) Parses an input based on the AnnotatedTypeToken}</li>
  *     <li>{@link AnnotationParser#parse(Object, AnnotatedType) Parses an input based on the AnnotatedType}</li>
+ *     <li>{@link AnnotationParser#parse(Object, AnnotatedType, PathSelector) Parses the selected branches of an input}</li>
+ *     <li>{@link AnnotationParser#emit(Object, AnnotatedType, ParseSink) Reports the parsed form of an input to a sink}</li>
+ *     <li>{@link AnnotationParser#changes(Object, AnnotatedType) Lists the values a parse would change}</li>
+ *     <li>{@link AnnotationParser#explain(Object, AnnotatedType) Explains how a type is parsed}</li>
+ *     <li>{@link AnnotationParser#parseAsync(Object, AnnotatedType) Parses an input, calling async handlers concurrently}</li>
+ *     <li>{@link AnnotationParser#prepare(AnnotatedTypeToken[]) Eagerly resolves metadata, creators and handlers of types}</li>
  *     <li>{@link AnnotationParser#addTypeParser Adds a custom type parser}</li>
  *     <li>{@link AnnotationParser#removeTypeParser Removes a registered type parser}</li>
  *     <li>{@link AnnotationParser#randomOrder Generates a random order value that does not conflict with registered type parsers' order}</li>
  *     <li>{@link AnnotationParser#typeParsers Retrieves all currently registered type parsers}</li>
  * </ol>
+ * All methods operate on the {@link #defaultEngine() default engine}. Use {@link AnnotationEngine#builder()} to create
+ * isolated engines with their own type parsers, instance creators and handler instances.
  *
  * @author allurx
  */
@@ -55,15 +62,20 @@ public final class AnnotationParser {
     private static final SortedSet<TypeParser<?, ? extends AnnotatedType>> TYPE_PARSERS =
             Collections.synchronizedSortedSet(new TreeSet<>());
 
+    /**
+     * The engine behind the static methods, backed by {@link #TYPE_PARSERS} and the global instance registry.
+     */
+    private static final AnnotationEngine DEFAULT_ENGINE = new AnnotationEngine(TYPE_PARSERS, InstanceRegistry.global(), Caches::spec, 0);
+
+    // Share the caches of the default engine
+    static {
+        Caches.register(DEFAULT_ENGINE.caches().get(Caches.HANDLER_PIPELINES));
+        Caches.register(DEFAULT_ENGINE.caches().get(Caches.HANDLER_RESULT_CACHES));
+    }
+
     // Register default type parsers
     static {
-        addTypeParser(new TypeVariableParser());
-        addTypeParser(new WildcardTypeParser());
-        addTypeParser(new CollectionTypeParser());
-        addTypeParser(new MapTypeParser());
-        addTypeParser(new ArrayTypeParser());
-        addTypeParser(new ObjectTypeParser());
-        addTypeParser(new CascadeTypeParser());
+        AnnotationEngine.defaultTypeParsers().forEach(AnnotationParser::addTypeParser);
     }
 
     private AnnotationParser() {
@@ -84,6 +96,8 @@ public final class AnnotationParser {
     /**
      * Parses an input that may inherit special data types, such as {@link Collection} or {@link Map}.
      * This method iterates through all registered parsers and uses any parser that supports the given input.
+     * When called by a type parser during a parse, the input is parsed by the {@link AnnotationEngine#current()
+     * current engine}; otherwise by the {@link #defaultEngine() default engine}.
      *
      * @param input         The input object to be parsed.
      * @param annotatedType The {@link AnnotatedType} of the object.
@@ -91,11 +105,198 @@ public final class AnnotationParser {
      * @param <AT>          The type of the {@link AnnotatedType}.
      * @return The parsed object.
      */
-    @SuppressWarnings("unchecked")
     public static <T, AT extends AnnotatedType> T parse(T input, AT annotatedType) {
-        return TYPE_PARSERS.stream()
-                .filter(tp -> tp.support(input, annotatedType))
-                .reduce(input, (v, tp) -> ((TypeParser<T, AT>) tp).parse(v, annotatedType), (v1, v2) -> null);
+        return AnnotationEngine.current().parse(input, annotatedType);
+    }
+
+    /**
+     * A wrapper method for {@link #parse(Object, AnnotatedType, PathSelector)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param selector           The branches of the input to parse.
+     * @param <T>                The type of the object to be parsed.
+     * @return The parsed object.
+     */
+    public static <T> T parse(T input, AnnotatedTypeToken<T> annotatedTypeToken, PathSelector selector) {
+        return parse(input, annotatedTypeToken.getAnnotatedType(), selector);
+    }
+
+    /**
+     * Parses only the branches of an input that are selected by the {@link PathSelector}, with the
+     * {@link AnnotationEngine#current() current engine}.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param selector      The branches of the input to parse.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The parsed object.
+     * @see AnnotationEngine#parse(Object, AnnotatedType, PathSelector)
+     */
+    public static <T, AT extends AnnotatedType> T parse(T input, AT annotatedType, PathSelector selector) {
+        return AnnotationEngine.current().parse(input, annotatedType, selector);
+    }
+
+    /**
+     * A wrapper method for {@link #emit(Object, AnnotatedType, ParseSink)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param sink               The sink that receives the parsed form of the object.
+     * @param <T>                The type of the object to be parsed.
+     */
+    public static <T> void emit(T input, AnnotatedTypeToken<T> annotatedTypeToken, ParseSink sink) {
+        emit(input, annotatedTypeToken.getAnnotatedType(), sink);
+    }
+
+    /**
+     * Parses an input with the {@link AnnotationEngine#current() current engine} and reports the result to a sink
+     * instead of returning a parsed copy. Type parsers recurse into nested values in this mode through this method.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param sink          The sink that receives the parsed form of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @see AnnotationEngine#emit(Object, AnnotatedType, ParseSink)
+     */
+    public static <T, AT extends AnnotatedType> void emit(T input, AT annotatedType, ParseSink sink) {
+        AnnotationEngine.current().emit(input, annotatedType, sink);
+    }
+
+    /**
+     * A wrapper method for {@link #changes(Object, AnnotatedType)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param <T>                The type of the object to be parsed.
+     * @return The changes the parse would make, in traversal order.
+     */
+    public static <T> List<Change> changes(T input, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return changes(input, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Returns the values that a parse of the input with the {@link AnnotationEngine#current() current engine}
+     * would change, without building a parsed copy.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The changes the parse would make, in traversal order.
+     * @see AnnotationEngine#changes(Object, AnnotatedType)
+     */
+    public static <T, AT extends AnnotatedType> List<Change> changes(T input, AT annotatedType) {
+        return AnnotationEngine.current().changes(input, annotatedType);
+    }
+
+    /**
+     * A wrapper method for {@link #explain(Object, AnnotatedType)} without a sample.
+     *
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the type.
+     * @param <T>                The type to be explained.
+     * @return The root of the explanation.
+     */
+    public static <T> Explanation explain(AnnotatedTypeToken<T> annotatedTypeToken) {
+        return explain(null, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * A wrapper method for {@link #explain(Object, AnnotatedType)}.
+     *
+     * @param sample             A sample input, or null.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the type.
+     * @param <T>                The type to be explained.
+     * @return The root of the explanation.
+     */
+    public static <T> Explanation explain(T sample, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return explain(sample, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Explains how the {@link AnnotationEngine#current() current engine} parses a type, optionally counting the
+     * parse of a sample input.
+     *
+     * @param sample        A sample input, or null to explain the declared type only.
+     * @param annotatedType The {@link AnnotatedType} of the type.
+     * @param <T>           The type to be explained.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return The root of the explanation.
+     * @see AnnotationEngine#explain(Object, AnnotatedType)
+     */
+    public static <T, AT extends AnnotatedType> Explanation explain(T sample, AT annotatedType) {
+        return AnnotationEngine.current().explain(sample, annotatedType);
+    }
+
+    /**
+     * A wrapper method for {@link #parseAsync(Object, AnnotatedType)}.
+     *
+     * @param input              The input object to be parsed.
+     * @param annotatedTypeToken The {@link AnnotatedTypeToken} of the object.
+     * @param <T>                The type of the object to be parsed.
+     * @return A future that completes with the parsed object.
+     */
+    public static <T> CompletableFuture<T> parseAsync(T input, AnnotatedTypeToken<T> annotatedTypeToken) {
+        return parseAsync(input, annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Parses an input with the {@link AnnotationEngine#current() current engine}, issuing the calls of all
+     * async handlers concurrently.
+     *
+     * @param input         The input object to be parsed.
+     * @param annotatedType The {@link AnnotatedType} of the object.
+     * @param <T>           The type of the object to be parsed.
+     * @param <AT>          The type of the {@link AnnotatedType}.
+     * @return A future that completes with the parsed object.
+     * @see AnnotationEngine#parseAsync(Object, AnnotatedType)
+     */
+    public static <T, AT extends AnnotatedType> CompletableFuture<T> parseAsync(T input, AT annotatedType) {
+        return AnnotationEngine.current().parseAsync(input, annotatedType);
+    }
+
+    /**
+     * A wrapper method for {@link #prepare(AnnotatedType...)}.
+     *
+     * @param annotatedTypeTokens the {@link AnnotatedTypeToken}s of the types that will be parsed
+     */
+    public static void prepare(AnnotatedTypeToken<?>... annotatedTypeTokens) {
+        DEFAULT_ENGINE.prepare(annotatedTypeTokens);
+    }
+
+    /**
+     * Eagerly resolves the metadata, instance creators and handler instances of the specified types in the
+     * default engine.
+     *
+     * @param annotatedTypes the {@link AnnotatedType}s of the types that will be parsed
+     * @see AnnotationEngine#prepare(AnnotatedType...)
+     */
+    public static void prepare(AnnotatedType... annotatedTypes) {
+        DEFAULT_ENGINE.prepare(annotatedTypes);
+    }
+
+    /**
+     * Eagerly resolves the metadata, instance creators and handler instances of the specified classes in the
+     * default engine.
+     *
+     * @param classes the classes that will be parsed with {@link Cascade}
+     * @see AnnotationEngine#prepare(Class...)
+     */
+    public static void prepare(Class<?>... classes) {
+        DEFAULT_ENGINE.prepare(classes);
+    }
+
+    /**
+     * The engine that the static methods of this class delegate to. Its type parsers are the ones registered
+     * through {@link #addTypeParser} and its instances are those of the global
+     * {@link InstanceRegistry#global() instance registry}.
+     *
+     * @return the default engine
+     */
+    public static AnnotationEngine defaultEngine() {
+        return DEFAULT_ENGINE;
     }
 
     /**
@@ -108,6 +309,7 @@ public final class AnnotationParser {
      */
     public static void addTypeParser(TypeParser<?, ? extends AnnotatedType> typeParser) {
         TYPE_PARSERS.add(typeParser);
+        DEFAULT_ENGINE.typeParsersChanged();
     }
 
     /**
@@ -117,6 +319,7 @@ public final class AnnotationParser {
      */
     public static void removeTypeParser(TypeParser<?, ? extends AnnotatedType> typeParser) {
         TYPE_PARSERS.remove(typeParser);
+        DEFAULT_ENGINE.typeParsersChanged();
     }
 
     /**
@@ -138,12 +341,11 @@ public final class AnnotationParser {
     /**
      * Retrieves all currently registered type parsers.
      *
-     * @return A set of all registered type parsers.
-     * The result is a {@link SortedSet} wrapped by {@link Collections#synchronizedSortedSet(SortedSet)},
-     * providing thread-safe access.
+     * @return An unmodifiable snapshot of all registered type parsers, taken whenever they change.
+     * Type parsers are registered through {@link #addTypeParser} and {@link #removeTypeParser}.
      */
     public static SortedSet<TypeParser<?, ? extends AnnotatedType>> typeParsers() {
-        return TYPE_PARSERS;
+        return DEFAULT_ENGINE.typeParsers();
     }
 
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * A value that a handler changed during a parse, see
+ * {@link AnnotationEngine#changes(Object, java.lang.reflect.AnnotatedType)}.
+ *
+ * @param path          the path of the value from the root, such as {@code $.friend.phones[0]} or {@code $.notes[key]}
+ * @param originalValue the value before the handler was applied
+ * @param newValue      the result of the handler
+ * @param annotation    the annotation the handler was applied for
+ * @author allurx
+ */
+public record Change(String path, Object originalValue, Object newValue, Annotation annotation) {
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser;
+
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Location;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.type.TypeParser;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedType;
+import java.util.List;
+
+/**
+ * A node of the tree that explains how a type is parsed, see
+ * {@link AnnotationEngine#explain(Object, AnnotatedType)}. Each node describes the values found at one path of the
+ * input; with a sample input, the values of one runtime class at that path.
+ *
+ * @param path          the path of the values in the syntax of {@link io.allurx.annotation.parser.type.PathSelector},
+ *                      starting with {@code $}, such as {@code $.orders[*].payment} or {@code $.attributes{*}}
+ * @param annotatedType the {@link AnnotatedType} the values are parsed with
+ * @param type          the runtime class of the values, or the declared class without a sample; null if unknown
+ * @param typeParsers   the type parsers that claim the values, in the order they are applied
+ * @param handlers      the handlers that are applied to the values, in the order they are applied
+ * @param prunable      whether no handler is applied anywhere in the subtree, so that selecting it with a
+ *                      {@link io.allurx.annotation.parser.type.PathSelector} only copies it
+ * @param counts        what the parse of the sample does in the subtree, or null without a sample
+ * @param children      the nodes of the values the type parsers walk into
+ * @author allurx
+ */
+public record Explanation(String path,
+                          AnnotatedType annotatedType,
+                          Class<?> type,
+                          List<TypeParser<?, ? extends AnnotatedType>> typeParsers,
+                          List<HandlerBinding> handlers,
+                          boolean prunable,
+                          Counts counts,
+                          List<Explanation> children) {
+
+    /**
+     * Renders the subtree as indented text, one node per line.
+     *
+     * @return the rendered subtree
+     */
+    @Override
+    public String toString() {
+        var builder = new StringBuilder();
+        render(builder, 0);
+        return builder.toString();
+    }
+
+    private void render(StringBuilder builder, int depth) {
+        builder.repeat("  ", depth)
+                .append(path)
+                .append(' ')
+                .append(type == null ? annotatedType.getType().getTypeName() : type.getSimpleName());
+        typeParsers.forEach(tp -> builder.append(" <").append(tp.getClass().getSimpleName()).append('>'));
+        handlers.forEach(binding -> builder.append(" @").append(binding.annotationType().getSimpleName())
+                .append("->").append(binding.handler().getSimpleName()));
+        if (prunable) {
+            builder.append(" prunable");
+        }
+        if (counts != null) {
+            builder.append(' ').append(counts);
+        }
+        builder.append('\n');
+        children.forEach(child -> child.render(builder, depth + 1));
+    }
+
+    /**
+     * A handler that is bound to the values of a node by an annotation marked with {@link Parse}.
+     *
+     * @param annotationType the type of the annotation
+     * @param handler        the class of the handler
+     * @param locations      the {@link Location}s the annotation is looked up at
+     * @param annotations    the annotations resolved at those locations, each of which the handler is applied for
+     */
+    public record HandlerBinding(Class<? extends Annotation> annotationType,
+                                 Class<? extends AnnotationHandler<?, ? extends Annotation, ?>> handler,
+                                 List<Location> locations,
+                                 List<Annotation> annotations) {
+    }
+
+    /**
+     * What the parse of a sample does in a subtree.
+     *
+     * @param nodes              the number of non-null values that are walked
+     * @param reflectiveAccesses the number of reflective field reads and writes, method invocations and instance
+     *                           creations of {@link io.allurx.annotation.parser.type.Cascade} objects; for objects
+     *                           copied by cloning, every parsed field counts as written
+     * @param allocations        the number of containers, arrays and objects that are copied
+     */
+    public record Counts(long nodes, long reflectiveAccesses, long allocations) {
+    }
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser;
+
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+
+import java.lang.reflect.AnnotatedType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Flow.Processor} that parses the items of an upstream {@link Flow.Publisher} with an {@link AnnotationEngine}
+ * and publishes the parsed items to one subscriber:
+ * <pre>
+ *     var processor = ParseProcessor.builder(new AnnotatedTypeToken&lt;@Cascade Person&gt;() {
+ *             })
+ *             .bufferSize(256)
+ *             .parallelism(4)
+ *             .build();
+ *     publisher.subscribe(processor);
+ *     processor.subscribe(subscriber);
+ * </pre>
+ * The processor requests {@link Builder#bufferSize(int) bufferSize} items from upstream once both sides are
+ * subscribed and one more item for each item it publishes, so it never holds more than that many items, however slow
+ * the subscriber is. Up to {@link Builder#parallelism(int) parallelism} items are parsed at the same time on the
+ * {@link Builder#executor(Executor) executor}, each with {@link AnnotationEngine#parseAsync(Object, AnnotatedType)},
+ * so that {@link io.allurx.annotation.parser.handler.AsyncAnnotationHandler async handlers} do not block a thread of
+ * the executor. Parsed items are published in the order they arrived, or in the order their parses complete if the
+ * processor is not {@link Builder#ordered(boolean) ordered}.
+ * <p>
+ * The annotated type is {@link AnnotatedTypes#intern interned} and {@link AnnotationEngine#prepare(AnnotatedType...)
+ * prepared} when the processor is built, and every item is parsed with that same annotated type, so the handlers and
+ * metadata resolved for it are reused. An
+ * item whose parse fails cancels the upstream subscription and fails the subscriber; an upstream error is passed on
+ * after the items received before it have been published.
+ *
+ * @param <T> the type of the items
+ * @author allurx
+ * @see AnnotationEngine#parseAsync(Object, AnnotatedType)
+ */
+public final class ParseProcessor<T> implements Flow.Processor<T, T> {
+
+    private final AnnotationEngine engine;
+    private final AnnotatedType annotatedType;
+    private final int bufferSize;
+    private final int parallelism;
+    private final boolean ordered;
+    private final Executor executor;
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // Guarded by this
+    private final ArrayDeque<Task<T>> waiting = new ArrayDeque<>();
+    private final ArrayDeque<Task<T>> started = new ArrayDeque<>();
+    private final ArrayDeque<Task<T>> completed = new ArrayDeque<>();
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super T> downstream;
+    private boolean subscribed;
+    private boolean upstreamRequested;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private Throwable invalidRequest;
+    private long requested;
+    private int running;
+    private boolean cancelled;
+    private boolean terminated;
+
+    private ParseProcessor(Builder<T> builder) {
+        this.engine = builder.engine;
+        this.annotatedType = AnnotatedTypes.intern(builder.annotatedType);
+        this.bufferSize = builder.bufferSize;
+        this.parallelism = builder.parallelism;
+        this.ordered = builder.ordered;
+        this.executor = builder.executor;
+        engine.prepare(annotatedType);
+    }
+
+    /**
+     * Creates a builder of a processor that parses items of the specified type.
+     *
+     * @param annotatedTypeToken the {@link AnnotatedTypeToken} of the items
+     * @param <T>                the type of the items
+     * @return a new builder
+     */
+    public static <T> Builder<T> builder(AnnotatedTypeToken<T> annotatedTypeToken) {
+        return new Builder<>(annotatedTypeToken.getAnnotatedType());
+    }
+
+    /**
+     * Creates a builder of a processor that parses items of the specified type.
+     *
+     * @param annotatedType the {@link AnnotatedType} of the items
+     * @param <T>           the type of the items
+     * @return a new builder
+     */
+    public static <T> Builder<T> builder(AnnotatedType annotatedType) {
+        return new Builder<>(annotatedType);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        synchronized (this) {
+            if (upstream == null && !cancelled) {
+                upstream = subscription;
+                subscription = null;
+            }
+        }
+        if (subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(T item) {
+        Objects.requireNonNull(item);
+        synchronized (this) {
+            if (upstreamDone || cancelled) {
+                return;
+            }
+            waiting.add(new Task<>(item));
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        synchronized (this) {
+            if (upstreamDone) {
+                return;
+            }
+            upstreamDone = true;
+            upstreamError = throwable;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            if (upstreamDone) {
+                return;
+            }
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    /**
+     * Subscribes the only subscriber of this processor. Any further subscriber is failed with an
+     * {@link IllegalStateException}.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        boolean first;
+        synchronized (this) {
+            // Claim the only subscription before onSubscribe, which must be called without holding the monitor
+            first = !subscribed && !cancelled;
+            subscribed |= first;
+        }
+        if (!first) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A ParseProcessor supports only one subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription());
+        synchronized (this) {
+            downstream = subscriber;
+        }
+        drain();
+    }
+
+    /**
+     * Starts parses, publishes parsed items and terminates the subscriber. Signals to the subscriber are serialized by
+     * the work-in-progress counter and are never sent while the monitor of this processor is held.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            var toStart = new ArrayList<Task<T>>();
+            Flow.Subscriber<? super T> subscriber;
+            Flow.Subscription subscription;
+            long initialRequest = 0;
+            synchronized (this) {
+                subscriber = downstream;
+                subscription = upstream;
+                if (cancelled || terminated) {
+                    waiting.clear();
+                    started.clear();
+                    completed.clear();
+                    subscriber = null;
+                } else {
+                    if (subscription != null && subscriber != null && !upstreamRequested) {
+                        upstreamRequested = true;
+                        initialRequest = bufferSize;
+                    }
+                    while (running < parallelism && !waiting.isEmpty()) {
+                        var task = waiting.poll();
+                        running++;
+                        if (ordered) {
+                            started.add(task);
+                        }
+                        toStart.add(task);
+                    }
+                }
+            }
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+            toStart.forEach(this::start);
+            if (subscriber != null) {
+                publish(subscriber, subscription);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void publish(Flow.Subscriber<? super T> subscriber, Flow.Subscription subscription) {
+        long emitted = 0;
+        while (true) {
+            Task<T> task;
+            Throwable error = null;
+            boolean complete = false;
+            boolean cancelUpstream = false;
+            synchronized (this) {
+                if (cancelled || terminated) {
+                    return;
+                }
+                var queue = ordered ? started : completed;
+                task = queue.peek();
+                if (invalidRequest != null) {
+                    terminated = true;
+                    error = invalidRequest;
+                    task = null;
+                    cancelUpstream = !upstreamDone;
+                } else if (task != null && task.done && (task.failure != null || emitted < requested)) {
+                    queue.poll();
+                    if (task.failure != null) {
+                        terminated = true;
+                        error = task.failure;
+                        cancelUpstream = !upstreamDone;
+                    }
+                } else {
+                    task = null;
+                    if (upstreamDone && waiting.isEmpty() && running == 0 && started.isEmpty() && completed.isEmpty()) {
+                        terminated = true;
+                        error = upstreamError;
+                        complete = error == null;
+                    }
+                }
+                if (task == null || error != null) {
+                    requested -= emitted;
+                }
+            }
+            if (error != null) {
+                if (cancelUpstream && subscription != null) {
+                    subscription.cancel();
+                }
+                subscriber.onError(error);
+                return;
+            }
+            if (complete) {
+                subscriber.onComplete();
+                return;
+            }
+            if (task == null) {
+                if (emitted > 0 && subscription != null) {
+                    synchronized (this) {
+                        if (upstreamDone) {
+                            return;
+                        }
+                    }
+                    subscription.request(emitted);
+                }
+                return;
+            }
+            subscriber.onNext(task.result);
+            emitted++;
+        }
+    }
+
+    private void start(Task<T> task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    engine.parseAsync(task.item, annotatedType)
+                            .whenComplete((result, failure) -> complete(task, result, failure));
+                } catch (Throwable failure) {
+                    complete(task, null, failure);
+                }
+            });
+        } catch (Throwable failure) {
+            complete(task, null, failure);
+        }
+    }
+
+    private void complete(Task<T> task, T result, Throwable failure) {
+        synchronized (this) {
+            task.result = result;
+            task.failure = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            task.done = true;
+            running--;
+            if (!ordered) {
+                completed.add(task);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * The subscription of the subscriber of this processor.
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (ParseProcessor.this) {
+                if (n <= 0) {
+                    invalidRequest = new IllegalArgumentException("The number of requested items must be positive but was %d.".formatted(n));
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (ParseProcessor.this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+    }
+
+    /**
+     * An item and the outcome of its parse.
+     */
+    private static final class Task<T> {
+
+        private final T item;
+        private T result;
+        private Throwable failure;
+        private boolean done;
+
+        private Task(T item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * Builder of {@link ParseProcessor}.
+     *
+     * @param <T> the type of the items
+     */
+    public static final class Builder<T> {
+
+        private final AnnotatedType annotatedType;
+        private AnnotationEngine engine = AnnotationParser.defaultEngine();
+        private int bufferSize = Flow.defaultBufferSize();
+        private int parallelism = 1;
+        private boolean ordered = true;
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder(AnnotatedType annotatedType) {
+            this.annotatedType = Objects.requireNonNull(annotatedType);
+        }
+
+        /**
+         * Parses the items with the specified engine instead of the {@link AnnotationParser#defaultEngine() default
+         * engine}.
+         *
+         * @param engine the engine
+         * @return this builder
+         */
+        public Builder<T> engine(AnnotationEngine engine) {
+            this.engine = Objects.requireNonNull(engine);
+            return this;
+        }
+
+        /**
+         * The maximum number of items the processor holds, which is also the number of items it requests from
+         * upstream at first; {@link Flow#defaultBufferSize()} by default.
+         *
+         * @param bufferSize the maximum number of items held, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if the buffer size is less than 1
+         */
+        public Builder<T> bufferSize(int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("The buffer size must be at least 1 but was %d.".formatted(bufferSize));
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * The maximum number of items parsed at the same time; 1 by default.
+         *
+         * @param parallelism the maximum number of concurrent parses, at least 1
+         * @return this builder
+         * @throws IllegalArgumentException if the parallelism is less than 1
+         */
+        public Builder<T> parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("The parallelism must be at least 1 but was %d.".formatted(parallelism));
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Whether parsed items are published in the order they arrived, which is the default, or as soon as their
+         * parses complete.
+         *
+         * @param ordered whether the order of the items is kept
+         * @return this builder
+         */
+        public Builder<T> ordered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * The executor the parses are started on; the {@link ForkJoinPool#commonPool() common pool} by default.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder<T> executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Builds the processor and prepares the annotated type of its items.
+         *
+         * @return a new processor
+         */
+        public ParseProcessor<T> build() {
+            return new ParseProcessor<>(this);
+        }
+    }
+}
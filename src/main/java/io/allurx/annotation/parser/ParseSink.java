@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser;
+
+import io.allurx.annotation.parser.type.Cascade;
+
+/**
+ * Receives the parsed form of an input as a stream of events instead of a parsed copy, see
+ * {@link AnnotationEngine#emit(Object, java.lang.reflect.AnnotatedType, ParseSink)}.
+ * <p>
+ * Cascaded objects and records are reported as {@link #beginObject objects} whose fields are introduced by
+ * {@link #name}, collections and arrays as {@link #beginArray arrays}, and maps as {@link #beginMap maps} whose
+ * entries are introduced by their parsed {@link #key}. Every object, array and map is closed by {@link #end}.
+ * Everything else is reported as a parsed {@link #value}, which is therefore all a serializer has to convert.
+ * For example, {@code @Cascade Person} with a {@code List<@EraseString String>} field {@code phones} produces:
+ * <pre>
+ *     beginObject(Person.class)
+ *       name("phones")
+ *       beginArray(2)
+ *         value("******")
+ *         value("******")
+ *       end()
+ *     end()
+ * </pre>
+ * Values that cannot be streamed, such as a container that has handlers of its own or a value of a custom type
+ * parser, are parsed completely and reported as a single {@link #value}.
+ *
+ * @author allurx
+ * @see AnnotationEngine#emit(Object, java.lang.reflect.AnnotatedType, ParseSink)
+ */
+public interface ParseSink {
+
+    /**
+     * Starts an object whose fields are parsed, namely a {@link Cascade} object or record.
+     *
+     * @param type the class of the object
+     */
+    void beginObject(Class<?> type);
+
+    /**
+     * Introduces the next field of the current object.
+     *
+     * @param name the name of the field or record component
+     */
+    void name(String name);
+
+    /**
+     * Starts the elements of a collection or an array.
+     *
+     * @param size the number of elements
+     */
+    void beginArray(int size);
+
+    /**
+     * Starts the entries of a map.
+     *
+     * @param size the number of entries
+     */
+    void beginMap(int size);
+
+    /**
+     * Introduces the next entry of the current map.
+     *
+     * @param key the parsed key
+     */
+    void key(Object key);
+
+    /**
+     * Reports a parsed value.
+     *
+     * @param value the parsed value, possibly null
+     */
+    void value(Object value);
+
+    /**
+     * Ends the innermost object, array or map.
+     */
+    void end();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of what an engine has parsed, see {@link AnnotationEngine#parseStatistics()}.
+ *
+ * @param parses    the number of completed top-level parses, including those that failed
+ * @param nodes     the number of values the type parsers were applied to, at any depth
+ * @param totalTime the time spent in top-level parses, summed over all threads
+ * @author allurx
+ */
+public record ParseStatistics(long parses, long nodes, Duration totalTime) {
+
+    /**
+     * The average time of a top-level parse, or {@link Duration#ZERO} if nothing was parsed.
+     *
+     * @return the average time of a parse
+     */
+    public Duration averageTime() {
+        return parses == 0 ? Duration.ZERO : totalTime.dividedBy(parses);
+    }
+}
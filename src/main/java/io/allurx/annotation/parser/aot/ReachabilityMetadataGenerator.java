@@ -0,0 +1,223 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.aot;
+
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.metadata.AnnotatedTypeWalker;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.type.Cascade;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.AnnotatedType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Build-time generator of GraalVM native-image reachability metadata.
+ * <p>
+ * Starting from a set of root types, the generator walks them with {@link AnnotatedTypeWalker} and registers
+ * everything the parser accesses reflectively:
+ * <ul>
+ *     <li>The {@link Parse#handler() handlers} of every {@link Parse} meta-annotated annotation found on the way.</li>
+ *     <li>The fields, constructors, record accessors and {@code clone()} methods of every {@link Cascade} type,
+ *     including the permitted subclasses of sealed types.</li>
+ *     <li>The constructors of concrete {@link Collection} and {@link Map} types, both declared and commonly used
+ *     JDK implementations, which are instantiated from the runtime class of the input.</li>
+ *     <li>The array types that are instantiated for annotated arrays.</li>
+ * </ul>
+ * The result is written in the {@code reachability-metadata.json} format and should be placed under
+ * {@code META-INF/native-image/<groupId>/<artifactId>/} of the application, for example by running
+ * {@link #main(String[])} with the exec-maven-plugin during the {@code process-classes} phase.
+ *
+ * @author allurx
+ */
+public final class ReachabilityMetadataGenerator implements AnnotatedTypeWalker.Visitor {
+
+    /**
+     * Container types that are frequently passed to the parser even when the declared type is an interface.
+     */
+    private static final List<Class<?>> DEFAULT_CONTAINER_TYPES = List.of(
+            ArrayList.class, LinkedList.class, ArrayDeque.class, CopyOnWriteArrayList.class,
+            HashSet.class, LinkedHashSet.class, TreeSet.class,
+            HashMap.class, LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class, ConcurrentSkipListMap.class);
+
+    private final Map<String, Registration> registrations = new TreeMap<>();
+
+    private ReachabilityMetadataGenerator() {
+        DEFAULT_CONTAINER_TYPES.forEach(clazz -> register(clazz).allDeclaredConstructors = true);
+    }
+
+    /**
+     * Generates the reachability metadata for the specified root classes, each of which is treated as if it were
+     * annotated with {@link Cascade @Cascade(inherited = true)}.
+     *
+     * @param classes the root classes
+     * @return the reachability metadata in JSON format
+     */
+    public static String generate(Class<?>... classes) {
+        var generator = new ReachabilityMetadataGenerator();
+        AnnotatedTypeWalker.walk(generator, classes);
+        return generator.toJson();
+    }
+
+    /**
+     * Generates the reachability metadata for the specified root {@link AnnotatedType}s.
+     *
+     * @param annotatedTypes the root {@link AnnotatedType}s
+     * @return the reachability metadata in JSON format
+     */
+    public static String generate(AnnotatedType... annotatedTypes) {
+        var generator = new ReachabilityMetadataGenerator();
+        AnnotatedTypeWalker.walk(generator, annotatedTypes);
+        return generator.toJson();
+    }
+
+    /**
+     * Generates the reachability metadata for the specified root classes and writes it to the specified file,
+     * creating parent directories when necessary.
+     *
+     * @param file    the file to write
+     * @param classes the root classes
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public static void write(Path file, Class<?>... classes) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.writeString(file, generate(classes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write reachability metadata to %s.".formatted(file), e);
+        }
+    }
+
+    /**
+     * Command line entry point: {@code <output-file> <root-class-name>...}.
+     *
+     * @param args the output file followed by the fully qualified names of the root classes
+     * @throws ClassNotFoundException if a root class cannot be found
+     */
+    public static void main(String[] args) throws ClassNotFoundException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ReachabilityMetadataGenerator <output-file> <root-class-name>...");
+        }
+        var classLoader = Thread.currentThread().getContextClassLoader();
+        var classes = new Class<?>[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            classes[i - 1] = Class.forName(args[i], false, classLoader);
+        }
+        write(Path.of(args[0]), classes);
+    }
+
+    @Override
+    public void visitParse(Parse parse, AnnotatedType annotatedType) {
+        register(parse.handler()).allDeclaredConstructors = true;
+    }
+
+    @Override
+    public void visitContainer(Class<?> containerClass) {
+        if (isContainer(containerClass)) {
+            register(containerClass).allDeclaredConstructors = true;
+        }
+    }
+
+    @Override
+    public void visitArray(Class<?> arrayClass) {
+        register(arrayClass);
+    }
+
+    @Override
+    public void visitCascade(CascadeMetadata cascadeMetadata) {
+        var clazz = cascadeMetadata.type();
+        if (cascadeMetadata.isEnum()) {
+            return;
+        }
+        var registration = register(clazz);
+        registration.allDeclaredConstructors = true;
+        registration.allDeclaredFields = true;
+        cascadeMetadata.recordComponents().forEach(rc -> registration.methods.add(rc.accessor().getName()));
+        if (cascadeMetadata.cloneMethod() != null) {
+            register(cascadeMetadata.cloneMethod().getDeclaringClass()).methods.add("clone");
+        }
+        for (Class<?> c = clazz.getSuperclass(); !cascadeMetadata.isRecord() && c != null && c != Object.class; c = c.getSuperclass()) {
+            register(c).allDeclaredFields = true;
+        }
+    }
+
+    private Registration register(Class<?> clazz) {
+        return registrations.computeIfAbsent(clazz.getTypeName(), Registration::new);
+    }
+
+    private String toJson() {
+        return registrations.values()
+                .stream()
+                .map(Registration::toJson)
+                .collect(Collectors.joining(",\n", "{\n  \"reflection\": [\n", "\n  ]\n}\n"));
+    }
+
+    private static boolean isContainer(Class<?> clazz) {
+        return Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * The reflective registration of a single type.
+     */
+    private static final class Registration {
+
+        private final String type;
+        private final Set<String> methods = new TreeSet<>();
+        private boolean allDeclaredConstructors;
+        private boolean allDeclaredFields;
+
+        private Registration(String type) {
+            this.type = type;
+        }
+
+        private String toJson() {
+            var json = new StringBuilder("    {\n      \"type\": \"").append(type).append('"');
+            if (allDeclaredConstructors) {
+                json.append(",\n      \"allDeclaredConstructors\": true");
+            }
+            if (allDeclaredFields) {
+                json.append(",\n      \"allDeclaredFields\": true");
+            }
+            if (!methods.isEmpty()) {
+                json.append(methods.stream()
+                        .map("        {\"name\": \"%s\", \"parameterTypes\": []}"::formatted)
+                        .collect(Collectors.joining(",\n", ",\n      \"methods\": [\n", "\n      ]")));
+            }
+            return json.append("\n    }").toString();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A concurrent cache with a maximum size, an optional time-to-live and hit, miss and eviction statistics.
+ * <p>
+ * Entries are spread over independently locked segments, each of which evicts an entry according to the
+ * {@link EvictionPolicy} once it is full, so the total number of entries never exceeds the maximum size: the least
+ * recently used entry, the least frequently used of the {@value #LFU_SAMPLE_SIZE} least recently used entries, or,
+ * with {@link EvictionPolicy#TINY_LFU}, either the least recently used entry or the entry that leaves the admission
+ * window, whichever has been requested less often. The admission window holds the newest entries of a segment, about
+ * 1% of them, so that a new entry is served from the cache while its frequency builds up. Values are computed outside
+ * the segment lock, which means that concurrent misses on the same key may compute the value more than once;
+ * the cache is therefore meant for deterministic computations. {@code null} values are cached as well.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author allurx
+ * @see CacheStats
+ * @see EvictionPolicy
+ */
+public final class BoundedCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+    private static final int LFU_SAMPLE_SIZE = 8;
+
+    private final int maximumSize;
+    private final long expireAfterWriteNanos;
+    private final EvictionPolicy evictionPolicy;
+    private final Segment<K, V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache that evicts the {@link EvictionPolicy#LRU least recently used} entries.
+     *
+     * @param maximumSize      the maximum number of entries, at least 1
+     * @param expireAfterWrite how long an entry lives after it was written; {@link Duration#ZERO} for no expiry
+     */
+    public BoundedCache(int maximumSize, Duration expireAfterWrite) {
+        this(maximumSize, expireAfterWrite, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize      the maximum number of entries, at least 1
+     * @param expireAfterWrite how long an entry lives after it was written; {@link Duration#ZERO} for no expiry
+     * @param evictionPolicy   how an entry is chosen for eviction once a segment is full
+     * @throws IllegalArgumentException if the maximum size is less than 1 or the time to live is negative
+     * @throws ArithmeticException      if the time to live does not fit in a {@code long} of nanoseconds
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maximumSize, Duration expireAfterWrite, EvictionPolicy evictionPolicy) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be at least 1 but was %d.".formatted(maximumSize));
+        }
+        if (expireAfterWrite.isNegative()) {
+            throw new IllegalArgumentException("The time to live must not be negative but was %s.".formatted(expireAfterWrite));
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        this.evictionPolicy = Objects.requireNonNull(evictionPolicy);
+        int segmentCount = Math.max(1, Integer.highestOneBit(Math.min(MAX_SEGMENTS, maximumSize / MIN_SEGMENT_SIZE)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0), evictionPolicy, evictions);
+        }
+    }
+
+    /**
+     * Returns the value for the specified key, computing and caching it if it is absent or expired.
+     *
+     * @param key    the key
+     * @param loader computes the value of an absent key
+     * @return the cached or computed value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        var segment = segmentFor(key);
+        long now = expireAfterWriteNanos > 0 ? System.nanoTime() : 0;
+        synchronized (segment) {
+            var entry = segment.lookup(key);
+            if (entry != null && (expireAfterWriteNanos == 0 || now - entry.writtenAt < expireAfterWriteNanos)) {
+                hits.increment();
+                return entry.value;
+            }
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        var entry = new Entry<>(value, expireAfterWriteNanos > 0 ? System.nanoTime() : 0);
+        synchronized (segment) {
+            segment.admit(key, entry);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value for the specified key if it is present and not expired.
+     *
+     * @param key the key
+     * @return the cached value, or null if it is absent or expired
+     */
+    public V getIfPresent(K key) {
+        var segment = segmentFor(key);
+        long now = expireAfterWriteNanos > 0 ? System.nanoTime() : 0;
+        synchronized (segment) {
+            var entry = segment.lookup(key);
+            if (entry != null && (expireAfterWriteNanos == 0 || now - entry.writtenAt < expireAfterWriteNanos)) {
+                hits.increment();
+                return entry.value;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the value for the specified key, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        var segment = segmentFor(key);
+        var entry = new Entry<>(value, expireAfterWriteNanos > 0 ? System.nanoTime() : 0);
+        synchronized (segment) {
+            segment.admit(key, entry);
+        }
+    }
+
+    /**
+     * Removes all entries. The statistics are kept.
+     */
+    public void clear() {
+        for (var segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * The number of entries, including expired entries that have not been removed yet.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        long size = 0;
+        for (var segment : segments) {
+            synchronized (segment) {
+                size += segment.entries();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The maximum number of entries.
+     *
+     * @return the maximum number of entries
+     */
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * How an entry is chosen for eviction.
+     *
+     * @return the eviction policy
+     */
+    public EvictionPolicy evictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * A snapshot of the statistics of this cache.
+     *
+     * @return the statistics of this cache
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key == null ? 0 : key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * A cached value, the time it was written and how often it was read.
+     */
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long writtenAt;
+        private int frequency;
+
+        private Entry(V value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    /**
+     * An access-ordered map that evicts an entry according to the eviction policy once it exceeds its capacity. With
+     * {@link EvictionPolicy#TINY_LFU}, new entries are first put in an insertion-ordered window, and the map only holds
+     * the entries admitted from it.
+     */
+    private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+        private final int capacity;
+        private final EvictionPolicy evictionPolicy;
+        private final FrequencySketch sketch;
+        private final LinkedHashMap<K, Entry<V>> window;
+        private final int windowCapacity;
+        private final LongAdder evictions;
+        private K candidate;
+
+        private Segment(int capacity, EvictionPolicy evictionPolicy, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictionPolicy = evictionPolicy;
+            this.sketch = evictionPolicy == EvictionPolicy.TINY_LFU ? new FrequencySketch(capacity) : null;
+            this.window = sketch != null ? new LinkedHashMap<>() : null;
+            this.windowCapacity = sketch != null ? Math.max(1, capacity / 100) : 0;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Looks up an entry and records the access.
+         */
+        Entry<V> lookup(K key) {
+            if (sketch != null) {
+                sketch.increment(Objects.hashCode(key));
+            }
+            var entry = get(key);
+            if (entry == null && window != null) {
+                entry = window.get(key);
+            }
+            if (entry != null && entry.frequency < Integer.MAX_VALUE) {
+                entry.frequency++;
+            }
+            return entry;
+        }
+
+        /**
+         * Puts an entry. With {@link EvictionPolicy#TINY_LFU}, a new entry is put in the window, and the oldest entry
+         * of a full window replaces the least recently used entry of the map if it has been requested more often, or
+         * is dropped otherwise.
+         */
+        void admit(K key, Entry<V> entry) {
+            if (window == null || containsKey(key)) {
+                candidate = key;
+                try {
+                    put(key, entry);
+                } finally {
+                    candidate = null;
+                }
+                return;
+            }
+            window.put(key, entry);
+            if (window.size() <= windowCapacity) {
+                return;
+            }
+            var oldest = window.entrySet().iterator().next();
+            window.remove(oldest.getKey());
+            if (size() < capacity - windowCapacity) {
+                put(oldest.getKey(), oldest.getValue());
+                return;
+            }
+            evictions.increment();
+            var victim = isEmpty() ? null : entrySet().iterator().next().getKey();
+            if (victim != null && sketch.frequency(Objects.hashCode(oldest.getKey())) > sketch.frequency(Objects.hashCode(victim))) {
+                remove(victim);
+                put(oldest.getKey(), oldest.getValue());
+            }
+        }
+
+        /**
+         * The number of entries, including those in the window.
+         */
+        int entries() {
+            return window == null ? size() : size() + window.size();
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            if (window != null) {
+                window.clear();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (window != null || size() <= capacity) {
+                return false;
+            }
+            evictions.increment();
+            if (evictionPolicy == EvictionPolicy.LRU) {
+                return true;
+            }
+            remove(leastFrequentlyUsedKey());
+            return false;
+        }
+
+        /**
+         * The least frequently used of the least recently used entries, other than the entry being put.
+         */
+        private K leastFrequentlyUsedKey() {
+            K victim = null;
+            int victimFrequency = Integer.MAX_VALUE;
+            int sampled = 0;
+            for (var iterator = entrySet().iterator(); iterator.hasNext() && sampled < LFU_SAMPLE_SIZE; ) {
+                var entry = iterator.next();
+                if (Objects.equals(entry.getKey(), candidate)) {
+                    continue;
+                }
+                sampled++;
+                if (entry.getValue().frequency < victimFrequency) {
+                    victim = entry.getKey();
+                    victimFrequency = entry.getValue().frequency;
+                }
+            }
+            return victim;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+import java.util.Locale;
+
+/**
+ * The maximum size and eviction policy of a cache.
+ * <p>
+ * A specification can be written as {@code <maximumSize>[,<evictionPolicy>]}, for example {@code 10000,TINY_LFU}, see
+ * {@link #parse(String)}, which is how the caches shared by the whole JVM are configured with system properties, see
+ * {@link Caches}.
+ *
+ * @param maximumSize    the maximum number of entries, at least 1; {@link Integer#MAX_VALUE} for an unbounded cache
+ * @param evictionPolicy how an entry is chosen for eviction once the cache is full
+ * @author allurx
+ * @see Caches
+ * @see ClassCache
+ * @see BoundedCache
+ */
+public record CacheSpec(int maximumSize, EvictionPolicy evictionPolicy) {
+
+    private static final CacheSpec UNBOUNDED = new CacheSpec(Integer.MAX_VALUE, EvictionPolicy.LRU);
+
+    /**
+     * Validates the specification.
+     *
+     * @param maximumSize    the maximum number of entries, at least 1
+     * @param evictionPolicy how an entry is chosen for eviction
+     * @throws IllegalArgumentException if the maximum size is less than 1 or the eviction policy is null
+     */
+    public CacheSpec {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be at least 1 but was %d.".formatted(maximumSize));
+        }
+        if (evictionPolicy == null) {
+            throw new IllegalArgumentException("The eviction policy must not be null.");
+        }
+    }
+
+    /**
+     * The specification of a cache that never evicts.
+     *
+     * @return the unbounded specification
+     */
+    public static CacheSpec unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Parses a specification of the form {@code <maximumSize>[,<evictionPolicy>]}. The eviction policy is
+     * case-insensitive and defaults to {@link EvictionPolicy#LRU}.
+     *
+     * @param spec the specification
+     * @return the parsed specification
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    public static CacheSpec parse(String spec) {
+        var parts = spec.split(",", -1);
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Malformed cache specification: %s.".formatted(spec));
+        }
+        try {
+            return new CacheSpec(Integer.parseInt(parts[0].strip()),
+                    parts.length == 1 ? EvictionPolicy.LRU : EvictionPolicy.valueOf(parts[1].strip().toUpperCase(Locale.ROOT)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cache specification: %s.".formatted(spec), e);
+        }
+    }
+
+    /**
+     * Whether the cache evicts entries.
+     *
+     * @return true if the maximum size is less than {@link Integer#MAX_VALUE}, false otherwise
+     */
+    public boolean isBounded() {
+        return maximumSize < Integer.MAX_VALUE;
+    }
+}
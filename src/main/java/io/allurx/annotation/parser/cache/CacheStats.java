@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+/**
+ * A snapshot of the statistics of a cache.
+ *
+ * @param hits      the number of lookups that found a live entry
+ * @param misses    the number of lookups that found no entry or an expired one
+ * @param evictions the number of entries removed to respect the maximum size
+ * @param size      the number of entries at the time of the snapshot
+ * @author allurx
+ * @see BoundedCache
+ */
+public record CacheStats(long hits, long misses, long evictions, long size) {
+
+    /**
+     * The ratio of lookups that were hits, or 1.0 if there were no lookups.
+     *
+     * @return the hit ratio
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 1.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * The registry of the caches shared by the whole JVM: the metadata caches, the caches of the
+ * {@link io.allurx.annotation.parser.util.InstanceRegistry#global() global instance registry} and the caches of the
+ * {@link io.allurx.annotation.parser.AnnotationParser#defaultEngine() default engine}.
+ * <p>
+ * Every cache is unbounded unless it is configured, either programmatically with {@link #configure(String, CacheSpec)}
+ * or with a system property named {@value #PROPERTY_PREFIX} followed by the name of the cache, whose value is parsed by
+ * {@link CacheSpec#parse(String)}:
+ * <pre>
+ *     -Dio.allurx.annotation.parser.cache.cascade-metadata=10000,TINY_LFU
+ * </pre>
+ * A cache can be configured before it is created; caches are created when the class that owns them is initialized.
+ * Engines built with {@link io.allurx.annotation.parser.AnnotationEngine#builder()} start from the same configuration
+ * and may override it for their own caches.
+ *
+ * @author allurx
+ * @see ClassCache
+ * @see CacheSpec
+ */
+public final class Caches {
+
+    /**
+     * The prefix of the system properties that configure the caches.
+     */
+    public static final String PROPERTY_PREFIX = "io.allurx.annotation.parser.cache.";
+
+    /**
+     * Whether a class, including its superclasses and interfaces, is marked as a singleton.
+     */
+    public static final String SINGLETON_MARKS = "singleton-marks";
+
+    /**
+     * The reflective metadata of cascaded classes.
+     */
+    public static final String CASCADE_METADATA = "cascade-metadata";
+
+    /**
+     * The metadata of the concrete classes of sealed hierarchies.
+     */
+    public static final String PERMITTED_SUBCLASSES = "permitted-subclasses";
+
+    /**
+     * The {@link io.allurx.annotation.parser.metadata.AnnotatedTypes#intern interned} annotated types, per class
+     * they refer to. The maximum size bounds the number of classes; the interned types of one class are not bounded,
+     * since the code that declares them fixes their number.
+     */
+    public static final String ANNOTATED_TYPES = "annotated-types";
+
+    /**
+     * The instance creators that an instance registry discovered reflectively.
+     */
+    public static final String INSTANCE_CREATORS = "instance-creators";
+
+    /**
+     * The handler pipelines of an engine, per {@link io.allurx.annotation.parser.handler.Parse} annotation type.
+     */
+    public static final String HANDLER_PIPELINES = "handler-pipelines";
+
+    /**
+     * The result caches of the {@link io.allurx.annotation.parser.handler.Memoized memoized} handlers of an engine,
+     * per handler class.
+     */
+    public static final String HANDLER_RESULT_CACHES = "handler-result-caches";
+
+    private static final Map<String, CacheSpec> SPECS = new ConcurrentHashMap<>();
+    private static final Map<String, ClassCache<?>> CACHES = new ConcurrentSkipListMap<>();
+
+    private Caches() {
+    }
+
+    /**
+     * The specification of the cache with the specified name: the one {@link #configure configured} last, or else the
+     * one of the system property of the cache, or else an {@link CacheSpec#unbounded() unbounded} one.
+     *
+     * @param name the name of the cache
+     * @return the specification of the cache
+     * @throws IllegalArgumentException if the system property of the cache is malformed
+     */
+    public static CacheSpec spec(String name) {
+        var spec = SPECS.get(name);
+        if (spec != null) {
+            return spec;
+        }
+        var property = System.getProperty(PROPERTY_PREFIX + name);
+        return property == null ? CacheSpec.unbounded() : CacheSpec.parse(property);
+    }
+
+    /**
+     * Configures the cache with the specified name, immediately if it has been created and otherwise when it is.
+     *
+     * @param name the name of the cache
+     * @param spec the maximum size and eviction policy of the cache
+     */
+    public static void configure(String name, CacheSpec spec) {
+        if (spec == null) {
+            throw new IllegalArgumentException("The cache specification must not be null.");
+        }
+        SPECS.put(name, spec);
+        var cache = CACHES.get(name);
+        if (cache != null) {
+            cache.configure(spec);
+        }
+    }
+
+    /**
+     * Creates a shared cache configured with the {@link #spec(String) specification} of its name and registers it.
+     *
+     * @param name   the name of the cache
+     * @param loader computes the value of a class that is not cached
+     * @param <V>    the type of the values
+     * @return the new cache
+     * @throws IllegalStateException if a cache with the same name is already registered
+     */
+    public static <V> ClassCache<V> create(String name, Function<Class<?>, ? extends V> loader) {
+        return register(new ClassCache<>(name, spec(name), loader));
+    }
+
+    /**
+     * Registers a shared cache under its name.
+     *
+     * @param cache the cache
+     * @param <V>   the type of the values
+     * @return the cache
+     * @throws IllegalStateException if a cache with the same name is already registered
+     */
+    public static <V> ClassCache<V> register(ClassCache<V> cache) {
+        if (CACHES.putIfAbsent(cache.name(), cache) != null) {
+            throw new IllegalStateException("A cache named %s is already registered.".formatted(cache.name()));
+        }
+        return cache;
+    }
+
+    /**
+     * The shared caches that have been created, by name.
+     *
+     * @return an unmodifiable view of the shared caches
+     */
+    public static Map<String, ClassCache<?>> caches() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * A snapshot of the statistics of every shared cache that has been created, by name.
+     *
+     * @return the statistics of the shared caches
+     */
+    public static Map<String, CacheStats> stats() {
+        var stats = new LinkedHashMap<String, CacheStats>();
+        CACHES.forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+}
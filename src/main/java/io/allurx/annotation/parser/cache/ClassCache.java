@@ -0,0 +1,346 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache of values computed per {@link Class}, with a {@link CacheSpec maximum size and eviction policy} and hit,
+ * miss and eviction statistics.
+ * <p>
+ * Values are stored in a {@link ClassValue}, so a lookup costs about as much as {@link ClassValue#get(Class)} and the
+ * cache never keeps a class or its class loader reachable. To bound the number of entries, the cache also tracks every
+ * class it holds through a weak reference, together with when and how often it was used if the cache is bounded. Once the cache is full, the
+ * entry to evict is chosen among a small random sample of entries according to the {@link EvictionPolicy}, which
+ * approximates the policy at a constant cost per eviction. With {@link EvictionPolicy#TINY_LFU}, new entries are
+ * admitted into a window of about 1% of the maximum size, and only an entry that leaves the window competes with the
+ * sampled victim for a place in the rest of the cache, so a class that is new but used often is served from the
+ * window while its frequency builds up instead of being computed again on every lookup. Entries of unloaded classes
+ * are dropped without counting as evictions.
+ * <p>
+ * The loader may be called more than once for the same class when lookups race, so it should be deterministic.
+ *
+ * @param <V> the type of the values
+ * @author allurx
+ * @see Caches
+ */
+public final class ClassCache<V> {
+
+    private static final int SAMPLE_SIZE = 8;
+    private static final int UNADMITTED = -1;
+    private static final int EVICTED = -2;
+    private static final int WINDOWED = -3;
+
+    private final String name;
+    private final Function<Class<?>, ? extends V> loader;
+    private final ClassValue<Slot<V>> slots = new ClassValue<>() {
+        @Override
+        protected Slot<V> computeValue(Class<?> type) {
+            misses.increment();
+            return new Slot<>(loader.apply(type), new Resident(type, unloaded));
+        }
+    };
+    private final ReferenceQueue<Class<?>> unloaded = new ReferenceQueue<>();
+    private final List<Resident> residents = new ArrayList<>();
+    private final ArrayDeque<Resident> window = new ArrayDeque<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile CacheSpec spec;
+    private volatile FrequencySketch sketch;
+    private long clock;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param name   the name of the cache
+     * @param spec   the maximum size and eviction policy of the cache
+     * @param loader computes the value of a class that is not cached
+     */
+    public ClassCache(String name, CacheSpec spec, Function<Class<?>, ? extends V> loader) {
+        this.name = name;
+        this.loader = loader;
+        configure(spec);
+    }
+
+    /**
+     * Returns the value of the specified class, computing and caching it if it is absent.
+     *
+     * @param clazz the class
+     * @return the cached or computed value
+     */
+    public V get(Class<?> clazz) {
+        lookups.increment();
+        var slot = slots.get(clazz);
+        var resident = slot.resident;
+        if (spec.isBounded()) {
+            resident.lastAccess = ++clock;
+            if (resident.frequency < Integer.MAX_VALUE) {
+                resident.frequency++;
+            }
+            var sketch = this.sketch;
+            if (sketch != null) {
+                sketch.increment(System.identityHashCode(clazz));
+            }
+        }
+        if (resident.index == UNADMITTED) {
+            admit(clazz, resident);
+        }
+        return slot.value;
+    }
+
+    /**
+     * Removes the value of the specified class, so that it is computed again on the next lookup.
+     *
+     * @param clazz the class
+     */
+    public synchronized void remove(Class<?> clazz) {
+        slots.remove(clazz);
+        for (int i = 0; i < residents.size(); i++) {
+            if (residents.get(i).get() == clazz) {
+                removeAt(i);
+                return;
+            }
+        }
+        for (var iterator = window.iterator(); iterator.hasNext(); ) {
+            var resident = iterator.next();
+            if (resident.get() == clazz) {
+                iterator.remove();
+                resident.index = EVICTED;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes all values. The statistics are kept.
+     */
+    public synchronized void clear() {
+        for (var resident : residents) {
+            resident.index = EVICTED;
+            var type = resident.get();
+            if (type != null) {
+                slots.remove(type);
+            }
+        }
+        residents.clear();
+        for (var resident : window) {
+            resident.index = EVICTED;
+            var type = resident.get();
+            if (type != null) {
+                slots.remove(type);
+            }
+        }
+        window.clear();
+    }
+
+    /**
+     * Changes the maximum size and eviction policy, evicting entries immediately if the cache holds more entries than
+     * the new maximum size.
+     *
+     * @param spec the new maximum size and eviction policy
+     */
+    public synchronized void configure(CacheSpec spec) {
+        if (spec == null) {
+            throw new IllegalArgumentException("The cache specification must not be null.");
+        }
+        this.spec = spec;
+        this.sketch = spec.isBounded() && spec.evictionPolicy() == EvictionPolicy.TINY_LFU ? new FrequencySketch(spec.maximumSize()) : null;
+        expungeUnloaded();
+        for (var resident = window.poll(); resident != null; resident = window.poll()) {
+            resident.index = residents.size();
+            residents.add(resident);
+        }
+        while (residents.size() > mainCapacity(spec)) {
+            evict(sample(spec.evictionPolicy()));
+        }
+    }
+
+    /**
+     * The name of this cache.
+     *
+     * @return the name of this cache
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * The maximum size and eviction policy of this cache.
+     *
+     * @return the specification of this cache
+     */
+    public CacheSpec spec() {
+        return spec;
+    }
+
+    /**
+     * The number of cached classes.
+     *
+     * @return the number of cached classes
+     */
+    public synchronized long size() {
+        expungeUnloaded();
+        return residents.size() + window.size();
+    }
+
+    /**
+     * A snapshot of the statistics of this cache.
+     *
+     * @return the statistics of this cache
+     */
+    public CacheStats stats() {
+        long misses = this.misses.sum();
+        return new CacheStats(Math.max(0, lookups.sum() - misses), misses, evictions.sum(), size());
+    }
+
+    private synchronized void admit(Class<?> clazz, Resident resident) {
+        if (resident.index != UNADMITTED) {
+            return;
+        }
+        expungeUnloaded();
+        var spec = this.spec;
+        if (sketch != null) {
+            resident.index = WINDOWED;
+            window.addLast(resident);
+            if (window.size() > spec.maximumSize() - mainCapacity(spec)) {
+                promote(window.removeFirst(), spec);
+            }
+            return;
+        }
+        if (residents.size() >= spec.maximumSize()) {
+            evict(sample(spec.evictionPolicy()));
+        }
+        resident.index = residents.size();
+        residents.add(resident);
+    }
+
+    /**
+     * Moves the oldest entry of the window into the rest of the cache if there is room or if it has been used more
+     * often than the sampled victim, and evicts it otherwise.
+     */
+    private void promote(Resident candidate, CacheSpec spec) {
+        var candidateType = candidate.get();
+        if (candidateType == null) {
+            candidate.index = EVICTED;
+            return;
+        }
+        if (residents.size() >= mainCapacity(spec)) {
+            var victim = residents.isEmpty() ? null : sample(spec.evictionPolicy());
+            var victimType = victim == null ? null : victim.get();
+            if (victim == null || victimType != null
+                    && sketch.frequency(System.identityHashCode(candidateType)) <= sketch.frequency(System.identityHashCode(victimType))) {
+                candidate.index = EVICTED;
+                slots.remove(candidateType);
+                evictions.increment();
+                return;
+            }
+            evict(victim);
+        }
+        candidate.index = residents.size();
+        residents.add(candidate);
+    }
+
+    /**
+     * The number of entries outside the admission window.
+     */
+    private static int mainCapacity(CacheSpec spec) {
+        if (!spec.isBounded() || spec.evictionPolicy() != EvictionPolicy.TINY_LFU) {
+            return spec.maximumSize();
+        }
+        return spec.maximumSize() - Math.max(1, spec.maximumSize() / 100);
+    }
+
+    /**
+     * Chooses the entry to evict among a random sample of the cached entries.
+     */
+    private Resident sample(EvictionPolicy evictionPolicy) {
+        var random = ThreadLocalRandom.current();
+        int size = residents.size();
+        Resident victim = null;
+        for (int i = 0; i < Math.min(SAMPLE_SIZE, size); i++) {
+            var candidate = residents.get(size > SAMPLE_SIZE ? random.nextInt(size) : i);
+            if (victim == null || (evictionPolicy == EvictionPolicy.LFU ? isLessFrequent(candidate, victim) : candidate.lastAccess < victim.lastAccess)) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    private static boolean isLessFrequent(Resident candidate, Resident victim) {
+        return candidate.frequency < victim.frequency
+                || candidate.frequency == victim.frequency && candidate.lastAccess < victim.lastAccess;
+    }
+
+    private void evict(Resident victim) {
+        removeAt(victim.index);
+        var type = victim.get();
+        if (type != null) {
+            slots.remove(type);
+            evictions.increment();
+        }
+    }
+
+    private void removeAt(int index) {
+        var removed = residents.get(index);
+        var last = residents.removeLast();
+        if (last != removed) {
+            residents.set(index, last);
+            last.index = index;
+        }
+        removed.index = EVICTED;
+    }
+
+    private void expungeUnloaded() {
+        for (var reference = unloaded.poll(); reference != null; reference = unloaded.poll()) {
+            var resident = (Resident) reference;
+            if (resident.index >= 0) {
+                removeAt(resident.index);
+            } else if (resident.index == WINDOWED) {
+                window.remove(resident);
+                resident.index = EVICTED;
+            }
+        }
+    }
+
+    /**
+     * A cached value and the resident that tracks its class.
+     */
+    private record Slot<V>(V value, Resident resident) {
+    }
+
+    /**
+     * Tracks a cached class without keeping it reachable. The usage counters are updated without synchronization,
+     * so concurrent lookups may lose updates, which only makes the choice of the victim less accurate.
+     */
+    private static final class Resident extends WeakReference<Class<?>> {
+
+        private volatile int index = UNADMITTED;
+        private long lastAccess;
+        private int frequency;
+
+        private Resident(Class<?> type, ReferenceQueue<Class<?>> queue) {
+            super(type, queue);
+        }
+    }
+}
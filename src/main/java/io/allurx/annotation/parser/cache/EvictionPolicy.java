@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+/**
+ * How a bounded cache chooses the entry to drop once it holds its maximum number of entries.
+ *
+ * @author allurx
+ * @see CacheSpec
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Evicts the least recently used entry. Suits workloads whose recent keys are the most likely to be used again.
+     */
+    LRU,
+
+    /**
+     * Evicts the least frequently used entry, approximated among a small sample of candidates. Keeps entries that are
+     * used often even if they have not been used for a while, at the risk of holding on to keys that were only popular
+     * in the past.
+     */
+    LFU,
+
+    /**
+     * Evicts like {@link #LRU}, but admits new entries into a small window of about 1% of the cache first, and only
+     * lets an entry that leaves the window replace another entry if it has been requested more often than that entry,
+     * as estimated by a compact frequency sketch that is periodically aged. A scan of keys that are used once
+     * therefore does not push the frequently used entries out, while a new key that is used often is served from the
+     * window until it has earned its place.
+     */
+    TINY_LFU
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.cache;
+
+/**
+ * A count-min sketch that estimates how often a key was seen, used by {@link EvictionPolicy#TINY_LFU} to decide whether
+ * a new entry is admitted. Each key is counted in four saturating counters; the estimate is the smallest of them.
+ * Once the number of increments reaches ten times the maximum size of the cache, all counters are halved, so that
+ * the estimates follow changes of popularity.
+ * <p>
+ * The sketch is not thread-safe. Concurrent increments without synchronization only lose counts, which merely makes
+ * the estimates less accurate.
+ *
+ * @author allurx
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_LENGTH = 1 << 20;
+
+    private final int[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a sketch for a cache of the specified maximum size.
+     *
+     * @param maximumSize the maximum size of the cache
+     */
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(16, Math.min(maximumSize, MAX_LENGTH));
+        this.table = new int[Integer.highestOneBit(capacity - 1) << 1];
+        this.sampleSize = 10 * capacity;
+    }
+
+    /**
+     * Counts one occurrence of the key with the specified hash code.
+     *
+     * @param hashCode the hash code of the key
+     */
+    void increment(int hashCode) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hashCode, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates how often the key with the specified hash code was seen.
+     *
+     * @param hashCode the hash code of the key
+     * @return the estimated frequency, at most {@value #MAX_COUNT}
+     */
+    int frequency(int hashCode) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, table[indexOf(hashCode, i)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hashCode, int i) {
+        long hash = (hashCode + SEEDS[i]) * SEEDS[i];
+        hash += hash >>> 32;
+        return (int) hash & (table.length - 1);
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+        additions >>>= 1;
+    }
+}
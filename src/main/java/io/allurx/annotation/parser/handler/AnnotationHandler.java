@@ -21,6 +21,11 @@ import java.lang.annotation.Annotation;
 
 /**
  * Handler for processing annotations on input object.
+ * <p>
+ * Handlers are {@link Singleton singletons}: each engine creates one instance of a handler class and applies it to
+ * every annotated value, on every thread that parses with the engine, including the virtual threads of a
+ * {@link io.allurx.annotation.parser.AnnotationEngine.Builder#fanOut(int) fanned out} parse. Implementations must
+ * therefore be thread-safe, and should keep per-value state in local variables rather than in fields.
  *
  * @param <T> the type of the input
  * @param <A> the type of the annotation present on the input object
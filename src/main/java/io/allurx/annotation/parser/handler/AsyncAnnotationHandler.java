@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.handler;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Handler whose work completes asynchronously, for example a call to a remote key management or tokenization
+ * service.
+ * <p>
+ * {@link io.allurx.annotation.parser.AnnotationEngine#parseAsync(Object, java.lang.reflect.AnnotatedType)
+ * AnnotationEngine.parseAsync}
+ * issues all calls of an async handler in a parse concurrently and assembles the parsed object once they have
+ * completed. At most {@link #maxConcurrency()} calls of the same handler class are in flight per engine; further
+ * calls are queued and issued as earlier ones complete. A synchronous {@code parse} waits for each call in turn.
+ *
+ * @param <T> the type of the input
+ * @param <A> the type of the annotation present on the input object
+ * @param <R> the type of the result produced by the handler
+ * @author allurx
+ * @see AnnotationHandler
+ */
+public interface AsyncAnnotationHandler<T, A extends Annotation, R> extends AnnotationHandler<T, A, R> {
+
+    /**
+     * Starts processing the input and its annotation.
+     *
+     * @param input      the object to be processed
+     * @param annotation the annotation present on the input
+     * @return a stage that completes with the result of the processing
+     */
+    CompletionStage<R> handleAsync(T input, A annotation);
+
+    /**
+     * The maximum number of calls of this handler that an engine keeps in flight at the same time.
+     *
+     * @return the maximum number of concurrent calls, at least 1
+     */
+    default int maxConcurrency() {
+        return 16;
+    }
+
+    /**
+     * Processes the input and waits for the result.
+     *
+     * @param input      the object to be processed
+     * @param annotation the annotation present on the input
+     * @return the result of the processing
+     */
+    @Override
+    default R handle(T input, A annotation) {
+        return handleAsync(input, annotation).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.handler;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Handler that can process many inputs carrying the same annotation in a single call, for example with one bulk
+ * request to a cipher or tokenization service instead of one request per value.
+ * <p>
+ * When the elements of a {@link java.util.Collection}, an array, or the keys or values of a {@link java.util.Map}
+ * are only processed by batch handlers, the container parsers gather the non-null elements into a column,
+ * invoke each handler once per column and scatter the results back into place. In every other situation the
+ * handler is invoked per value through {@link #handle(Object, Annotation)}.
+ *
+ * @param <T> the type of the input
+ * @param <A> the type of the annotation present on the input object
+ * @param <R> the type of the result produced by the handler
+ * @author allurx
+ * @see AnnotationHandler
+ */
+public interface BatchAnnotationHandler<T, A extends Annotation, R> extends AnnotationHandler<T, A, R> {
+
+    /**
+     * Processes the inputs and their common annotation.
+     *
+     * @param inputs     the objects to be processed, as a list that cannot be modified
+     * @param annotation the annotation present on every input
+     * @return the results of the processing, in the same order and of the same size as the inputs
+     */
+    List<R> handleBatch(List<T> inputs, A annotation);
+
+    /**
+     * Processes a single input as a batch of one.
+     *
+     * @param input      the object to be processed
+     * @param annotation the annotation present on the input
+     * @return the result of the processing
+     */
+    @Override
+    default R handle(T input, A annotation) {
+        return handleBatch(Collections.singletonList(input), annotation).getFirst();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.handler;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * String handler that can edit a value in place, for example to trim, truncate or mask it.
+ * <p>
+ * When several consecutive handlers of a value are fusable, the value is copied into one buffer, each handler
+ * edits the buffer in turn and a single String is created from it at the end, so the intermediate Strings are never
+ * allocated. In every other situation the handler is invoked through {@link #handle(String, Annotation)}.
+ * Fusable handlers that are also {@link Memoized} or asynchronous are never fused.
+ *
+ * @param <A> the type of the annotation present on the input object
+ * @author allurx
+ * @see AnnotationHandler
+ */
+public interface FusableStringAnnotationHandler<A extends Annotation> extends AnnotationHandler<String, A, String> {
+
+    /**
+     * Processes the content of the buffer in place.
+     *
+     * @param buffer     the buffer holding the value, which the handler edits
+     * @param annotation the annotation present on the value
+     */
+    void handle(StringBuilder buffer, A annotation);
+
+    /**
+     * Processes a single input in a buffer of its own.
+     *
+     * @param input      the object to be processed
+     * @param annotation the annotation present on the input
+     * @return the result of the processing
+     */
+    @Override
+    default String handle(String input, A annotation) {
+        var buffer = new StringBuilder(input);
+        handle(buffer, annotation);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.handler;
+
+import io.allurx.annotation.parser.cache.BoundedCache;
+import io.allurx.annotation.parser.cache.EvictionPolicy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Indicates that the results of the annotated {@link AnnotationHandler} are cached in a {@link BoundedCache},
+ * keyed by the input value and the annotation instance, so that repeated values skip the handler entirely.
+ * <p>
+ * Only handlers that are pure functions of their input and annotation should be memoized, for example
+ * pseudonymisation or encryption of immutable values. Inputs are compared with {@link Object#equals(Object)},
+ * annotations by identity. Each engine keeps its own cache per handler class.
+ *
+ * @author allurx
+ * @see AnnotationHandler
+ * @see BoundedCache
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface Memoized {
+
+    /**
+     * The maximum number of cached results.
+     *
+     * @return the maximum number of cached results
+     */
+    int maximumSize() default 10_000;
+
+    /**
+     * How a result is chosen for eviction once the cache is full.
+     *
+     * @return the eviction policy of the cache
+     */
+    EvictionPolicy evictionPolicy() default EvictionPolicy.LRU;
+
+    /**
+     * How long a result is cached after it was computed, in {@link #unit()}s; 0 for no expiry. It must not be negative
+     * and must fit in a {@code long} of nanoseconds, about 292 years.
+     *
+     * @return how long a result is cached
+     */
+    long expireAfterWrite() default 0;
+
+    /**
+     * The unit of {@link #expireAfterWrite()}, at most {@link ChronoUnit#DAYS}, which count as 24 hours; longer units,
+     * such as {@link ChronoUnit#WEEKS}, have no exact duration.
+     *
+     * @return the unit of {@link #expireAfterWrite()}
+     */
+    ChronoUnit unit() default ChronoUnit.SECONDS;
+}
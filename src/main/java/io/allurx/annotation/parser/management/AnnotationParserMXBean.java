@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.management;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The management interface of an {@link io.allurx.annotation.parser.AnnotationEngine AnnotationEngine}, registered
+ * in the platform MBean server by {@link AnnotationParserManagement}. All attributes and operations use open types,
+ * so they can be read with any JMX client, such as jconsole or a JMX exporter, without the classes of this library.
+ *
+ * @author allurx
+ * @see AnnotationParserManagement
+ */
+public interface AnnotationParserMXBean {
+
+    /**
+     * The class names of the type parsers of the engine, with their {@link io.allurx.annotation.parser.type.TypeParser#order() order}.
+     *
+     * @return the order of each type parser, by class name
+     */
+    Map<String, Integer> getTypeParsers();
+
+    /**
+     * The number of completed top-level parses.
+     *
+     * @return the number of parses
+     */
+    long getParseCount();
+
+    /**
+     * The number of values the type parsers were applied to, at any depth.
+     *
+     * @return the number of parsed values
+     */
+    long getNodeCount();
+
+    /**
+     * The time spent in top-level parses, in nanoseconds, summed over all threads.
+     *
+     * @return the total parse time in nanoseconds
+     */
+    long getTotalParseTimeNanos();
+
+    /**
+     * The average time of a top-level parse, in nanoseconds.
+     *
+     * @return the average parse time in nanoseconds
+     */
+    long getAverageParseTimeNanos();
+
+    /**
+     * The number of entries of each cache the engine uses, by cache name.
+     *
+     * @return the size of each cache
+     */
+    Map<String, Long> getCacheSizes();
+
+    /**
+     * The ratio of lookups that were hits of each cache the engine uses, by cache name.
+     *
+     * @return the hit ratio of each cache
+     */
+    Map<String, Double> getCacheHitRatios();
+
+    /**
+     * The number of evictions of each cache the engine uses, by cache name.
+     *
+     * @return the number of evictions of each cache
+     */
+    Map<String, Long> getCacheEvictions();
+
+    /**
+     * The maximum size and eviction policy of each cache the engine uses, by cache name, in the syntax of
+     * {@link io.allurx.annotation.parser.cache.CacheSpec#parse(String)}.
+     *
+     * @return the specification of each cache
+     */
+    Map<String, String> getCacheSpecs();
+
+    /**
+     * The class names of the singletons, such as handlers, that the instance registry of the engine has created.
+     *
+     * @return the names of the singleton types
+     */
+    List<String> getSingletons();
+
+    /**
+     * Whether the instance registry of the engine only uses registered instance creators.
+     *
+     * @return true if reflection-free mode is enabled, false otherwise
+     */
+    boolean isReflectionFree();
+
+    /**
+     * Enables or disables reflection-free mode of the instance registry of the engine.
+     *
+     * @param reflectionFree whether only registered instance creators are used
+     */
+    void setReflectionFree(boolean reflectionFree);
+
+    /**
+     * The minimum number of fields of a cascaded object that the engine parses concurrently.
+     *
+     * @return the fan-out threshold, or 0 if fields are always parsed sequentially
+     * @see io.allurx.annotation.parser.AnnotationEngine.Builder#fanOut(int)
+     */
+    int getFanOutThreshold();
+
+    /**
+     * Changes the minimum number of fields of a cascaded object that the engine parses concurrently.
+     *
+     * @param threshold the fan-out threshold, at least 2, or 0 to parse fields sequentially
+     * @throws IllegalArgumentException if the threshold is negative or 1
+     * @see io.allurx.annotation.parser.AnnotationEngine#fanOutThreshold(int)
+     */
+    void setFanOutThreshold(int threshold);
+
+    /**
+     * Removes all entries of every cache the engine uses. The caches are filled again by the following parses.
+     */
+    void clearCaches();
+
+    /**
+     * Removes all entries of one cache the engine uses.
+     *
+     * @param name the name of the cache
+     */
+    void clearCache(String name);
+
+    /**
+     * Changes the maximum size and eviction policy of one cache the engine uses.
+     *
+     * @param name the name of the cache
+     * @param spec the specification in the syntax of {@link io.allurx.annotation.parser.cache.CacheSpec#parse(String)},
+     *             such as {@code 10000,TINY_LFU}
+     */
+    void configureCache(String name, String spec);
+
+    /**
+     * Resolves everything a parse of the specified classes would resolve on first use, see
+     * {@link io.allurx.annotation.parser.AnnotationEngine#prepare(Class[])}. The classes are loaded with the class
+     * loader the MBean was registered with.
+     *
+     * @param classNames the fully qualified names of the classes
+     */
+    void prepare(String[] classNames);
+
+    /**
+     * Resets the parse count, the node count and the parse time.
+     */
+    void resetStatistics();
+}
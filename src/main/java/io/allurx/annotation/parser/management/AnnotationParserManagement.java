@@ -0,0 +1,277 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.management;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.cache.CacheSpec;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Exposes an {@link AnnotationEngine} as an {@link AnnotationParserMXBean} in the platform MBean server, so that its
+ * type parsers, parse statistics, caches and singletons can be inspected and its caches cleared, configured or
+ * pre-warmed at runtime:
+ * <pre>
+ *     AnnotationParserManagement.register();
+ * </pre>
+ * Registration is optional; nothing is registered unless one of the {@code register} methods is called. The MBean of
+ * an engine is named {@code io.allurx.annotation.parser:type=AnnotationEngine,name="<name>"}. Besides the caches of
+ * the engine, it reports and manages the {@link Caches shared caches}, which every engine uses.
+ * <p>
+ * This class requires the {@code java.management} module, which this library only requires statically; a modular
+ * application that does not require it itself must add it with {@code --add-modules java.management}.
+ *
+ * @author allurx
+ * @see AnnotationParserMXBean
+ */
+public final class AnnotationParserManagement implements AnnotationParserMXBean {
+
+    /**
+     * The domain of the object names of the MBeans.
+     */
+    public static final String DOMAIN = "io.allurx.annotation.parser";
+
+    private final AnnotationEngine engine;
+    private final ClassLoader classLoader;
+
+    /**
+     * Creates the management interface of an engine.
+     *
+     * @param engine      the engine
+     * @param classLoader the class loader of the classes to {@link #prepare(String[]) prepare}
+     */
+    public AnnotationParserManagement(AnnotationEngine engine, ClassLoader classLoader) {
+        this.engine = engine;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Registers the MBean of the {@link AnnotationParser#defaultEngine() default engine} under the name
+     * {@code default}.
+     *
+     * @return the object name of the MBean
+     * @throws IllegalStateException if the MBean is already registered
+     */
+    public static ObjectName register() {
+        return register(AnnotationParser.defaultEngine(), "default");
+    }
+
+    /**
+     * Registers the MBean of an engine. Classes to prepare are loaded with the context class loader of the calling
+     * thread.
+     *
+     * @param engine the engine
+     * @param name   the name of the engine in the object name
+     * @return the object name of the MBean
+     * @throws IllegalStateException if an MBean with the same name is already registered
+     */
+    public static ObjectName register(AnnotationEngine engine, String name) {
+        var objectName = objectName(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new AnnotationParserManagement(engine, Thread.currentThread().getContextClassLoader()), objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("%s is already registered.".formatted(objectName), e);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        return objectName;
+    }
+
+    /**
+     * Unregisters the MBean of an engine if it is registered.
+     *
+     * @param name the name of the engine in the object name
+     */
+    public static void unregister(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (InstanceNotFoundException ignored) {
+            // Not registered
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The object name of the MBean of an engine.
+     *
+     * @param name the name of the engine
+     * @return the object name
+     */
+    public static ObjectName objectName(String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=AnnotationEngine,name=" + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getTypeParsers() {
+        var typeParsers = new LinkedHashMap<String, Integer>();
+        synchronized (engine.typeParsers()) {
+            engine.typeParsers().forEach(typeParser -> typeParsers.put(typeParser.getClass().getName(), typeParser.order()));
+        }
+        return typeParsers;
+    }
+
+    @Override
+    public long getParseCount() {
+        return engine.parseStatistics().parses();
+    }
+
+    @Override
+    public long getNodeCount() {
+        return engine.parseStatistics().nodes();
+    }
+
+    @Override
+    public long getTotalParseTimeNanos() {
+        return engine.parseStatistics().totalTime().toNanos();
+    }
+
+    @Override
+    public long getAverageParseTimeNanos() {
+        return engine.parseStatistics().averageTime().toNanos();
+    }
+
+    @Override
+    public Map<String, Long> getCacheSizes() {
+        return collect(ClassCache::size);
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRatios() {
+        return collect(cache -> cache.stats().hitRatio());
+    }
+
+    @Override
+    public Map<String, Long> getCacheEvictions() {
+        return collect(cache -> cache.stats().evictions());
+    }
+
+    @Override
+    public Map<String, String> getCacheSpecs() {
+        return collect(cache -> "%d,%s".formatted(cache.spec().maximumSize(), cache.spec().evictionPolicy()));
+    }
+
+    @Override
+    public List<String> getSingletons() {
+        return engine.instanceRegistry()
+                .singletonTypes()
+                .stream()
+                .map(Class::getName)
+                .sorted()
+                .toList();
+    }
+
+    @Override
+    public boolean isReflectionFree() {
+        return engine.instanceRegistry().isReflectionFree();
+    }
+
+    @Override
+    public void setReflectionFree(boolean reflectionFree) {
+        engine.instanceRegistry().reflectionFree(reflectionFree);
+    }
+
+    @Override
+    public int getFanOutThreshold() {
+        return engine.fanOutThreshold();
+    }
+
+    @Override
+    public void setFanOutThreshold(int threshold) {
+        engine.fanOutThreshold(threshold);
+    }
+
+    @Override
+    public void clearCaches() {
+        caches().values().forEach(ClassCache::clear);
+    }
+
+    @Override
+    public void clearCache(String name) {
+        cache(name).clear();
+    }
+
+    @Override
+    public void configureCache(String name, String spec) {
+        var cache = cache(name);
+        var cacheSpec = CacheSpec.parse(spec);
+        if (Caches.caches().get(name) == cache) {
+            Caches.configure(name, cacheSpec);
+        } else {
+            cache.configure(cacheSpec);
+        }
+    }
+
+    @Override
+    public void prepare(String[] classNames) {
+        var classes = new Class<?>[classNames.length];
+        for (int i = 0; i < classNames.length; i++) {
+            try {
+                classes[i] = Class.forName(classNames[i], false, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Class %s is not found.".formatted(classNames[i]), e);
+            }
+        }
+        engine.prepare(classes);
+    }
+
+    @Override
+    public void resetStatistics() {
+        engine.resetParseStatistics();
+    }
+
+    /**
+     * The shared caches and the caches of the engine, by name.
+     */
+    private SortedMap<String, ClassCache<?>> caches() {
+        var caches = new TreeMap<String, ClassCache<?>>(Caches.caches());
+        caches.putAll(engine.caches());
+        return caches;
+    }
+
+    private ClassCache<?> cache(String name) {
+        var cache = caches().get(name);
+        if (cache == null) {
+            throw new IllegalArgumentException("There is no cache named %s.".formatted(name));
+        }
+        return cache;
+    }
+
+    private <V> Map<String, V> collect(Function<ClassCache<?>, V> property) {
+        var values = new LinkedHashMap<String, V>();
+        caches().forEach((name, cache) -> values.put(name, property.apply(cache)));
+        return values;
+    }
+}
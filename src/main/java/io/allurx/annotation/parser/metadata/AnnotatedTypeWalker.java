@@ -0,0 +1,217 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.metadata;
+
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.type.Cascade;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Walks an {@link AnnotatedType} tree without an input, following the same type-directed rules as the built-in
+ * type parsers, and reports everything a parse of that type may resolve reflectively to a {@link Visitor}.
+ * <p>
+ * {@link Cascade} classes are expanded through their {@link CascadeMetadata}: the permitted subclasses of sealed
+ * types, the components of records and the parsable fields of other classes, including inherited ones. The members
+ * of a parameterized generic class are also walked with its type arguments substituted.
+ * Each class is expanded at most once per walk, so recursive structures terminate.
+ *
+ * @author allurx
+ */
+public final class AnnotatedTypeWalker {
+
+    private final Visitor visitor;
+    private final Set<Class<?>> cascadedClasses = new HashSet<>();
+    private final Set<Type> walkingTypeVariables = new HashSet<>();
+    private final Set<AnnotatedType> cascadedParameterizedTypes = new HashSet<>();
+    private final Set<Class<?>> expandingGenericClasses = new HashSet<>();
+
+    private AnnotatedTypeWalker(Visitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * Walks the specified {@link AnnotatedType}s.
+     *
+     * @param visitor        the visitor to report to
+     * @param annotatedTypes the root {@link AnnotatedType}s
+     */
+    public static void walk(Visitor visitor, AnnotatedType... annotatedTypes) {
+        var walker = new AnnotatedTypeWalker(visitor);
+        Arrays.stream(annotatedTypes).forEach(walker::walk);
+    }
+
+    /**
+     * Walks the specified classes, each of which is treated as if it were annotated with
+     * {@link Cascade @Cascade(inherited = true)}.
+     *
+     * @param visitor the visitor to report to
+     * @param classes the root classes
+     */
+    public static void walk(Visitor visitor, Class<?>... classes) {
+        var walker = new AnnotatedTypeWalker(visitor);
+        Arrays.stream(classes).forEach(walker::cascade);
+    }
+
+    /**
+     * Returns the raw class of the specified {@link AnnotatedType}.
+     *
+     * @param annotatedType the {@link AnnotatedType}
+     * @return the raw class, or null if the type is a type variable, a wildcard or a generic array
+     */
+    public static Class<?> rawClass(AnnotatedType annotatedType) {
+        return switch (annotatedType.getType()) {
+            case Class<?> clazz -> clazz;
+            case ParameterizedType parameterizedType -> (Class<?>) parameterizedType.getRawType();
+            default -> null;
+        };
+    }
+
+    private void walk(AnnotatedType annotatedType) {
+        for (Annotation annotation : annotatedType.getDeclaredAnnotations()) {
+            var parse = annotation.annotationType().getDeclaredAnnotation(Parse.class);
+            if (parse != null) {
+                visitor.visitParse(parse, annotatedType);
+            }
+        }
+        switch (annotatedType) {
+            case AnnotatedTypeVariable annotatedTypeVariable -> {
+                // Recursive bounds such as <T extends Comparable<T>> would otherwise be walked forever
+                if (walkingTypeVariables.add(annotatedTypeVariable.getType())) {
+                    Arrays.stream(annotatedTypeVariable.getAnnotatedBounds()).forEach(this::walk);
+                    walkingTypeVariables.remove(annotatedTypeVariable.getType());
+                }
+            }
+            case AnnotatedWildcardType annotatedWildcardType ->
+                    Stream.of(annotatedWildcardType.getAnnotatedUpperBounds(), annotatedWildcardType.getAnnotatedLowerBounds())
+                            .flatMap(Arrays::stream)
+                            .forEach(this::walk);
+            case AnnotatedParameterizedType annotatedParameterizedType -> {
+                var rawClass = rawClass(annotatedType);
+                if (!rawClass.isInterface() && !Modifier.isAbstract(rawClass.getModifiers())) {
+                    visitor.visitContainer(rawClass);
+                }
+                Arrays.stream(annotatedParameterizedType.getAnnotatedActualTypeArguments()).forEach(this::walk);
+            }
+            case AnnotatedArrayType annotatedArrayType -> {
+                var componentClass = rawClass(annotatedArrayType.getAnnotatedGenericComponentType());
+                if (componentClass != null) {
+                    visitor.visitArray(componentClass.arrayType());
+                }
+                walk(annotatedArrayType.getAnnotatedGenericComponentType());
+            }
+            default -> {
+            }
+        }
+        var rawClass = rawClass(annotatedType);
+        if (rawClass != null && annotatedType.getDeclaredAnnotation(Cascade.class) != null) {
+            cascade(rawClass, annotatedType);
+        }
+    }
+
+    /**
+     * Expands a class as a value of an annotated type. The members of a generic class are walked again with the type
+     * arguments of each parameterization substituted, unless the class is already being expanded with other type
+     * arguments, as in {@code Node<List<T>> next} of a class {@code Node<T>}, which would be expanded forever.
+     */
+    private void cascade(Class<?> clazz, AnnotatedType annotatedType) {
+        cascade(clazz);
+        if (annotatedType instanceof AnnotatedParameterizedType
+                && !clazz.isInterface()
+                && !Modifier.isAbstract(clazz.getModifiers())
+                && !expandingGenericClasses.contains(clazz)
+                && cascadedParameterizedTypes.add(AnnotatedTypes.intern(annotatedType))) {
+            var cascadeMetadata = CascadeMetadata.of(clazz).resolve(annotatedType);
+            expandingGenericClasses.add(clazz);
+            walkMembers(cascadeMetadata);
+            expandingGenericClasses.remove(clazz);
+        }
+    }
+
+    private void cascade(Class<?> clazz) {
+        if (clazz.isPrimitive() || clazz.isArray() || !cascadedClasses.add(clazz)) {
+            return;
+        }
+        if (clazz.isSealed()) {
+            Arrays.stream(clazz.getPermittedSubclasses()).forEach(this::cascade);
+        }
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+            return;
+        }
+        var cascadeMetadata = CascadeMetadata.of(clazz);
+        visitor.visitCascade(cascadeMetadata);
+        walkMembers(cascadeMetadata);
+    }
+
+    private void walkMembers(CascadeMetadata cascadeMetadata) {
+        cascadeMetadata.recordComponents().forEach(rc -> walk(rc.annotatedType()));
+        cascadeMetadata.fields()
+                .stream()
+                .filter(CascadeMetadata.FieldMetadata::parsable)
+                .forEach(field -> walk(field.annotatedType()));
+    }
+
+    /**
+     * Receives what a walk discovers. All methods do nothing by default.
+     */
+    public interface Visitor {
+
+        /**
+         * Visits a {@link Parse} meta-annotation of an annotation present on a type.
+         *
+         * @param parse         the {@link Parse} meta-annotation
+         * @param annotatedType the {@link AnnotatedType} the annotation is present on
+         */
+        default void visitParse(Parse parse, AnnotatedType annotatedType) {
+        }
+
+        /**
+         * Visits a concrete parameterized class, such as a declared {@code ArrayList<T>}.
+         *
+         * @param containerClass the concrete raw class
+         */
+        default void visitContainer(Class<?> containerClass) {
+        }
+
+        /**
+         * Visits an array class that is instantiated for an annotated array.
+         *
+         * @param arrayClass the array class
+         */
+        default void visitArray(Class<?> arrayClass) {
+        }
+
+        /**
+         * Visits a concrete class that is parsed with {@link Cascade}.
+         *
+         * @param cascadeMetadata the metadata of the class
+         */
+        default void visitCascade(CascadeMetadata cascadeMetadata) {
+        }
+    }
+}
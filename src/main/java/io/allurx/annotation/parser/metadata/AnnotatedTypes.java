@@ -0,0 +1,373 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.metadata;
+
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.Executable;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns {@link AnnotatedType} trees, so that equal annotated types share one canonical instance and one set of
+ * cached metadata.
+ * <p>
+ * The JDK creates new {@link AnnotatedType} objects for each {@link io.allurx.kit.base.reflection.AnnotatedTypeToken}
+ * and for each call of methods such as {@link java.lang.reflect.Field#getAnnotatedType()} or
+ * {@link AnnotatedParameterizedType#getAnnotatedActualTypeArguments()}, and their {@code equals} and {@code hashCode}
+ * compare every annotation member by member. {@link #intern(AnnotatedType)} replaces a tree by a tree of canonical
+ * nodes, built bottom-up: two nodes are the same instance if they have the same type, equal annotations and the same
+ * child nodes, so that caches keyed by a node, such as its {@link #site(AnnotatedType) cascade site}, are shared by
+ * every token, field and record component that describes the same annotated type, and the children of an interned
+ * node are interned too.
+ * <p>
+ * Each node is kept in the {@link Caches#ANNOTATED_TYPES} cache of the class it refers to whose class loader is the
+ * furthest from the bootstrap class loader, counting the types of its annotations, so an interned type never keeps a
+ * class loader reachable that the type itself would not. A type that refers to classes of unrelated class loaders is canonicalized but not shared. The
+ * {@link Caches#ANNOTATED_TYPES} specification bounds the number of classes that have a table; the table of a class is
+ * not bounded, since it only holds the distinct annotated types that refer to the class, whose number is fixed by the
+ * code that declares them, and it is dropped together with the class or when the class is evicted.
+ *
+ * @author allurx
+ * @see Caches#ANNOTATED_TYPES
+ */
+public final class AnnotatedTypes {
+
+    private static final ClassCache<Map<InternedAnnotatedType, InternedAnnotatedType>> TABLES =
+            Caches.create(Caches.ANNOTATED_TYPES, type -> new ConcurrentHashMap<>());
+
+    /**
+     * The annotated types interned last, by the identity hash code of the annotated type they were interned from,
+     * so that interning the same object again does not walk it.
+     */
+    private static final Memo[] MEMOS = new Memo[256];
+
+    private static final InternedAnnotatedType[] NO_CHILDREN = new InternedAnnotatedType[0];
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private AnnotatedTypes() {
+    }
+
+    /**
+     * Returns the canonical instance of an annotated type.
+     *
+     * @param annotatedType the annotated type
+     * @return the canonical instance of the annotated type, which is the annotated type itself if it is interned
+     */
+    public static AnnotatedType intern(AnnotatedType annotatedType) {
+        if (annotatedType instanceof InternedAnnotatedType interned) {
+            return interned;
+        }
+        int index = System.identityHashCode(annotatedType) & (MEMOS.length - 1);
+        var memo = MEMOS[index];
+        if (memo != null && memo.get() == annotatedType) {
+            var interned = memo.interned.get();
+            if (interned != null) {
+                return interned;
+            }
+        }
+        var interned = canonicalize(annotatedType);
+        MEMOS[index] = new Memo(annotatedType, interned);
+        return interned;
+    }
+
+    /**
+     * Whether an annotated type is a canonical instance returned by {@link #intern(AnnotatedType)}.
+     *
+     * @param annotatedType the annotated type
+     * @return true if the annotated type is interned, false otherwise
+     */
+    public static boolean isInterned(AnnotatedType annotatedType) {
+        return annotatedType instanceof InternedAnnotatedType;
+    }
+
+    /**
+     * The annotations directly present on an annotated type. The list of an interned type is created once and has a
+     * precomputed hash code, so it is a cheap key of caches that only depend on the annotations of a type.
+     *
+     * @param annotatedType the annotated type
+     * @return the annotations directly present on the annotated type, which must not be modified
+     */
+    public static List<Annotation> annotations(AnnotatedType annotatedType) {
+        return annotatedType instanceof InternedAnnotatedType interned
+                ? interned.annotations
+                : Arrays.asList(annotatedType.getDeclaredAnnotations());
+    }
+
+    /**
+     * The annotated type argument of a parameterized type at the specified index. Unlike
+     * {@link AnnotatedParameterizedType#getAnnotatedActualTypeArguments()}, it does not copy the type arguments of an
+     * interned type.
+     *
+     * @param annotatedType the parameterized type
+     * @param index         the index of the type argument
+     * @return the annotated type argument at the index
+     */
+    public static AnnotatedType typeArgument(AnnotatedParameterizedType annotatedType, int index) {
+        return annotatedType instanceof InternedAnnotatedType interned
+                ? interned.children[index]
+                : annotatedType.getAnnotatedActualTypeArguments()[index];
+    }
+
+    /**
+     * The {@link CascadeSite} of the values of an annotated type. An interned type has one site, shared by every
+     * place it is interned from; any other annotated type gets a new site.
+     *
+     * @param annotatedType the annotated type
+     * @return the site of the values of the annotated type
+     */
+    public static CascadeSite site(AnnotatedType annotatedType) {
+        return annotatedType instanceof InternedAnnotatedType interned
+                ? interned.site()
+                : new CascadeSite(annotatedType);
+    }
+
+    /**
+     * Replaces the type variables of an annotated type by annotated type arguments, such as the type of a field
+     * {@code List<T> items} of a class {@code Page<T>} by {@code List<@Mask String>} for a
+     * {@code Page<@Mask String>}. The annotations of a replaced type variable are appended to the annotations of its
+     * argument; type variables that have no argument are kept.
+     *
+     * @param annotatedType the annotated type
+     * @param arguments     the annotated type arguments, by the type variables they replace
+     * @return the {@link #intern interned} annotated type with its type variables replaced, which is the interned
+     * annotated type itself if it has none of the type variables
+     */
+    public static AnnotatedType substitute(AnnotatedType annotatedType, Map<TypeVariable<?>, ? extends AnnotatedType> arguments) {
+        var interned = (InternedAnnotatedType) intern(annotatedType);
+        return arguments.isEmpty() ? interned : substitute(interned, arguments);
+    }
+
+    static InternedAnnotatedType[] internAll(AnnotatedType[] annotatedTypes) {
+        var interned = new InternedAnnotatedType[annotatedTypes.length];
+        for (int i = 0; i < annotatedTypes.length; i++) {
+            interned[i] = (InternedAnnotatedType) intern(annotatedTypes[i]);
+        }
+        return interned;
+    }
+
+    private static InternedAnnotatedType canonicalize(AnnotatedType annotatedType) {
+        var ownerType = annotatedType.getAnnotatedOwnerType() == null ? null : (InternedAnnotatedType) intern(annotatedType.getAnnotatedOwnerType());
+        var type = annotatedType.getType();
+        var annotations = annotatedType.getDeclaredAnnotations();
+        return share(switch (annotatedType) {
+            case AnnotatedParameterizedType parameterizedType -> {
+                var typeArguments = internAll(parameterizedType.getAnnotatedActualTypeArguments());
+                var owner = owner((Class<?>) ((ParameterizedType) type).getRawType(), annotations, ownerType, typeArguments);
+                yield new InternedAnnotatedType.Parameterized(type, annotations, ownerType, typeArguments, owner);
+            }
+            case AnnotatedArrayType arrayType -> {
+                var componentType = (InternedAnnotatedType) intern(arrayType.getAnnotatedGenericComponentType());
+                yield new InternedAnnotatedType.Array(type, annotations, componentType, owner(componentType.owner, annotations));
+            }
+            case AnnotatedTypeVariable ignored -> {
+                var typeVariable = (TypeVariable<?>) type;
+                yield new InternedAnnotatedType.Variable(typeVariable, annotations, owner(declaringClass(typeVariable), annotations));
+            }
+            case AnnotatedWildcardType wildcardType -> {
+                var upperBounds = internAll(wildcardType.getAnnotatedUpperBounds());
+                var lowerBounds = internAll(wildcardType.getAnnotatedLowerBounds());
+                yield new InternedAnnotatedType.Wildcard(type, annotations, upperBounds, lowerBounds, owner(owner(upperBounds, lowerBounds), annotations));
+            }
+            default -> new InternedAnnotatedType.Plain(type, annotations, ownerType,
+                    owner(type instanceof Class<?> clazz ? clazz : Object.class, annotations, ownerType, NO_CHILDREN));
+        });
+    }
+
+    private static InternedAnnotatedType substitute(InternedAnnotatedType node, Map<TypeVariable<?>, ? extends AnnotatedType> arguments) {
+        switch (node) {
+            case InternedAnnotatedType.Variable ignored -> {
+                var argument = arguments.get((TypeVariable<?>) node.type);
+                if (argument == null) {
+                    return node;
+                }
+                var actual = (InternedAnnotatedType) intern(argument);
+                if (node.annotations.isEmpty()) {
+                    return actual;
+                }
+                var annotations = Arrays.copyOf(actual.annotations.elements, actual.annotations.elements.length + node.annotations.elements.length);
+                System.arraycopy(node.annotations.elements, 0, annotations, actual.annotations.elements.length, node.annotations.elements.length);
+                return share(actual.withAnnotations(annotations, owner(actual.owner, node.annotations.elements)));
+            }
+            case InternedAnnotatedType.Parameterized ignored -> {
+                var ownerType = node.ownerType == null ? null : substitute(node.ownerType, arguments);
+                var typeArguments = substituteAll(node.children, arguments);
+                if (ownerType == node.ownerType && typeArguments == node.children) {
+                    return node;
+                }
+                var parameterizedType = (ParameterizedType) node.type;
+                var rawType = (Class<?>) parameterizedType.getRawType();
+                var type = new SubstitutedTypes.Parameterized(rawType, types(typeArguments),
+                        ownerType == null ? parameterizedType.getOwnerType() : ownerType.type);
+                return share(new InternedAnnotatedType.Parameterized(type, node.annotations.elements, ownerType, typeArguments,
+                        owner(rawType, node.annotations.elements, ownerType, typeArguments)));
+            }
+            case InternedAnnotatedType.Array ignored -> {
+                var componentType = substitute(node.children[0], arguments);
+                if (componentType == node.children[0]) {
+                    return node;
+                }
+                var type = componentType.type instanceof Class<?> componentClass
+                        ? componentClass.arrayType()
+                        : new SubstitutedTypes.GenericArray(componentType.type);
+                return share(new InternedAnnotatedType.Array(type, node.annotations.elements, componentType,
+                        owner(componentType.owner, node.annotations.elements)));
+            }
+            case InternedAnnotatedType.Wildcard wildcard -> {
+                var bounds = substituteAll(node.children, arguments);
+                if (bounds == node.children) {
+                    return node;
+                }
+                int upperBounds = wildcard.getAnnotatedUpperBounds().length;
+                var upper = Arrays.copyOf(bounds, upperBounds);
+                var lower = Arrays.copyOfRange(bounds, upperBounds, bounds.length);
+                var type = new SubstitutedTypes.Wildcard(types(upper), types(lower));
+                return share(new InternedAnnotatedType.Wildcard(type, node.annotations.elements, upper, lower,
+                        owner(owner(upper, lower), node.annotations.elements)));
+            }
+            case InternedAnnotatedType.Plain ignored -> {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Substitutes each of the nodes, returning the nodes themselves if none of them changes.
+     */
+    private static InternedAnnotatedType[] substituteAll(InternedAnnotatedType[] nodes, Map<TypeVariable<?>, ? extends AnnotatedType> arguments) {
+        InternedAnnotatedType[] substituted = null;
+        for (int i = 0; i < nodes.length; i++) {
+            var node = substitute(nodes[i], arguments);
+            if (node != nodes[i] && substituted == null) {
+                substituted = nodes.clone();
+            }
+            if (substituted != null) {
+                substituted[i] = node;
+            }
+        }
+        return substituted == null ? nodes : substituted;
+    }
+
+    private static Type[] types(InternedAnnotatedType[] nodes) {
+        var types = new Type[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            types[i] = nodes[i].type;
+        }
+        return types;
+    }
+
+    /**
+     * Returns the interned node equal to the specified node, interning it if there is none.
+     */
+    private static InternedAnnotatedType share(InternedAnnotatedType node) {
+        if (node.owner == null) {
+            return node;
+        }
+        var existing = TABLES.get(node.owner).putIfAbsent(node, node);
+        return existing != null ? existing : node;
+    }
+
+    private static Class<?> declaringClass(TypeVariable<?> typeVariable) {
+        var declaration = typeVariable.getGenericDeclaration();
+        return declaration instanceof Executable executable ? executable.getDeclaringClass() : (Class<?>) declaration;
+    }
+
+    private static Class<?> owner(InternedAnnotatedType[] upperBounds, InternedAnnotatedType[] lowerBounds) {
+        var owner = owner(Object.class, NO_ANNOTATIONS, null, upperBounds);
+        return owner == null ? null : owner(owner, NO_ANNOTATIONS, null, lowerBounds);
+    }
+
+    /**
+     * Chooses the class whose table a node is kept in: of the class of the node itself, the types of its annotations
+     * and the owners of its owner type and its children, the first one whose class loader has the class loaders of
+     * all others as ancestors.
+     *
+     * @return the owner of the node, or null if it refers to classes of unrelated class loaders
+     */
+    private static Class<?> owner(Class<?> clazz, Annotation[] annotations, InternedAnnotatedType ownerType, InternedAnnotatedType[] children) {
+        var owner = owner(clazz, annotations);
+        if (ownerType != null && owner != null) {
+            owner = deeper(owner, ownerType.owner);
+        }
+        for (int i = 0; i < children.length && owner != null; i++) {
+            owner = deeper(owner, children[i].owner);
+        }
+        return owner;
+    }
+
+    /**
+     * Combines an owner with the types of annotations, since an annotation keeps the class loader of its type
+     * reachable.
+     */
+    private static Class<?> owner(Class<?> owner, Annotation[] annotations) {
+        for (int i = 0; i < annotations.length && owner != null; i++) {
+            owner = deeper(owner, annotations[i].annotationType());
+        }
+        return owner;
+    }
+
+    private static Class<?> deeper(Class<?> owner, Class<?> candidate) {
+        if (owner == null || candidate == null) {
+            return null;
+        }
+        if (isAncestorOrSelf(candidate.getClassLoader(), owner.getClassLoader())) {
+            return owner;
+        }
+        if (isAncestorOrSelf(owner.getClassLoader(), candidate.getClassLoader())) {
+            return candidate;
+        }
+        return null;
+    }
+
+    static boolean isAncestorOrSelf(ClassLoader ancestor, ClassLoader classLoader) {
+        if (ancestor == null) {
+            return true;
+        }
+        for (var loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * An annotated type and its canonical instance, neither of which it keeps reachable.
+     */
+    private static final class Memo extends WeakReference<AnnotatedType> {
+
+        private final WeakReference<AnnotatedType> interned;
+
+        private Memo(AnnotatedType annotatedType, AnnotatedType interned) {
+            super(annotatedType);
+            this.interned = new WeakReference<>(interned);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.metadata;
+
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.util.Reflections;
+
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.TypeVariable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reflective metadata of a class that is parsed with {@link Cascade}, resolved once per class and cached in the
+ * {@link Caches#CASCADE_METADATA} cache, which does not keep the class or its class loader reachable.
+ * <ul>
+ *     <li>For a {@link Record}, the accessors and {@link AnnotatedTypes#intern interned} {@link AnnotatedType}s of its
+ *     components and its canonical constructor.</li>
+ *     <li>For any other class, its copyable {@link Field}s, which are all non-static, non-synthetic fields declared
+ *     in the class and its superclasses, together with whether each field may be parsed, and its {@code clone()}
+ *     method if it is {@link Cloneable}. The type arguments a class passes to its superclasses are substituted into
+ *     the annotated types of the inherited fields.</li>
+ * </ul>
+ * The metadata of a generic class as a value of one of its parameterizations is {@link #resolve resolved} from the
+ * metadata of the class.
+ *
+ * @author allurx
+ * @see Cascade
+ */
+public final class CascadeMetadata {
+
+    private static final ClassCache<CascadeMetadata> CASCADE_METADATA = Caches.create(Caches.CASCADE_METADATA, CascadeMetadata::new);
+    private static final ClassCache<Map<Class<?>, CascadeMetadata>> PERMITTED_SUBCLASSES = Caches.create(Caches.PERMITTED_SUBCLASSES, CascadeMetadata::permittedSubclasses);
+
+    private final Class<?> type;
+    private final boolean generic;
+    private final List<RecordComponentMetadata> recordComponents;
+    private final Constructor<?> canonicalConstructor;
+    private final List<FieldMetadata> fields;
+    private final Method cloneMethod;
+
+    private CascadeMetadata(Class<?> type) {
+        this.type = type;
+        this.generic = type.getTypeParameters().length > 0;
+        if (type.isRecord()) {
+            var components = type.getRecordComponents();
+            this.recordComponents = Arrays.stream(components)
+                    .map(rc -> {
+                        var annotatedType = AnnotatedTypes.intern(rc.getAnnotatedType());
+                        return new RecordComponentMetadata(rc.getAccessor(), annotatedType, AnnotatedTypes.site(annotatedType));
+                    })
+                    .toList();
+            this.canonicalConstructor = Reflections.getDeclaredConstructor(type,
+                            Arrays.stream(components)
+                                    .map(RecordComponent::getType)
+                                    .toArray(Class<?>[]::new))
+                    .orElseThrow();
+            this.fields = List.of();
+        } else {
+            this.recordComponents = List.of();
+            this.canonicalConstructor = null;
+            var inheritedArguments = inheritedTypeArguments(type);
+            this.fields = type.isEnum()
+                    ? List.of()
+                    : Reflections.listFields(type, true)
+                    .stream()
+                    .filter(CascadeMetadata::isCopyableField)
+                    .map(field -> {
+                        var inherited = field.getDeclaringClass() != type;
+                        var annotatedType = inherited
+                                ? AnnotatedTypes.substitute(field.getAnnotatedType(), inheritedArguments)
+                                : AnnotatedTypes.intern(field.getAnnotatedType());
+                        return new FieldMetadata(field, annotatedType, isParsableField(field), inherited, AnnotatedTypes.site(annotatedType));
+                    })
+                    .toList();
+        }
+        this.cloneMethod = Cloneable.class.isAssignableFrom(type) && !type.isArray() ? findCloneMethod(type) : null;
+    }
+
+    /**
+     * Creates the metadata of a generic class as a value of a parameterization of the class, whose fields and record
+     * components have the type arguments of the parameterization substituted for the type parameters of the class.
+     */
+    private CascadeMetadata(CascadeMetadata metadata, AnnotatedParameterizedType annotatedType) {
+        this.type = metadata.type;
+        this.generic = false;
+        this.canonicalConstructor = metadata.canonicalConstructor;
+        this.cloneMethod = metadata.cloneMethod;
+        var typeParameters = type.getTypeParameters();
+        var typeArguments = annotatedType.getAnnotatedActualTypeArguments();
+        var arguments = new HashMap<TypeVariable<?>, AnnotatedType>();
+        for (int i = 0; i < typeParameters.length; i++) {
+            arguments.put(typeParameters[i], typeArguments[i]);
+        }
+        this.recordComponents = metadata.recordComponents
+                .stream()
+                .map(rc -> {
+                    var substituted = AnnotatedTypes.substitute(rc.annotatedType(), arguments);
+                    return substituted == rc.annotatedType()
+                            ? rc
+                            : new RecordComponentMetadata(rc.accessor(), substituted, AnnotatedTypes.site(substituted));
+                })
+                .toList();
+        this.fields = metadata.fields
+                .stream()
+                .map(fm -> {
+                    var substituted = AnnotatedTypes.substitute(fm.annotatedType(), arguments);
+                    return substituted == fm.annotatedType()
+                            ? fm
+                            : new FieldMetadata(fm.field(), substituted, fm.parsable(), fm.inherited(), AnnotatedTypes.site(substituted));
+                })
+                .toList();
+    }
+
+    /**
+     * Returns the metadata of the specified class, resolving it on first use.
+     *
+     * @param clazz the class to inspect
+     * @return the metadata of the class
+     */
+    public static CascadeMetadata of(Class<?> clazz) {
+        return CASCADE_METADATA.get(clazz);
+    }
+
+    /**
+     * Returns the metadata of every concrete class of a sealed hierarchy, keyed by class, resolving all of them the
+     * first time the sealed class is seen. The permitted subclasses are followed recursively through sealed
+     * subclasses; subclasses of a {@code non-sealed} class are not included.
+     *
+     * @param sealedClass the sealed class or interface
+     * @return an immutable map from each concrete class of the hierarchy to its metadata
+     * @throws IllegalArgumentException if the class is not sealed
+     */
+    public static Map<Class<?>, CascadeMetadata> ofPermittedSubclasses(Class<?> sealedClass) {
+        if (!sealedClass.isSealed()) {
+            throw new IllegalArgumentException("%s is not sealed.".formatted(sealedClass));
+        }
+        return PERMITTED_SUBCLASSES.get(sealedClass);
+    }
+
+    /**
+     * Returns the metadata of the class as a value of the specified annotated type. If the class is generic and the
+     * annotated type is a parameterization of it, such as {@code @Cascade Page<@Mask String>} for a class
+     * {@code Page<T>}, the type arguments are substituted into the annotated types of the fields and record
+     * components, so that a field {@code List<T> items} is parsed as a {@code List<@Mask String>}. The substituted
+     * metadata is resolved once per {@link AnnotatedTypes#intern interned} annotated type. Otherwise this metadata is
+     * returned, in which the type parameters of the class are kept.
+     *
+     * @param annotatedType the declared {@link AnnotatedType} of a value of the class
+     * @return the metadata of the class as a value of the annotated type
+     */
+    public CascadeMetadata resolve(AnnotatedType annotatedType) {
+        if (!generic
+                || !(annotatedType instanceof AnnotatedParameterizedType)
+                || ((ParameterizedType) annotatedType.getType()).getRawType() != type) {
+            return this;
+        }
+        var interned = (InternedAnnotatedType) AnnotatedTypes.intern(annotatedType);
+        return interned.resolvedMetadata(type, clazz -> new CascadeMetadata(this, (AnnotatedParameterizedType) interned));
+    }
+
+    /**
+     * Removes the cached metadata of all classes.
+     */
+    public static void clear() {
+        CASCADE_METADATA.clear();
+        PERMITTED_SUBCLASSES.clear();
+    }
+
+    private static Map<Class<?>, CascadeMetadata> permittedSubclasses(Class<?> sealedClass) {
+        var permitted = new HashMap<Class<?>, CascadeMetadata>();
+        collectPermittedSubclasses(sealedClass, permitted);
+        return Map.copyOf(permitted);
+    }
+
+    private static void collectPermittedSubclasses(Class<?> clazz, Map<Class<?>, CascadeMetadata> permitted) {
+        if (permitted.containsKey(clazz)) {
+            return;
+        }
+        if (!clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())) {
+            permitted.put(clazz, of(clazz));
+        }
+        if (clazz.isSealed()) {
+            for (var subclass : clazz.getPermittedSubclasses()) {
+                collectPermittedSubclasses(subclass, permitted);
+            }
+        }
+    }
+
+    /**
+     * The class described by this metadata.
+     *
+     * @return the class described by this metadata
+     */
+    public Class<?> type() {
+        return type;
+    }
+
+    /**
+     * Whether the class is a {@link Record}.
+     *
+     * @return true if the class is a record, false otherwise
+     */
+    public boolean isRecord() {
+        return canonicalConstructor != null;
+    }
+
+    /**
+     * Whether the class is an {@link Enum}, whose constants are never copied.
+     *
+     * @return true if the class is an enum, false otherwise
+     */
+    public boolean isEnum() {
+        return type.isEnum();
+    }
+
+    /**
+     * The components of the record, in declaration order; empty if the class is not a record.
+     *
+     * @return the components of the record
+     */
+    public List<RecordComponentMetadata> recordComponents() {
+        return recordComponents;
+    }
+
+    /**
+     * The canonical constructor of the record; null if the class is not a record.
+     *
+     * @return the canonical constructor of the record
+     */
+    public Constructor<?> canonicalConstructor() {
+        return canonicalConstructor;
+    }
+
+    /**
+     * The copyable fields of the class, declared fields first; empty if the class is a record or an enum.
+     *
+     * @return the copyable fields of the class
+     */
+    public List<FieldMetadata> fields() {
+        return fields;
+    }
+
+    /**
+     * The {@code clone()} method of a {@link Cloneable} class, which is the most specific override of
+     * {@link Object#clone()}; null if the class is not cloneable or does not override it.
+     *
+     * @return the {@code clone()} method of the class
+     */
+    public Method cloneMethod() {
+        return cloneMethod;
+    }
+
+    /**
+     * Collects the type arguments of the superclasses of a class, in terms of the type parameters of the class, such
+     * as {@code U} of {@code Base<U>} by {@code List<T>} for a class {@code Page<T> extends Base<List<T>>}.
+     */
+    private static Map<TypeVariable<?>, AnnotatedType> inheritedTypeArguments(Class<?> type) {
+        var arguments = new HashMap<TypeVariable<?>, AnnotatedType>();
+        for (Class<?> c = type; c.getSuperclass() != null; c = c.getSuperclass()) {
+            if (c.getAnnotatedSuperclass() instanceof AnnotatedParameterizedType superclass) {
+                var typeParameters = c.getSuperclass().getTypeParameters();
+                var typeArguments = superclass.getAnnotatedActualTypeArguments();
+                for (int i = 0; i < typeParameters.length; i++) {
+                    arguments.put(typeParameters[i], AnnotatedTypes.substitute(typeArguments[i], arguments));
+                }
+            }
+        }
+        return arguments;
+    }
+
+    private static Method findCloneMethod(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredMethod("clone");
+            } catch (NoSuchMethodException e) {
+                // Look in the superclass
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCopyableField(Field field) {
+        return !field.isSynthetic()
+                && !Modifier.isStatic(field.getModifiers());
+    }
+
+    private static boolean isParsableField(Field field) {
+        int modifiers = field.getModifiers();
+        return !Modifier.isFinal(modifiers)
+                && !Modifier.isTransient(modifiers);
+    }
+
+    /**
+     * Metadata of a record component.
+     *
+     * @param accessor      the accessor of the component
+     * @param annotatedType the {@link AnnotatedType} of the component
+     * @param site          the inline cache of the metadata of the component values
+     */
+    public record RecordComponentMetadata(Method accessor, AnnotatedType annotatedType, CascadeSite site) {
+    }
+
+    /**
+     * Metadata of a copyable field.
+     *
+     * @param field         the field
+     * @param annotatedType the {@link AnnotatedType} of the field
+     * @param parsable      whether the field is neither final nor transient and may therefore be parsed
+     * @param inherited     whether the field is declared in a superclass
+     * @param site          the inline cache of the metadata of the field values
+     */
+    public record FieldMetadata(Field field, AnnotatedType annotatedType, boolean parsable, boolean inherited, CascadeSite site) {
+
+        /**
+         * Whether the field should be parsed for the specified {@link Cascade}.
+         *
+         * @param cascade the {@link Cascade} present on the object
+         * @return true if the field should be parsed, false if its value is copied as is
+         */
+        public boolean shouldParse(Cascade cascade) {
+            return parsable && (cascade.inherited() || !inherited);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.metadata;
+
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.type.Cascade;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.util.Map;
+
+/**
+ * A polymorphic inline cache of the {@link CascadeMetadata} of the values found at one place of a class, such as a
+ * field, a record component or the elements of a container.
+ * <p>
+ * The site remembers up to {@value #SIZE} runtime classes together with their metadata and finds them again with an
+ * identity comparison of the class. A site that sees more classes becomes megamorphic and resolves every class through
+ * the shared table of {@link CascadeMetadata#of(Class)}. Fields declared with an interface or abstract type whose
+ * values have a handful of implementations are therefore resolved without a table lookup.
+ * <p>
+ * If the declared type is a sealed class or interface, the metadata of every concrete class of the hierarchy is
+ * resolved the first time a value is seen, see {@link CascadeMetadata#ofPermittedSubclasses(Class)}, and the runtime
+ * classes of the hierarchy are dispatched through that table in constant time, however many there are. Only classes
+ * below a {@code non-sealed} class go through the inline cache.
+ * <p>
+ * A class is only remembered if its class loader is the class loader of the declared type or one of its ancestors,
+ * so a site never keeps a class loader reachable that its declared type would not.
+ *
+ * @author allurx
+ * @see CascadeMetadata
+ */
+public final class CascadeSite {
+
+    private static final int SIZE = 4;
+
+    private final boolean direct;
+    private final AnnotatedType parameterizedType;
+    private final Class<?> declaredClass;
+    private final Class<?> sealedClass;
+    private final Entry[] entries = new Entry[SIZE];
+    private volatile Map<Class<?>, CascadeMetadata> permitted;
+    private volatile boolean megamorphic;
+
+    /**
+     * Creates an empty site for values of the specified type.
+     *
+     * @param annotatedType the declared {@link AnnotatedType} of the values
+     */
+    public CascadeSite(AnnotatedType annotatedType) {
+        this.direct = isDirect(annotatedType);
+        this.parameterizedType = annotatedType instanceof AnnotatedParameterizedType ? annotatedType : null;
+        this.declaredClass = annotatedType.getType() instanceof Class<?> clazz ? clazz : null;
+        this.sealedClass = direct && declaredClass != null && declaredClass.isSealed() ? declaredClass : null;
+    }
+
+    /**
+     * Whether the values of this site are only {@link Cascade cascaded}: the declared type is a plain class type that
+     * is annotated with {@link Cascade} and with no {@link Parse} annotation, so that no other built-in type parser
+     * applies to its values.
+     *
+     * @return true if the values are only cascaded, false otherwise
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Returns the metadata of the specified runtime class. If the declared type is parameterized, the metadata is
+     * {@link CascadeMetadata#resolve resolved} as a value of the declared type.
+     *
+     * @param clazz the runtime class of a value of this site
+     * @return the metadata of the class
+     */
+    public CascadeMetadata resolve(Class<?> clazz) {
+        if (sealedClass != null) {
+            var permitted = this.permitted;
+            if (permitted == null) {
+                this.permitted = permitted = CascadeMetadata.ofPermittedSubclasses(sealedClass);
+            }
+            var metadata = permitted.get(clazz);
+            if (metadata != null) {
+                return metadata;
+            }
+        }
+        var entries = this.entries;
+        for (int i = 0; i < SIZE; i++) {
+            var entry = entries[i];
+            if (entry == null) {
+                break;
+            }
+            if (entry.type == clazz) {
+                return entry.metadata;
+            }
+        }
+        var metadata = CascadeMetadata.of(clazz);
+        if (parameterizedType != null) {
+            metadata = metadata.resolve(parameterizedType);
+        }
+        if (!megamorphic && isLoadedByAncestor(clazz)) {
+            install(clazz, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Whether this site has seen more than {@value #SIZE} classes outside the sealed hierarchy of its declared type.
+     *
+     * @return true if classes are resolved through the shared table, false otherwise
+     */
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private synchronized void install(Class<?> clazz, CascadeMetadata metadata) {
+        for (int i = 0; i < SIZE; i++) {
+            var entry = entries[i];
+            if (entry == null) {
+                entries[i] = new Entry(clazz, metadata);
+                return;
+            }
+            if (entry.type == clazz) {
+                return;
+            }
+        }
+        megamorphic = true;
+    }
+
+    private boolean isLoadedByAncestor(Class<?> clazz) {
+        if (declaredClass == null) {
+            return true;
+        }
+        var classLoader = clazz.getClassLoader();
+        for (var loader = declaredClass.getClassLoader(); ; loader = loader.getParent()) {
+            if (loader == classLoader) {
+                return true;
+            }
+            if (loader == null) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isDirect(AnnotatedType annotatedType) {
+        if (annotatedType instanceof AnnotatedParameterizedType
+                || annotatedType instanceof AnnotatedArrayType
+                || annotatedType instanceof AnnotatedTypeVariable
+                || annotatedType instanceof AnnotatedWildcardType
+                || annotatedType.getDeclaredAnnotation(Cascade.class) == null) {
+            return false;
+        }
+        for (Annotation annotation : annotatedType.getDeclaredAnnotations()) {
+            if (annotation.annotationType().isAnnotationPresent(Parse.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A class and its metadata. Entries are immutable, so they can be read without synchronization.
+     */
+    private record Entry(Class<?> type, CascadeMetadata metadata) {
+    }
+}
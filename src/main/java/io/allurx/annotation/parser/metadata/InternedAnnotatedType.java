@@ -0,0 +1,437 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.metadata;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The canonical form of a node of an {@link AnnotatedType} tree, created by {@link AnnotatedTypes#intern}. A node
+ * holds its type, its annotations and the canonical forms of its child nodes, and its hash code is computed once, so
+ * two nodes are compared by their hash codes and types and then by the identity of their annotations and children in
+ * the common case that both are interned. A node does not keep the annotated type it was created from, since the JDK
+ * implementation refers to the field, record component or method it was obtained from and so to its declaring class;
+ * the bounds of a type variable are obtained from the variable itself and interned on first use because they may refer
+ * to the variable.
+ *
+ * @author allurx
+ * @see AnnotatedTypes
+ */
+abstract sealed class InternedAnnotatedType implements AnnotatedType
+        permits InternedAnnotatedType.Plain,
+        InternedAnnotatedType.Parameterized,
+        InternedAnnotatedType.Array,
+        InternedAnnotatedType.Variable,
+        InternedAnnotatedType.Wildcard {
+
+    private static final InternedAnnotatedType[] NONE = new InternedAnnotatedType[0];
+
+    final Type type;
+    final InternedAnnotatedType[] children;
+    final AnnotationList annotations;
+    final Class<?> owner;
+    final InternedAnnotatedType ownerType;
+    private final int hash;
+    private volatile CascadeSite site;
+    private volatile Map<Class<?>, CascadeMetadata> resolvedMetadata;
+
+    private InternedAnnotatedType(Type type, Annotation[] annotations, InternedAnnotatedType ownerType, InternedAnnotatedType[] children, Class<?> owner) {
+        this.type = type;
+        this.ownerType = ownerType;
+        this.children = children;
+        this.annotations = new AnnotationList(annotations);
+        this.owner = owner;
+        int hash = getClass().hashCode();
+        hash = 31 * hash + type.hashCode();
+        hash = 31 * hash + this.annotations.hashCode();
+        hash = 31 * hash + Objects.hashCode(ownerType);
+        this.hash = 31 * hash + Arrays.hashCode(children);
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public AnnotatedType getAnnotatedOwnerType() {
+        return ownerType;
+    }
+
+    @Override
+    public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
+        return getDeclaredAnnotation(annotationClass);
+    }
+
+    @Override
+    public <T extends Annotation> T getDeclaredAnnotation(Class<T> annotationClass) {
+        Objects.requireNonNull(annotationClass);
+        for (var annotation : annotations.elements) {
+            if (annotation.annotationType() == annotationClass) {
+                return annotationClass.cast(annotation);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isAnnotationPresent(Class<? extends Annotation> annotationClass) {
+        return getDeclaredAnnotation(annotationClass) != null;
+    }
+
+    @Override
+    public Annotation[] getAnnotations() {
+        return annotations.elements.clone();
+    }
+
+    @Override
+    public Annotation[] getDeclaredAnnotations() {
+        return annotations.elements.clone();
+    }
+
+    /**
+     * The site of the values of this type, shared by every place the type is interned from.
+     *
+     * @return the site of this type
+     */
+    CascadeSite site() {
+        var site = this.site;
+        if (site == null) {
+            this.site = site = new CascadeSite(this);
+        }
+        return site;
+    }
+
+    /**
+     * The metadata of a runtime class as a value of this type, resolving it on first use. The metadata is only kept
+     * if the class loader of the class is an ancestor of the class loader of the {@link #owner} of this node, so that
+     * a node never keeps a class loader reachable that its own classes would not.
+     *
+     * @param clazz    the runtime class
+     * @param resolver resolves the metadata of the class
+     * @return the metadata of the class as a value of this type
+     */
+    CascadeMetadata resolvedMetadata(Class<?> clazz, Function<Class<?>, CascadeMetadata> resolver) {
+        var resolved = this.resolvedMetadata;
+        if (resolved != null) {
+            var metadata = resolved.get(clazz);
+            if (metadata != null) {
+                return metadata;
+            }
+        }
+        var metadata = resolver.apply(clazz);
+        if (owner != null && AnnotatedTypes.isAncestorOrSelf(clazz.getClassLoader(), owner.getClassLoader())) {
+            if (resolved == null) {
+                synchronized (this) {
+                    if (this.resolvedMetadata == null) {
+                        this.resolvedMetadata = new ConcurrentHashMap<>();
+                    }
+                    resolved = this.resolvedMetadata;
+                }
+            }
+            resolved.putIfAbsent(clazz, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Creates a node of the same kind with the same type and children and the specified annotations.
+     *
+     * @param annotations the annotations of the new node
+     * @param owner       the owner of the new node
+     * @return a new node that is not interned
+     */
+    abstract InternedAnnotatedType withAnnotations(Annotation[] annotations, Class<?> owner);
+
+    /**
+     * Describes this node in the format of the JDK.
+     *
+     * @return the description of this node
+     */
+    abstract String describe();
+
+    /**
+     * Describes a class or the raw type of a parameterized type, qualified by the owner type of this node if it has
+     * one.
+     */
+    String describe(Class<?> clazz) {
+        return ownerType == null
+                ? prefix() + clazz.getTypeName()
+                : ownerType + "." + prefix() + clazz.getSimpleName();
+    }
+
+    String prefix() {
+        var prefix = new StringBuilder();
+        for (var annotation : annotations.elements) {
+            prefix.append(annotation).append(' ');
+        }
+        return prefix.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof InternedAnnotatedType other
+                && hash == other.hash
+                && getClass() == other.getClass()
+                && type.equals(other.type)
+                && annotations.equals(other.annotations)
+                && Objects.equals(ownerType, other.ownerType)
+                && Arrays.equals(children, other.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+
+    /**
+     * A class or primitive type.
+     */
+    static final class Plain extends InternedAnnotatedType {
+
+        Plain(Type type, Annotation[] annotations, InternedAnnotatedType ownerType, Class<?> owner) {
+            super(type, annotations, ownerType, NONE, owner);
+        }
+
+        @Override
+        InternedAnnotatedType withAnnotations(Annotation[] annotations, Class<?> owner) {
+            return new Plain(type, annotations, ownerType, owner);
+        }
+
+        @Override
+        String describe() {
+            return type instanceof Class<?> clazz ? describe(clazz) : prefix() + type.getTypeName();
+        }
+    }
+
+    /**
+     * A parameterized type, whose children are its type arguments.
+     */
+    static final class Parameterized extends InternedAnnotatedType implements AnnotatedParameterizedType {
+
+        Parameterized(Type type, Annotation[] annotations, InternedAnnotatedType ownerType, InternedAnnotatedType[] typeArguments, Class<?> owner) {
+            super(type, annotations, ownerType, typeArguments, owner);
+        }
+
+        @Override
+        public AnnotatedType[] getAnnotatedActualTypeArguments() {
+            return children.clone();
+        }
+
+        @Override
+        InternedAnnotatedType withAnnotations(Annotation[] annotations, Class<?> owner) {
+            return new Parameterized(type, annotations, ownerType, children, owner);
+        }
+
+        @Override
+        String describe() {
+            var description = new StringBuilder(describe((Class<?>) ((ParameterizedType) type).getRawType())).append('<');
+            for (int i = 0; i < children.length; i++) {
+                description.append(i == 0 ? "" : ", ").append(children[i]);
+            }
+            return description.append('>').toString();
+        }
+    }
+
+    /**
+     * An array type, whose only child is its component type.
+     */
+    static final class Array extends InternedAnnotatedType implements AnnotatedArrayType {
+
+        Array(Type type, Annotation[] annotations, InternedAnnotatedType componentType, Class<?> owner) {
+            super(type, annotations, null, new InternedAnnotatedType[]{componentType}, owner);
+        }
+
+        @Override
+        InternedAnnotatedType withAnnotations(Annotation[] annotations, Class<?> owner) {
+            return new Array(type, annotations, children[0], owner);
+        }
+
+        @Override
+        String describe() {
+            return children[0] + " " + prefix() + "[]";
+        }
+
+        @Override
+        public AnnotatedType getAnnotatedGenericComponentType() {
+            return children[0];
+        }
+
+        @Override
+        public AnnotatedType getAnnotatedOwnerType() {
+            return null;
+        }
+    }
+
+    /**
+     * A type variable, whose bounds are interned on first use.
+     */
+    static final class Variable extends InternedAnnotatedType implements AnnotatedTypeVariable {
+
+        private volatile AnnotatedType[] bounds;
+
+        Variable(TypeVariable<?> type, Annotation[] annotations, Class<?> owner) {
+            super(type, annotations, null, NONE, owner);
+        }
+
+        @Override
+        InternedAnnotatedType withAnnotations(Annotation[] annotations, Class<?> owner) {
+            return new Variable((TypeVariable<?>) type, annotations, owner);
+        }
+
+        @Override
+        String describe() {
+            return prefix() + type.getTypeName();
+        }
+
+        @Override
+        public AnnotatedType[] getAnnotatedBounds() {
+            var bounds = this.bounds;
+            if (bounds == null) {
+                this.bounds = bounds = AnnotatedTypes.internAll(((TypeVariable<?>) type).getAnnotatedBounds());
+            }
+            return bounds.clone();
+        }
+
+        @Override
+        public AnnotatedType getAnnotatedOwnerType() {
+            return null;
+        }
+    }
+
+    /**
+     * A wildcard type, whose children are its upper bounds followed by its lower bounds.
+     */
+    static final class Wildcard extends InternedAnnotatedType implements AnnotatedWildcardType {
+
+        private final int upperBounds;
+
+        Wildcard(Type type, Annotation[] annotations, InternedAnnotatedType[] upperBounds, InternedAnnotatedType[] lowerBounds, Class<?> owner) {
+            super(type, annotations, null, concat(upperBounds, lowerBounds), owner);
+            this.upperBounds = upperBounds.length;
+        }
+
+        private Wildcard(Wildcard wildcard, Annotation[] annotations, Class<?> owner) {
+            super(wildcard.type, annotations, null, wildcard.children, owner);
+            this.upperBounds = wildcard.upperBounds;
+        }
+
+        @Override
+        InternedAnnotatedType withAnnotations(Annotation[] annotations, Class<?> owner) {
+            return new Wildcard(this, annotations, owner);
+        }
+
+        @Override
+        String describe() {
+            var description = new StringBuilder(prefix()).append('?');
+            if (upperBounds < children.length) {
+                description.append(" super ").append(children[upperBounds]);
+            } else if (upperBounds > 0 && children[0].type != Object.class) {
+                description.append(" extends ").append(children[0]);
+            }
+            return description.toString();
+        }
+
+        @Override
+        public AnnotatedType[] getAnnotatedUpperBounds() {
+            return Arrays.copyOf(children, upperBounds, AnnotatedType[].class);
+        }
+
+        @Override
+        public AnnotatedType[] getAnnotatedLowerBounds() {
+            return Arrays.copyOfRange(children, upperBounds, children.length, AnnotatedType[].class);
+        }
+
+        @Override
+        public AnnotatedType getAnnotatedOwnerType() {
+            return null;
+        }
+
+        private static InternedAnnotatedType[] concat(InternedAnnotatedType[] first, InternedAnnotatedType[] second) {
+            var all = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, all, first.length, second.length);
+            return all;
+        }
+    }
+
+    /**
+     * The annotations of a node, as an immutable list with a precomputed hash code, so that it is a cheap key of the
+     * caches that only depend on the annotations of a type.
+     */
+    static final class AnnotationList extends AbstractList<Annotation> implements RandomAccess {
+
+        final Annotation[] elements;
+        private final int hash;
+
+        AnnotationList(Annotation[] elements) {
+            this.elements = elements;
+            this.hash = Arrays.hashCode(elements);
+        }
+
+        @Override
+        public Annotation get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof AnnotationList other) {
+                if (hash != other.hash || elements.length != other.elements.length) {
+                    return false;
+                }
+                for (int i = 0; i < elements.length; i++) {
+                    if (elements[i] != other.elements[i] && !elements[i].equals(other.elements[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
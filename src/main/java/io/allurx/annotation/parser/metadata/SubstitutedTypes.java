@@ -0,0 +1,166 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.metadata;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * The {@link Type}s of {@link AnnotatedTypes#substitute substituted} annotated types. They are equal to, and have the
+ * same hash codes as, the types the JDK creates for the same declarations, so substituted and declared types can be
+ * compared with each other.
+ *
+ * @author allurx
+ */
+final class SubstitutedTypes {
+
+    private SubstitutedTypes() {
+    }
+
+    /**
+     * A parameterized type whose type arguments were substituted.
+     */
+    static final class Parameterized implements ParameterizedType {
+
+        private final Class<?> rawType;
+        private final Type[] actualTypeArguments;
+        private final Type ownerType;
+
+        Parameterized(Class<?> rawType, Type[] actualTypeArguments, Type ownerType) {
+            this.rawType = rawType;
+            this.actualTypeArguments = actualTypeArguments;
+            this.ownerType = ownerType;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return actualTypeArguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return ownerType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ParameterizedType other
+                    && rawType.equals(other.getRawType())
+                    && Objects.equals(ownerType, other.getOwnerType())
+                    && Arrays.equals(actualTypeArguments, other.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(actualTypeArguments) ^ Objects.hashCode(ownerType) ^ rawType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            var arguments = new StringJoiner(", ", "<", ">");
+            for (var argument : actualTypeArguments) {
+                arguments.add(argument.getTypeName());
+            }
+            return rawType.getName() + arguments;
+        }
+    }
+
+    /**
+     * An array type whose generic component type was substituted.
+     */
+    static final class GenericArray implements GenericArrayType {
+
+        private final Type genericComponentType;
+
+        GenericArray(Type genericComponentType) {
+            this.genericComponentType = genericComponentType;
+        }
+
+        @Override
+        public Type getGenericComponentType() {
+            return genericComponentType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GenericArrayType other && genericComponentType.equals(other.getGenericComponentType());
+        }
+
+        @Override
+        public int hashCode() {
+            return genericComponentType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return genericComponentType.getTypeName() + "[]";
+        }
+    }
+
+    /**
+     * A wildcard type whose bounds were substituted.
+     */
+    static final class Wildcard implements WildcardType {
+
+        private final Type[] upperBounds;
+        private final Type[] lowerBounds;
+
+        Wildcard(Type[] upperBounds, Type[] lowerBounds) {
+            this.upperBounds = upperBounds;
+            this.lowerBounds = lowerBounds;
+        }
+
+        @Override
+        public Type[] getUpperBounds() {
+            return upperBounds.clone();
+        }
+
+        @Override
+        public Type[] getLowerBounds() {
+            return lowerBounds.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WildcardType other
+                    && Arrays.equals(upperBounds, other.getUpperBounds())
+                    && Arrays.equals(lowerBounds, other.getLowerBounds());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(upperBounds) ^ Arrays.hashCode(lowerBounds);
+        }
+
+        @Override
+        public String toString() {
+            if (lowerBounds.length > 0) {
+                return "? super " + lowerBounds[0].getTypeName();
+            }
+            return upperBounds.length == 0 || upperBounds[0] == Object.class ? "?" : "? extends " + upperBounds[0].getTypeName();
+        }
+    }
+}
@@ -15,16 +15,16 @@
  */
 package io.allurx.annotation.parser.type;
 
-import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.ParseSink;
 import io.allurx.annotation.parser.util.Reflections;
 
 import java.lang.reflect.AnnotatedArrayType;
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Array;
-import java.util.Arrays;
 
 /**
- * Parser for {@link Array} types.
+ * Parser for {@link Array} types. The elements are parsed as one column, see {@link BatchColumns}, straight into the
+ * new array.
  *
  * @author allurx
  */
@@ -38,9 +38,14 @@ public class ArrayTypeParser implements TypeParser<Object[], AnnotatedArrayType>
 
     @Override
     public Object[] parse(Object[] input, AnnotatedArrayType annotatedArrayType) {
-        return Arrays.stream(input)
-                .map(o -> AnnotationParser.parse(o, annotatedArrayType.getAnnotatedGenericComponentType()))
-                .<Object>toArray(length -> Reflections.newArray(input.getClass().getComponentType(), length));
+        Object[] array = Reflections.newArray(input.getClass().getComponentType(), input.length);
+        BatchColumns.parse(input, annotatedArrayType.getAnnotatedGenericComponentType(), PathSelector.current().elements(), array);
+        return array;
+    }
+
+    @Override
+    public void emit(Object[] input, AnnotatedArrayType annotatedArrayType, ParseSink sink) {
+        ContainerEmitter.emitElements(input, annotatedArrayType.getAnnotatedGenericComponentType(), sink);
     }
 
     @Override
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.cache.BoundedCache;
+import io.allurx.annotation.parser.handler.AsyncAnnotationHandler;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs a parse whose {@link AsyncAnnotationHandler async handlers} are called concurrently.
+ * <p>
+ * The parse is run in rounds. Every call of a handler gets a slot, numbered in traversal order, which is the same
+ * in every round because the input is the same. In a round, a slot whose call has completed yields its result,
+ * while a slot without a call issues one; a synchronous handler yields its result right away, and an async handler
+ * yields an unresolved value. Handlers that follow an unresolved value on the same object are skipped. When a round
+ * has issued async calls, the next round starts once they have all completed, and the first round that issues no
+ * async call produces the parsed object. A parse with one async handler per value therefore takes two rounds,
+ * however many values there are, and every handler is called once per value, since later rounds replay the results
+ * of the calls of earlier rounds. Replayed rounds are not counted in the
+ * {@link AnnotationEngine#parseStatistics() parse statistics} of the engine and do not consult the result caches
+ * of {@link io.allurx.annotation.parser.handler.Memoized memoized} handlers again.
+ * <p>
+ * A slot whose input differs from the input of its recorded call, which can happen when an async result changes
+ * the structure that is traversed afterwards, issues a new call. The rounds after the first run on a virtual
+ * thread of their own rather than on the thread that completed the last call.
+ *
+ * @author allurx
+ * @see AnnotationEngine#parseAsync(Object, java.lang.reflect.AnnotatedType)
+ */
+public final class AsyncCalls {
+
+    /**
+     * The result of an async handler call that has not completed yet.
+     */
+    static final Object UNRESOLVED = new Object();
+
+    private static final ScopedValue<AsyncCalls> CURRENT = ScopedValue.newInstance();
+    private static final Executor ROUNDS = round -> Thread.ofVirtual().name("async-parse-round").start(round);
+
+    private final List<Call> calls = new ArrayList<>();
+    private final Map<ObjectTypeParser.ResultKey, CompletableFuture<Object>> shared = new HashMap<>();
+    private List<CompletableFuture<Object>> issued;
+    private int cursor;
+    private boolean replaying;
+
+    private AsyncCalls() {
+    }
+
+    /**
+     * Runs the parse in rounds until all async handler calls have completed.
+     *
+     * @param parse the parse to run
+     * @param <T>   the type of the parsed object
+     * @return a future that completes with the result of the final round
+     */
+    public static <T> CompletableFuture<T> run(Supplier<T> parse) {
+        return new AsyncCalls().round(parse);
+    }
+
+    /**
+     * Applies an async handler outside of a {@link #run(Supplier) run}, waiting for its result. Results of
+     * {@link io.allurx.annotation.parser.handler.Memoized memoized} handlers are taken from and added to the result
+     * cache.
+     *
+     * @param handler     the async handler
+     * @param input       the object to be handled
+     * @param annotation  the annotation present on the object
+     * @param resultCache the result cache of the handler, or null
+     * @return the result of the handler
+     */
+    static Object join(AsyncAnnotationHandler<Object, Annotation, Object> handler,
+                       Object input,
+                       Annotation annotation,
+                       BoundedCache<Object, Object> resultCache) {
+        var limiter = AnnotationEngine.current().concurrencyLimiter(handler);
+        return resultCache == null
+                ? limiter.submit(() -> handler.handleAsync(input, annotation)).join()
+                : resultCache.get(new ObjectTypeParser.ResultKey(input, annotation), key -> limiter.submit(() -> handler.handleAsync(input, annotation)).join());
+    }
+
+    /**
+     * Applies a handler while a {@link #run(Supplier) run} is in progress: the result of the call recorded in the slot
+     * of the handler is replayed if it has completed, otherwise a synchronous handler is applied and an async handler
+     * is called concurrently. Results of {@link io.allurx.annotation.parser.handler.Memoized memoized} handlers are
+     * taken from and added to the result cache, and equal inputs of a memoized async handler share one call per run.
+     *
+     * @param parsedInfo the handler and its result cache
+     * @param input      the object to be handled, which may be {@link #UNRESOLVED}
+     * @param annotation the annotation present on the object
+     * @return the result of the handler, or {@link #UNRESOLVED} if it has not completed yet
+     */
+    static Object handle(ObjectTypeParser.ParsedInfo parsedInfo, Object input, Annotation annotation) {
+        var asyncCalls = CURRENT.get();
+        int slot = asyncCalls.cursor++;
+        if (input == UNRESOLVED) {
+            return UNRESOLVED;
+        }
+        if (slot < asyncCalls.calls.size()) {
+            var call = asyncCalls.calls.get(slot);
+            if (call.annotation == annotation && Objects.equals(call.input, input) && call.result.isDone()) {
+                return call.result.join();
+            }
+        }
+        var resultCache = parsedInfo.resultCache();
+        CompletableFuture<Object> result;
+        if (!(parsedInfo.annotationHandler() instanceof AsyncAnnotationHandler<Object, Annotation, Object> handler)) {
+            result = CompletableFuture.completedFuture(parsedInfo.applySynchronously(input, annotation));
+        } else if (resultCache == null) {
+            var limiter = AnnotationEngine.current().concurrencyLimiter(handler);
+            result = limiter.submit(() -> handler.handleAsync(input, annotation));
+        } else {
+            var limiter = AnnotationEngine.current().concurrencyLimiter(handler);
+            var key = new ObjectTypeParser.ResultKey(input, annotation);
+            var cached = resultCache.getIfPresent(key);
+            result = cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : asyncCalls.shared.computeIfAbsent(key, k -> limiter.submit(() -> handler.handleAsync(input, annotation))
+                    .thenApply(value -> {
+                        resultCache.put(k, value);
+                        return value;
+                    }));
+        }
+        var call = new Call(input, annotation, result);
+        if (slot < asyncCalls.calls.size()) {
+            asyncCalls.calls.set(slot, call);
+        } else {
+            asyncCalls.calls.add(call);
+        }
+        if (result.isDone()) {
+            return result.join();
+        }
+        asyncCalls.issued.add(result);
+        return UNRESOLVED;
+    }
+
+    /**
+     * Whether a {@link #run(Supplier) run} is in progress on the current thread.
+     *
+     * @return true if async handler calls are being collected, false otherwise
+     */
+    static boolean isRunning() {
+        return CURRENT.isBound();
+    }
+
+    /**
+     * Whether the current thread is replaying a {@link #run(Supplier) run}, that is, running a round after the first,
+     * in which values that were already parsed are parsed again with the recorded results of their handlers.
+     *
+     * @return true if a round after the first is in progress, false otherwise
+     */
+    public static boolean isReplaying() {
+        return CURRENT.isBound() && CURRENT.get().replaying;
+    }
+
+    private <T> CompletableFuture<T> round(Supplier<T> parse) {
+        cursor = 0;
+        issued = new ArrayList<>();
+        T parsed;
+        try {
+            parsed = ScopedValue.where(CURRENT, this).call(parse::get);
+        } catch (RuntimeException | Error e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return issued.isEmpty()
+                ? CompletableFuture.completedFuture(parsed)
+                : CompletableFuture.allOf(issued.toArray(CompletableFuture<?>[]::new)).thenComposeAsync(v -> {
+            replaying = true;
+            return round(parse);
+        }, ROUNDS);
+    }
+
+    /**
+     * A recorded call of an async handler.
+     *
+     * @param input      the handled object
+     * @param annotation the annotation present on the object
+     * @param result     the result of the call
+     */
+    private record Call(Object input, Annotation annotation, CompletableFuture<Object> result) {
+    }
+}
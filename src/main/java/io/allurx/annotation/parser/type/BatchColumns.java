@@ -0,0 +1,253 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.handler.BatchAnnotationHandler;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+import io.allurx.annotation.parser.metadata.CascadeSite;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the elements of a container that share one {@link AnnotatedType} as a column.
+ * <p>
+ * If the only type parser that supports any non-null element is {@link ObjectTypeParser} and every handler it would
+ * apply is a non-memoized {@link BatchAnnotationHandler} whose annotations do not depend on the runtime class of the
+ * element, the non-null elements are gathered into a column, each handler is invoked once with the whole column and
+ * the results are scattered back to the positions of their inputs. Otherwise every element is parsed individually,
+ * as are the elements of an {@link AsyncCalls async parse}, whose handler calls are replayed one by one.
+ *
+ * @author allurx
+ * @see BatchAnnotationHandler
+ */
+final class BatchColumns {
+
+    private BatchColumns() {
+    }
+
+    /**
+     * Parses the specified values into an array if they are selected, or copies them into it otherwise. The array is
+     * either a new array, such as the array created by {@link ArrayTypeParser}, or the values themselves, which are
+     * then replaced by their parsed values, so that a container that owns a copy of its elements is parsed without
+     * another array.
+     *
+     * @param values        the values to parse, which are only modified if they are the parsed array
+     * @param annotatedType the {@link AnnotatedType} shared by all values
+     * @param selection     the {@link PathSelector selection} of the values, or null if they are not selected
+     * @param parsed        the values themselves or a new array of the same length, to store the parsed values in, in
+     *                      the same order as the input values
+     */
+    static void parse(Object[] values, AnnotatedType annotatedType, PathSelector.Node selection, Object[] parsed) {
+        if (selection == null) {
+            if (parsed != values) {
+                System.arraycopy(values, 0, parsed, 0, values.length);
+            }
+        } else if (selection == PathSelector.current()) {
+            parse(values, annotatedType, parsed);
+        } else {
+            PathSelector.within(selection, () -> parse(values, annotatedType, parsed));
+        }
+    }
+
+    /**
+     * Parses the keys and values of a map. The keys and values of the selected entries are parsed as two columns,
+     * unless the entries are {@link PathSelector selected} by key, in which case each entry is parsed with its own
+     * selection.
+     *
+     * @param map                the map
+     * @param keyAnnotatedType   the {@link AnnotatedType} of the keys
+     * @param valueAnnotatedType the {@link AnnotatedType} of the values
+     * @return the original keys, the parsed keys and the parsed values, in the iteration order of the map
+     */
+    static ParsedEntries parseEntries(Map<?, ?> map, AnnotatedType keyAnnotatedType, AnnotatedType valueAnnotatedType) {
+        var keys = new Object[map.size()];
+        var values = new Object[keys.length];
+        int size = 0;
+        for (var entry : map.entrySet()) {
+            if (size == keys.length) {
+                // The map grew while it was iterated
+                keys = Arrays.copyOf(keys, size * 2 + 1);
+                values = Arrays.copyOf(values, keys.length);
+            }
+            keys[size] = entry.getKey();
+            values[size++] = entry.getValue();
+        }
+        if (size < keys.length) {
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+        }
+        var selection = PathSelector.current();
+        if (!selection.selectsEntriesByKey()) {
+            var entrySelection = selection.entry(null);
+            var parsedKeys = new Object[keys.length];
+            parse(keys, keyAnnotatedType, entrySelection, parsedKeys);
+            parse(values, valueAnnotatedType, entrySelection, values);
+            return new ParsedEntries(keys, parsedKeys, values);
+        }
+        var parsedKeys = new Object[keys.length];
+        var parsedValues = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            var entrySelection = selection.entry(keys[i]);
+            if (entrySelection == null) {
+                parsedKeys[i] = keys[i];
+                parsedValues[i] = values[i];
+            } else {
+                var key = keys[i];
+                var value = values[i];
+                parsedKeys[i] = PathSelector.within(entrySelection, () -> AnnotationParser.parse(key, keyAnnotatedType));
+                parsedValues[i] = PathSelector.within(entrySelection, () -> AnnotationParser.parse(value, valueAnnotatedType));
+            }
+        }
+        return new ParsedEntries(keys, parsedKeys, parsedValues);
+    }
+
+    /**
+     * Parses the specified values into an array. Values that are parsed individually share one {@link CascadeSite},
+     * so that the metadata of the runtime classes of cascaded elements is resolved once per column, or once per
+     * annotated type if the annotated type is {@link AnnotatedTypes#intern interned}.
+     *
+     * @param values        the values to parse, which are only modified if they are the parsed array
+     * @param annotatedType the {@link AnnotatedType} shared by all values
+     * @param parsed        the array to store the parsed values in, in the same order as the input values
+     */
+    private static void parse(Object[] values, AnnotatedType annotatedType, Object[] parsed) {
+        var parsedInfos = batchParsedInfos(values, annotatedType);
+        if (parsedInfos != null) {
+            parseBatch(values, parsedInfos, parsed);
+            return;
+        }
+        var site = AnnotatedTypes.site(annotatedType);
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = CascadeTypeParser.dispatch(values[i], annotatedType, site);
+        }
+    }
+
+    /**
+     * Parses the specified values as a column if they can be parsed in batch.
+     *
+     * @param values        the values to parse, which are not modified
+     * @param annotatedType the {@link AnnotatedType} shared by all values
+     * @return the parsed values, in the same order as the input values, or null if they must be parsed individually
+     */
+    static Object[] parseBatch(Object[] values, AnnotatedType annotatedType) {
+        var parsedInfos = batchParsedInfos(values, annotatedType);
+        if (parsedInfos == null) {
+            return null;
+        }
+        var parsed = new Object[values.length];
+        parseBatch(values, parsedInfos, parsed);
+        return parsed;
+    }
+
+    /**
+     * Applies the handlers to the non-null values as one column and stores the results into the values themselves or
+     * a new array, leaving the positions of null values untouched. The column is a read-only view of the values if
+     * none of them is null, and of an array of the non-null values otherwise.
+     */
+    private static void parseBatch(Object[] values, List<ObjectTypeParser.ParsedInfo> parsedInfos, Object[] parsed) {
+        int size = 0;
+        for (var value : values) {
+            if (value != null) {
+                size++;
+            }
+        }
+        int[] indices = null;
+        var elements = values;
+        if (size < values.length) {
+            indices = new int[size];
+            elements = new Object[size];
+            for (int i = 0, j = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    indices[j] = i;
+                    elements[j++] = values[i];
+                }
+            }
+        }
+        List<Object> column = Collections.unmodifiableList(Arrays.asList(elements));
+        AnnotationEngine.current().recordNodes(size);
+        for (var parsedInfo : parsedInfos) {
+            @SuppressWarnings("unchecked")
+            var batchHandler = (BatchAnnotationHandler<Object, Annotation, Object>) parsedInfo.annotationHandler();
+            for (var annotation : parsedInfo.annotations()) {
+                var results = batchHandler.handleBatch(column, annotation);
+                if (results.size() != size) {
+                    throw new IllegalStateException("%s returned %d results for %d inputs.".formatted(batchHandler.getClass(), results.size(), size));
+                }
+                column = results;
+            }
+        }
+        for (int j = 0; j < size; j++) {
+            parsed[indices == null ? j : indices[j]] = column.get(j);
+        }
+    }
+
+    /**
+     * Resolves the handlers of the column if it can be parsed in batch.
+     *
+     * @param values        the values to parse
+     * @param annotatedType the {@link AnnotatedType} shared by all values
+     * @return the handlers to apply to the column, or null if the values must be parsed individually
+     */
+    private static List<ObjectTypeParser.ParsedInfo> batchParsedInfos(Object[] values, AnnotatedType annotatedType) {
+        if (ChangeRecorder.isRecording() || AsyncCalls.isRunning() || !PathSelector.current().isComplete()) {
+            return null;
+        }
+        var engine = AnnotationEngine.current();
+        var parsedInfos = engine.handlerPipeline(annotatedType).batchParsedInfos();
+        if (parsedInfos == null) {
+            return null;
+        }
+        var typeParsers = engine.orderedTypeParsers();
+        var parsedByObjectTypeParser = false;
+        for (int i = 0; i < typeParsers.size(); i++) {
+            parsedByObjectTypeParser |= typeParsers.get(i).getClass() == ObjectTypeParser.class;
+        }
+        if (!parsedByObjectTypeParser) {
+            return null;
+        }
+        var hasValues = false;
+        for (var value : values) {
+            if (value == null) {
+                continue;
+            }
+            hasValues = true;
+            for (int i = 0; i < typeParsers.size(); i++) {
+                var typeParser = typeParsers.get(i);
+                if (typeParser.getClass() != ObjectTypeParser.class && typeParser.support(value, annotatedType)) {
+                    return null;
+                }
+            }
+        }
+        return hasValues ? parsedInfos : null;
+    }
+
+    /**
+     * The entries of a parsed map.
+     *
+     * @param keys         the original keys
+     * @param parsedKeys   the parsed keys
+     * @param parsedValues the parsed values
+     */
+    record ParsedEntries(Object[] keys, Object[] parsedKeys, Object[] parsedValues) {
+    }
+}
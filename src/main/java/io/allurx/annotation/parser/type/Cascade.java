@@ -38,4 +38,11 @@ public @interface Cascade {
      * @return true if inherited {@link Field}s should be parsed, false otherwise
      */
     boolean inherited() default false;
+
+    /**
+     * Determines how an object that is not a record is copied.
+     *
+     * @return the copy strategy
+     */
+    CopyStrategy copy() default CopyStrategy.CONSTRUCT;
 }
@@ -15,20 +15,31 @@
  */
 package io.allurx.annotation.parser.type;
 
+import io.allurx.annotation.parser.AnnotationEngine;
 import io.allurx.annotation.parser.AnnotationParser;
-import io.allurx.annotation.parser.util.Instances;
+import io.allurx.annotation.parser.ParseSink;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.metadata.CascadeSite;
 import io.allurx.annotation.parser.util.Reflections;
-import io.allurx.kit.base.Conditional;
 
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.RecordComponent;
-import java.util.Arrays;
 
 /**
  * Cascade type parser, which only processes objects directly annotated with {@link Cascade}
- * and their non-constant {@link Field}s.
+ * and their non-constant {@link Field}s. The fields, record components and constructors of each class are resolved
+ * once and cached in {@link CascadeMetadata}. Fields that are not {@link PathSelector selected} are copied unparsed.
+ * Objects are copied as specified by {@link Cascade#copy()}. The fields and record components of a value declared as a
+ * parameterization of a generic class, such as {@code @Cascade Page<@Mask String>}, are parsed with the type arguments
+ * substituted for the type parameters of the class, see {@link CascadeMetadata#resolve(AnnotatedType)}.
+ * <p>
+ * Every field and record component remembers the runtime classes of its values in a {@link CascadeSite}. A value
+ * whose declared type is only annotated with {@link Cascade} is parsed directly with the metadata found there, without
+ * asking every type parser of the engine whether it supports the value, as long as the engine only has the
+ * {@link AnnotationEngine#hasOnlyDefaultTypeParsers() default type parsers}.
+ * <p>
+ * If the engine {@link AnnotationEngine.Builder#fanOut(int) fans out}, the fields and record components of an object
+ * that has enough of them are parsed concurrently, see {@link FanOut}.
  *
  * @author allurx
  * @see Cascade
@@ -43,43 +54,197 @@ public class CascadeTypeParser implements TypeParser<Object, AnnotatedType> {
 
     @Override
     public Object parse(Object input, AnnotatedType annotatedType) {
-        return Conditional.of(input.getClass())
-                .when(Class::isRecord)
-                .map(clazz -> {
-                    var recordComponents = clazz.getRecordComponents();
-                    var componentValues = Arrays.stream(recordComponents)
-                            .map(rc -> AnnotationParser.parse(Reflections.invokeMethod(input, rc.getAccessor()), rc.getAnnotatedType()))
-                            .toArray();
-                    var constructor = Reflections.getDeclaredConstructor(clazz,
-                                    Arrays.stream(recordComponents)
-                                            .map(RecordComponent::getType)
-                                            .toArray(Class<?>[]::new))
-                            .orElseThrow();
-                    return Reflections.newInstance(constructor, componentValues);
-                })
-                .elseIf(Class::isEnum)
-                .map(clazz -> input)
-                .orElse()
-                .map(clazz -> {
-                    var parsed = Instances.create(clazz);
-                    var cascade = annotatedType.getDeclaredAnnotation(Cascade.class);
-                    Reflections.listFields(clazz, true)
-                            .stream()
-                            .filter(CascadeTypeParser::isCopyableField)
-                            .forEach(field -> {
-                                var fieldValue = Reflections.getFieldValue(input, field);
-                                var shouldParse = isParsableField(field)
-                                        && (cascade.inherited() || field.getDeclaringClass() == clazz);
-                                Reflections.setFieldValue(
-                                        parsed,
-                                        field,
-                                        shouldParse
-                                                ? AnnotationParser.parse(fieldValue, field.getAnnotatedType())
-                                                : fieldValue);
-                            });
-                    return parsed;
-                })
-                .get();
+        return parse(input, annotatedType, CascadeMetadata.of(input.getClass()).resolve(annotatedType));
+    }
+
+    /**
+     * Parses a value of a field, record component or container element. If the value is only cascaded, it is parsed
+     * with the metadata cached in the site; otherwise it is parsed by the type parsers of the current engine.
+     *
+     * @param value         the value
+     * @param annotatedType the {@link AnnotatedType} of the value
+     * @param site          the site of the value
+     * @return the parsed value
+     */
+    static Object dispatch(Object value, AnnotatedType annotatedType, CascadeSite site) {
+        if (value != null && site.isDirect()) {
+            var engine = AnnotationEngine.current();
+            if (engine.hasOnlyDefaultTypeParsers()) {
+                engine.recordNodes(1);
+                return parse(value, annotatedType, site.resolve(value.getClass()));
+            }
+        }
+        return AnnotationParser.parse(value, annotatedType);
+    }
+
+    private static Object parse(Object input, AnnotatedType annotatedType, CascadeMetadata metadata) {
+        if (metadata.isRecord()) {
+            return parseRecord(input, metadata);
+        }
+        if (metadata.isEnum()) {
+            return input;
+        }
+        var cascade = annotatedType.getDeclaredAnnotation(Cascade.class);
+        var selection = PathSelector.current();
+        var fields = metadata.fields();
+        var fanOut = FanOut.open(fields.size());
+        if (cascade.copy() == CopyStrategy.CLONE && metadata.cloneMethod() != null) {
+            var parsed = Reflections.invokeMethod(input, metadata.cloneMethod());
+            if (fanOut != null) {
+                return parseFields(input, parsed, true, metadata, cascade, selection, fanOut);
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                var fm = fields.get(i);
+                // The clone already holds the fields that are not parsed
+                var fieldSelection = fm.shouldParse(cascade) ? selection.field(fm.field().getName()) : null;
+                if (fieldSelection == null) {
+                    continue;
+                }
+                var fieldValue = Reflections.getFieldValue(input, fm.field());
+                var parsedValue = parse(fieldValue, fm.annotatedType(), fm.site(), fieldSelection);
+                if (parsedValue != fieldValue) {
+                    Reflections.setFieldValue(parsed, fm.field(), parsedValue);
+                }
+            }
+            return parsed;
+        }
+        var parsed = AnnotationEngine.current().instanceRegistry().create(metadata.type());
+        if (fanOut != null) {
+            return parseFields(input, parsed, false, metadata, cascade, selection, fanOut);
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            var fm = fields.get(i);
+            var fieldValue = Reflections.getFieldValue(input, fm.field());
+            Reflections.setFieldValue(
+                    parsed,
+                    fm.field(),
+                    fm.shouldParse(cascade)
+                            ? parse(fieldValue, fm.annotatedType(), fm.site(), selection.field(fm.field().getName()))
+                            : fieldValue);
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses the record components of a record and creates the parsed record.
+     *
+     * @param input    the record
+     * @param metadata the metadata of the record
+     * @return the parsed record
+     */
+    private static Object parseRecord(Object input, CascadeMetadata metadata) {
+        var selection = PathSelector.current();
+        var components = metadata.recordComponents();
+        var fanOut = FanOut.open(components.size());
+        if (fanOut != null) {
+            return parseRecordComponents(input, metadata, selection, fanOut);
+        }
+        var componentValues = new Object[components.size()];
+        for (int i = 0; i < componentValues.length; i++) {
+            var rc = components.get(i);
+            componentValues[i] = parse(Reflections.invokeMethod(input, rc.accessor()), rc.annotatedType(), rc.site(), selection.field(rc.accessor().getName()));
+        }
+        return Reflections.newInstance(metadata.canonicalConstructor(), componentValues);
+    }
+
+    /**
+     * Parses the record components of a record concurrently and creates the parsed record.
+     *
+     * @param input     the record
+     * @param metadata  the metadata of the record
+     * @param selection the selection of the record
+     * @param fanOut    the fan-out the components are parsed with
+     * @return the parsed record
+     */
+    private static Object parseRecordComponents(Object input, CascadeMetadata metadata, PathSelector.Node selection, FanOut fanOut) {
+        var components = metadata.recordComponents();
+        var componentValues = new Object[components.size()];
+        for (int i = 0; i < componentValues.length; i++) {
+            var rc = components.get(i);
+            var value = Reflections.invokeMethod(input, rc.accessor());
+            var componentSelection = selection.field(rc.accessor().getName());
+            componentValues[i] = value;
+            if (value != null && componentSelection != null) {
+                fanOut.fork(i, () -> PathSelector.within(componentSelection, () -> dispatch(value, rc.annotatedType(), rc.site())));
+            } else {
+                componentValues[i] = parse(value, rc.annotatedType(), rc.site(), componentSelection);
+            }
+        }
+        fanOut.join(componentValues);
+        return Reflections.newInstance(metadata.canonicalConstructor(), componentValues);
+    }
+
+    /**
+     * Parses the fields of an object concurrently and sets them on the parsed object once all of them are parsed.
+     *
+     * @param input     the object
+     * @param parsed    the parsed object, either a clone of the input or a new instance
+     * @param cloned    whether the parsed object is a clone, in which case only the changed fields are set
+     * @param metadata  the metadata of the class of the object
+     * @param cascade   the {@link Cascade} annotation of the object
+     * @param selection the selection of the object
+     * @param fanOut    the fan-out the fields are parsed with
+     * @return the parsed object
+     */
+    private static Object parseFields(Object input, Object parsed, boolean cloned, CascadeMetadata metadata, Cascade cascade, PathSelector.Node selection, FanOut fanOut) {
+        var fields = metadata.fields();
+        var values = new Object[fields.size()];
+        var parsedValues = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            var fm = fields.get(i);
+            var fieldSelection = fm.shouldParse(cascade) ? selection.field(fm.field().getName()) : null;
+            if (cloned && fieldSelection == null) {
+                // The clone already holds the field, which stays null in both arrays and is not set
+                continue;
+            }
+            var value = Reflections.getFieldValue(input, fm.field());
+            values[i] = value;
+            parsedValues[i] = value;
+            if (!fm.shouldParse(cascade)) {
+                continue;
+            }
+            if (value != null && fieldSelection != null) {
+                fanOut.fork(i, () -> PathSelector.within(fieldSelection, () -> dispatch(value, fm.annotatedType(), fm.site())));
+            } else {
+                parsedValues[i] = parse(value, fm.annotatedType(), fm.site(), fieldSelection);
+            }
+        }
+        fanOut.join(parsedValues);
+        for (int i = 0; i < values.length; i++) {
+            if (!cloned || parsedValues[i] != values[i]) {
+                Reflections.setFieldValue(parsed, fields.get(i).field(), parsedValues[i]);
+            }
+        }
+        return parsed;
+    }
+
+    @Override
+    public void emit(Object input, AnnotatedType annotatedType, ParseSink sink) {
+        var metadata = CascadeMetadata.of(input.getClass()).resolve(annotatedType);
+        if (metadata.isEnum()) {
+            sink.value(input);
+            return;
+        }
+        sink.beginObject(metadata.type());
+        var selection = PathSelector.current();
+        if (metadata.isRecord()) {
+            metadata.recordComponents().forEach(rc -> {
+                sink.name(rc.accessor().getName());
+                emit(Reflections.invokeMethod(input, rc.accessor()), rc.annotatedType(), selection.field(rc.accessor().getName()), sink);
+            });
+        } else {
+            var cascade = annotatedType.getDeclaredAnnotation(Cascade.class);
+            metadata.fields().forEach(fm -> {
+                var fieldValue = Reflections.getFieldValue(input, fm.field());
+                sink.name(fm.field().getName());
+                if (fm.shouldParse(cascade)) {
+                    emit(fieldValue, fm.annotatedType(), selection.field(fm.field().getName()), sink);
+                } else {
+                    sink.value(fieldValue);
+                }
+            });
+        }
+        sink.end();
     }
 
     @Override
@@ -92,14 +257,37 @@ public class CascadeTypeParser implements TypeParser<Object, AnnotatedType> {
         return LOWEST_PRIORITY;
     }
 
-    private static boolean isCopyableField(Field field) {
-        return !field.isSynthetic()
-                && !Modifier.isStatic(field.getModifiers());
+    /**
+     * Parses the value of a field or record component if it is selected.
+     *
+     * @param value         the value
+     * @param annotatedType the {@link AnnotatedType} of the field or record component
+     * @param site          the site of the field or record component
+     * @param selection     the {@link PathSelector selection} of the value, or null if it is not selected
+     * @return the parsed value, or the value itself if it is not selected
+     */
+    private static Object parse(Object value, AnnotatedType annotatedType, CascadeSite site, PathSelector.Node selection) {
+        if (selection == null) {
+            return value;
+        }
+        return selection == PathSelector.current()
+                ? dispatch(value, annotatedType, site)
+                : PathSelector.within(selection, () -> dispatch(value, annotatedType, site));
     }
 
-    private static boolean isParsableField(Field field) {
-        int modifiers = field.getModifiers();
-        return !Modifier.isFinal(modifiers)
-                && !Modifier.isTransient(modifiers);
+    /**
+     * Emits the value of a field or record component if it is selected, and reports it as it is otherwise.
+     *
+     * @param value         the value
+     * @param annotatedType the {@link AnnotatedType} of the field or record component
+     * @param selection     the {@link PathSelector selection} of the value, or null if it is not selected
+     * @param sink          the sink
+     */
+    private static void emit(Object value, AnnotatedType annotatedType, PathSelector.Node selection, ParseSink sink) {
+        if (selection == null) {
+            sink.value(value);
+        } else {
+            PathSelector.within(selection, () -> AnnotationParser.emit(value, annotatedType, sink));
+        }
     }
 }
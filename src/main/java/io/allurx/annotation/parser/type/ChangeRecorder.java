@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.Change;
+import io.allurx.annotation.parser.ParseSink;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Records the values changed by handlers while an input is {@link AnnotationEngine#emit emitted}. The recorder is
+ * the sink of the emit, so it knows the path of the value that is being parsed, and {@link ObjectTypeParser}
+ * reports every handler result that differs from its input.
+ * <p>
+ * The entries of a map are recorded at the path of their original key, which {@link ContainerEmitter} reports
+ * through {@link #entry(Object)} before the key is parsed, rather than at the path of the parsed key that the sink
+ * receives.
+ * <p>
+ * Values in a subtree that cannot be streamed, such as a container with handlers of its own, are reported at the
+ * path of the subtree. Columns are not parsed in batch while recording, so that every change has its own path.
+ *
+ * @author allurx
+ * @see AnnotationEngine#changes(Object, java.lang.reflect.AnnotatedType)
+ */
+public final class ChangeRecorder implements ParseSink {
+
+    private static final ScopedValue<ChangeRecorder> CURRENT = ScopedValue.newInstance();
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final List<Change> changes = new ArrayList<>();
+
+    private ChangeRecorder() {
+    }
+
+    /**
+     * Records the changes made while emitting to the recorder.
+     *
+     * @param emit emits the input to the specified sink
+     * @return the changes, in traversal order
+     */
+    public static List<Change> record(Consumer<ParseSink> emit) {
+        var recorder = new ChangeRecorder();
+        ScopedValue.where(CURRENT, recorder).run(() -> emit.accept(recorder));
+        return List.copyOf(recorder.changes);
+    }
+
+    /**
+     * Whether changes are being recorded on the current thread.
+     *
+     * @return true if changes are being recorded, false otherwise
+     */
+    static boolean isRecording() {
+        return CURRENT.isBound();
+    }
+
+    /**
+     * Records a handler result if changes are being recorded and it differs from the input.
+     *
+     * @param originalValue the input of the handler
+     * @param newValue      the result of the handler
+     * @param annotation    the annotation the handler was applied for
+     */
+    static void changed(Object originalValue, Object newValue, Annotation annotation) {
+        if (CURRENT.isBound() && !Objects.equals(originalValue, newValue)) {
+            var recorder = CURRENT.get();
+            recorder.changes.add(new Change(recorder.path(), originalValue, newValue, annotation));
+        }
+    }
+
+    /**
+     * Starts the entry of the specified key if changes are being recorded, before the key is parsed, so that the
+     * changes of the key and of its value are recorded at the path of the original key. The following
+     * {@link #key(Object) parsed key} does not change the path.
+     *
+     * @param originalKey the key of the entry in the input
+     */
+    static void entry(Object originalKey) {
+        if (CURRENT.isBound()) {
+            var frame = CURRENT.get().frames.element();
+            frame.segment = "[" + originalKey + "]";
+            frame.entryStarted = true;
+        }
+    }
+
+    @Override
+    public void beginObject(Class<?> type) {
+        frames.push(new Frame(false));
+    }
+
+    @Override
+    public void name(String name) {
+        frames.element().segment = "." + name;
+    }
+
+    @Override
+    public void beginArray(int size) {
+        frames.push(new Frame(true));
+    }
+
+    @Override
+    public void beginMap(int size) {
+        frames.push(new Frame(false));
+    }
+
+    @Override
+    public void key(Object key) {
+        var frame = frames.element();
+        if (frame.entryStarted) {
+            frame.entryStarted = false;
+        } else {
+            frame.segment = "[" + key + "]";
+        }
+    }
+
+    @Override
+    public void value(Object value) {
+        next();
+    }
+
+    @Override
+    public void end() {
+        frames.pop();
+        next();
+    }
+
+    private void next() {
+        var frame = frames.peek();
+        if (frame != null && frame.indexed) {
+            frame.index++;
+        }
+    }
+
+    private String path() {
+        var path = new StringBuilder("$");
+        for (Iterator<Frame> it = frames.descendingIterator(); it.hasNext(); ) {
+            var frame = it.next();
+            if (frame.indexed) {
+                path.append('[').append(frame.index).append(']');
+            } else if (frame.segment != null) {
+                path.append(frame.segment);
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * An object, array or map that is being emitted.
+     */
+    private static final class Frame {
+
+        private final boolean indexed;
+        private int index;
+        private String segment;
+        private boolean entryStarted;
+
+        private Frame(boolean indexed) {
+            this.indexed = indexed;
+        }
+    }
+}
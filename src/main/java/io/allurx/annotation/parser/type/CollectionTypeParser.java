@@ -15,17 +15,22 @@
  */
 package io.allurx.annotation.parser.type;
 
-import io.allurx.annotation.parser.AnnotationParser;
-import io.allurx.annotation.parser.util.Instances;
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.ParseSink;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
 import io.allurx.annotation.parser.util.Reflections;
 
 import java.lang.reflect.AnnotatedParameterizedType;
 import java.lang.reflect.AnnotatedType;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.EnumSet;
 
 /**
- * Generic {@link Collection} type parser.
+ * Generic {@link Collection} type parser. The elements are copied into an array once, parsed in place as one column,
+ * see {@link BatchColumns}, and added to the new collection.
+ * {@link EnumSet}s are parsed by {@link EnumSetTypeParser}.
  *
  * @author allurx
  */
@@ -39,14 +44,24 @@ public class CollectionTypeParser implements TypeParser<Collection<Object>, Anno
 
     @Override
     public Collection<Object> parse(Collection<Object> input, AnnotatedParameterizedType annotatedParameterizedType) {
-        return input.stream()
-                .map(o -> AnnotationParser.parse(o, annotatedParameterizedType.getAnnotatedActualTypeArguments()[0]))
-                .collect(Collectors.toCollection(() -> Instances.create(Reflections.getClass(input))));
+        var elements = input.toArray();
+        BatchColumns.parse(elements, AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), PathSelector.current().elements(), elements);
+        Collection<Object> collection = AnnotationEngine.current().instanceRegistry().create(Reflections.getClass(input));
+        if (collection instanceof ArrayList<Object> list) {
+            list.ensureCapacity(elements.length);
+        }
+        Collections.addAll(collection, elements);
+        return collection;
+    }
+
+    @Override
+    public void emit(Collection<Object> input, AnnotatedParameterizedType annotatedParameterizedType, ParseSink sink) {
+        ContainerEmitter.emitElements(input.toArray(), AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), sink);
     }
 
     @Override
     public boolean support(Object input, AnnotatedType annotatedType) {
-        return input instanceof Collection && annotatedType instanceof AnnotatedParameterizedType;
+        return input instanceof Collection && !(input instanceof EnumSet) && annotatedType instanceof AnnotatedParameterizedType;
     }
 
     @Override
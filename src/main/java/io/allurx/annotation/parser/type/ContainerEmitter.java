@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.ParseSink;
+
+import java.lang.reflect.AnnotatedType;
+import java.util.Map;
+
+/**
+ * Reports the elements and entries of containers to a {@link ParseSink}. Elements that can be parsed as a column
+ * are parsed in batch and reported as values; all others are emitted one by one, so nested containers and
+ * {@link Cascade} objects are streamed as well. Elements and entries that are not {@link PathSelector selected}
+ * are reported as they are.
+ *
+ * @author allurx
+ * @see BatchColumns
+ */
+final class ContainerEmitter {
+
+    private ContainerEmitter() {
+    }
+
+    /**
+     * Reports the elements of a collection or an array as an array.
+     *
+     * @param elements      the elements
+     * @param annotatedType the {@link AnnotatedType} of the elements
+     * @param sink          the sink
+     */
+    static void emitElements(Object[] elements, AnnotatedType annotatedType, ParseSink sink) {
+        sink.beginArray(elements.length);
+        var selection = PathSelector.current().elements();
+        if (selection == null) {
+            for (var element : elements) {
+                sink.value(element);
+            }
+        } else {
+            PathSelector.within(selection, () -> {
+                var parsed = BatchColumns.parseBatch(elements, annotatedType);
+                for (int i = 0; i < elements.length; i++) {
+                    if (parsed != null) {
+                        sink.value(parsed[i]);
+                    } else {
+                        AnnotationParser.emit(elements[i], annotatedType, sink);
+                    }
+                }
+            });
+        }
+        sink.end();
+    }
+
+    /**
+     * Reports the entries of a map as a map. The keys of selected entries are parsed, their values are emitted. The
+     * original key of an entry is reported to the {@link ChangeRecorder} before the key is parsed, so that the changes
+     * of the key and of the value are recorded at the path of the original key.
+     *
+     * @param map                the map
+     * @param keyAnnotatedType   the {@link AnnotatedType} of the keys
+     * @param valueAnnotatedType the {@link AnnotatedType} of the values
+     * @param sink               the sink
+     */
+    static void emitEntries(Map<?, ?> map, AnnotatedType keyAnnotatedType, AnnotatedType valueAnnotatedType, ParseSink sink) {
+        var entries = map.entrySet().toArray(new Map.Entry<?, ?>[0]);
+        var selection = PathSelector.current();
+        Object[] parsedValues = null;
+        if (!selection.selectsEntriesByKey() && selection.entry(null) != null) {
+            var values = new Object[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                values[i] = entries[i].getValue();
+            }
+            parsedValues = PathSelector.within(selection.entry(null), () -> BatchColumns.parseBatch(values, valueAnnotatedType));
+        }
+        sink.beginMap(entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            var key = entries[i].getKey();
+            var value = entries[i].getValue();
+            var entrySelection = selection.entry(key);
+            if (entrySelection == null) {
+                sink.key(key);
+                sink.value(value);
+            } else if (parsedValues != null) {
+                ChangeRecorder.entry(key);
+                sink.key(PathSelector.within(entrySelection, () -> AnnotationParser.parse(key, keyAnnotatedType)));
+                sink.value(parsedValues[i]);
+            } else {
+                PathSelector.within(entrySelection, () -> {
+                    ChangeRecorder.entry(key);
+                    sink.key(AnnotationParser.parse(key, keyAnnotatedType));
+                    AnnotationParser.emit(value, valueAnnotatedType, sink);
+                });
+            }
+        }
+        sink.end();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+/**
+ * Defines how {@link CascadeTypeParser} copies an object that is not a record.
+ *
+ * @author allurx
+ * @see Cascade#copy()
+ */
+public enum CopyStrategy {
+
+    /**
+     * Creates a new instance with the instance registry of the current engine and sets every copyable field.
+     */
+    CONSTRUCT,
+
+    /**
+     * Takes a shallow copy with the {@code clone()} method of a {@link Cloneable} class and only sets the fields whose
+     * parsed value differs from the original value. No constructor or field initializer runs, and fields that are not
+     * parsed are never written. Classes that are not {@link Cloneable} or do not override {@code clone()} are copied as
+     * with {@link #CONSTRUCT}.
+     */
+    CLONE
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.ParseSink;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.util.EnumMap;
+
+/**
+ * {@link EnumMap} type parser. {@link EnumMap} has no no-argument constructor, so instead of being created and
+ * filled entry by entry like other maps, the parsed map is a {@link EnumMap#EnumMap(EnumMap) copy} of the input,
+ * which copies its value array. The parsed values are then stored in place; if the parse changes any key, the copy
+ * is cleared and refilled with the parsed entries, none of whose keys may be null. The keys and the values are each
+ * parsed as one column, see {@link BatchColumns}. Like the {@link EnumSetTypeParser}, it has one of the highest
+ * priorities, so that it does not take the order of a user type parser.
+ *
+ * @author allurx
+ */
+public class EnumMapTypeParser implements TypeParser<EnumMap<?, ?>, AnnotatedParameterizedType> {
+
+    /**
+     * Default constructor
+     */
+    public EnumMapTypeParser() {
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public EnumMap<?, ?> parse(EnumMap<?, ?> input, AnnotatedParameterizedType annotatedParameterizedType) {
+        var entries = BatchColumns.parseEntries(input, AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), AnnotatedTypes.typeArgument(annotatedParameterizedType, 1));
+        var keys = entries.keys();
+        var parsedKeys = entries.parsedKeys();
+        var parsedValues = entries.parsedValues();
+        EnumMap map = new EnumMap<>(input);
+        for (int i = 0; i < keys.length; i++) {
+            if (parsedKeys[i] != keys[i]) {
+                map.clear();
+                break;
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (parsedKeys[i] == null) {
+                throw new IllegalStateException("The key %s of an EnumMap was parsed to null, which an EnumMap cannot hold.".formatted(keys[i]));
+            }
+            map.put(parsedKeys[i], parsedValues[i]);
+        }
+        return map;
+    }
+
+    @Override
+    public void emit(EnumMap<?, ?> input, AnnotatedParameterizedType annotatedParameterizedType, ParseSink sink) {
+        ContainerEmitter.emitEntries(input, AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), AnnotatedTypes.typeArgument(annotatedParameterizedType, 1), sink);
+    }
+
+    @Override
+    public boolean support(Object input, AnnotatedType annotatedType) {
+        return input instanceof EnumMap && annotatedType instanceof AnnotatedParameterizedType;
+    }
+
+    @Override
+    public int order() {
+        return HIGHEST_PRIORITY + 3;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.ParseSink;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.util.EnumSet;
+
+/**
+ * {@link EnumSet} type parser. {@link EnumSet} has no public constructor, so instead of being created and filled
+ * element by element like other collections, the parsed set is a {@link EnumSet#clone() clone} of the input, which
+ * copies its bit vector. If the parse changes any element, the clone is cleared and refilled with the parsed
+ * elements, none of which may be parsed to null. The elements are parsed as one column, see {@link BatchColumns}.
+ * Since only one type parser is kept per {@link Sortable#order() order}, its order sits next to the
+ * {@link WildcardTypeParser}'s, away from the orders user type parsers choose.
+ *
+ * @author allurx
+ */
+public class EnumSetTypeParser implements TypeParser<EnumSet<?>, AnnotatedParameterizedType> {
+
+    /**
+     * Default constructor
+     */
+    public EnumSetTypeParser() {
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public EnumSet<?> parse(EnumSet<?> input, AnnotatedParameterizedType annotatedParameterizedType) {
+        var elements = input.toArray();
+        var parsed = new Object[elements.length];
+        BatchColumns.parse(elements, AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), PathSelector.current().elements(), parsed);
+        EnumSet set = input.clone();
+        for (int i = 0; i < elements.length; i++) {
+            if (parsed[i] != elements[i]) {
+                set.clear();
+                for (int j = 0; j < parsed.length; j++) {
+                    if (parsed[j] == null) {
+                        throw new IllegalStateException("The element %s of an EnumSet was parsed to null, which an EnumSet cannot hold.".formatted(elements[j]));
+                    }
+                    set.add(parsed[j]);
+                }
+                break;
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public void emit(EnumSet<?> input, AnnotatedParameterizedType annotatedParameterizedType, ParseSink sink) {
+        ContainerEmitter.emitElements(input.toArray(), AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), sink);
+    }
+
+    @Override
+    public boolean support(Object input, AnnotatedType annotatedType) {
+        return input instanceof EnumSet && annotatedType instanceof AnnotatedParameterizedType;
+    }
+
+    @Override
+    public int order() {
+        return HIGHEST_PRIORITY + 2;
+    }
+}
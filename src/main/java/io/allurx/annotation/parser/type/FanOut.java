@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Parses the fields or record components of one {@link Cascade} object concurrently, each on a virtual thread of its
+ * own, when the current engine {@link AnnotationEngine.Builder#fanOut(int) fans out}.
+ * <p>
+ * The parses are {@link #fork(int, Supplier) forked} while the object is read and {@link #join(Object[]) joined}
+ * before it is assembled, so no parse outlives the object it belongs to. The first parse that fails interrupts the
+ * others and its failure is rethrown by {@link #join(Object[])} once all of them have stopped. Parses continue with
+ * the current engine bound, and each binds its own {@link PathSelector selection}.
+ *
+ * @author allurx
+ * @see AnnotationEngine.Builder#fanOut(int)
+ */
+final class FanOut {
+
+    private final AnnotationEngine engine;
+    private final int threshold;
+    private int[] indices;
+    private Supplier<?>[] parses;
+    private int size;
+
+    private FanOut(AnnotationEngine engine, int threshold, int capacity) {
+        this.engine = engine;
+        this.threshold = threshold;
+        this.indices = new int[capacity];
+        this.parses = new Supplier<?>[capacity];
+    }
+
+    /**
+     * Opens a fan-out for an object with the specified number of fields or record components if the current engine
+     * fans out objects that wide, no {@link AsyncCalls async parse} is in progress, since the calls of an async parse
+     * are collected in traversal order, and no changes are {@link ChangeRecorder recorded}, since the recorder is not
+     * bound on the threads of the forks.
+     *
+     * @param width the number of fields or record components of the object
+     * @return a new fan-out, or null if the object is parsed sequentially
+     */
+    static FanOut open(int width) {
+        var engine = AnnotationEngine.current();
+        int threshold = engine.fanOutThreshold();
+        return threshold > 0 && width >= threshold && !AsyncCalls.isRunning() && !ChangeRecorder.isRecording() ? new FanOut(engine, threshold, width) : null;
+    }
+
+    /**
+     * Adds the parse of a field or record component.
+     *
+     * @param index the position of the field or record component, where {@link #join(Object[])} stores the result
+     * @param parse the parse
+     */
+    void fork(int index, Supplier<?> parse) {
+        if (size == parses.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+            parses = Arrays.copyOf(parses, size * 2);
+        }
+        indices[size] = index;
+        parses[size++] = parse;
+    }
+
+    /**
+     * Runs the forked parses and waits for all of them. If fewer parses were forked than the fan-out threshold the
+     * fan-out was opened with, they are run one after another on the current thread.
+     *
+     * @param results the array the result of each parse is stored in, at the index it was forked with
+     * @throws RuntimeException the failure of the first parse that failed
+     */
+    void join(Object[] results) {
+        if (size < threshold) {
+            for (int i = 0; i < size; i++) {
+                results[indices[i]] = parses[i].get();
+            }
+            return;
+        }
+        var failure = new AtomicReference<Throwable>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < size && failure.get() == null; i++) {
+                int index = indices[i];
+                var parse = parses[i];
+                try {
+                    executor.execute(() -> {
+                        try {
+                            results[index] = engine.callAsCurrent(parse);
+                        } catch (Throwable t) {
+                            if (failure.compareAndSet(null, t)) {
+                                executor.shutdownNow();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+        }
+        var t = failure.get();
+        if (t instanceof RuntimeException e) {
+            throw e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        if (t != null) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.AsyncAnnotationHandler;
+import io.allurx.annotation.parser.handler.BatchAnnotationHandler;
+import io.allurx.annotation.parser.handler.FusableStringAnnotationHandler;
+import io.allurx.annotation.parser.handler.Location;
+import io.allurx.annotation.parser.handler.Parse;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The handlers of an {@link AnnotatedType} composed into one function, in the order their annotations appear.
+ * <p>
+ * A pipeline is compiled once per engine for each distinct list of declared annotations, see
+ * {@link AnnotationEngine#handlerPipeline}: the
+ * {@link Parse} annotations are resolved, the singleton handler instances are obtained and the result caches of
+ * {@link io.allurx.annotation.parser.handler.Memoized memoized} handlers are looked up, so applying it only calls the
+ * handlers. A pipeline is shared by all threads, like the handlers themselves. Consecutive
+ * {@link FusableStringAnnotationHandler}s are fused into one stage that edits a buffer of its own for each value and
+ * creates a single String. Annotations resolved at {@link Location#PRESENT} or {@link Location#ASSOCIATED} also
+ * depend on the runtime class of the input; such annotated types are not compiled, and {@link ObjectTypeParser}
+ * resolves their handlers for every input instead. A pipeline whose handlers are all {@link BatchAnnotationHandler}s
+ * also keeps them for {@link BatchColumns}, so that whether a column can be parsed in batch is known without resolving
+ * the handlers again.
+ *
+ * @author allurx
+ * @see ObjectTypeParser
+ */
+public final class HandlerPipeline {
+
+    private static final HandlerPipeline EMPTY = new HandlerPipeline(new Stage[0], List.of());
+
+    private final Stage[] stages;
+    private final List<ObjectTypeParser.ParsedInfo> batchParsedInfos;
+
+    private HandlerPipeline(Stage[] stages, List<ObjectTypeParser.ParsedInfo> batchParsedInfos) {
+        this.stages = stages;
+        this.batchParsedInfos = batchParsedInfos;
+    }
+
+    /**
+     * The compiled pipeline that applies no handler, shared by all annotated types without {@link Parse} annotations.
+     *
+     * @return the empty pipeline
+     */
+    public static HandlerPipeline empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compiles the handlers of the specified annotated type.
+     *
+     * @param engine        the engine whose instances and result caches are used
+     * @param annotatedType the annotated type
+     * @return the compiled pipeline
+     */
+    public static HandlerPipeline compile(AnnotationEngine engine, AnnotatedType annotatedType) {
+        var stages = new ArrayList<Stage>();
+        var parsedInfos = new ArrayList<ObjectTypeParser.ParsedInfo>();
+        var batch = true;
+        for (var declaredAnnotation : annotatedType.getDeclaredAnnotations()) {
+            var parse = declaredAnnotation.annotationType().getDeclaredAnnotation(Parse.class);
+            if (parse == null) {
+                continue;
+            }
+            for (var location : parse.location()) {
+                if (location == Location.PRESENT || location == Location.ASSOCIATED) {
+                    return new HandlerPipeline(null, null);
+                }
+            }
+            @SuppressWarnings("unchecked")
+            var annotationHandler = (AnnotationHandler<Object, Annotation, Object>) engine.instanceRegistry().create(parse.handler());
+            var annotations = ObjectTypeParser.resolveAnnotations(null, annotatedType, parse);
+            var parsedInfo = new ObjectTypeParser.ParsedInfo(parse, annotations, annotationHandler, engine.handlerCache(parse.handler()).orElse(null));
+            parsedInfos.add(parsedInfo);
+            batch &= annotationHandler instanceof BatchAnnotationHandler && parsedInfo.resultCache() == null;
+            for (var annotation : annotations) {
+                stages.add(new Handle(parsedInfo, annotation));
+            }
+        }
+        return stages.isEmpty() ? EMPTY : new HandlerPipeline(fuse(stages), batch ? List.copyOf(parsedInfos) : null);
+    }
+
+    /**
+     * Whether the handlers are the same for every input, so that the pipeline can be {@link #apply applied}.
+     *
+     * @return true if the pipeline is compiled, false if the handlers depend on the runtime class of the input
+     */
+    public boolean isCompiled() {
+        return stages != null;
+    }
+
+    /**
+     * The handlers of the pipeline if all of them can be applied to a column of values at once, that is, if the
+     * pipeline is compiled and every handler is a non-memoized {@link BatchAnnotationHandler}.
+     *
+     * @return the handlers to apply to a column, in order, or null if the values must be handled one by one
+     */
+    List<ObjectTypeParser.ParsedInfo> batchParsedInfos() {
+        return batchParsedInfos;
+    }
+
+    /**
+     * Whether the pipeline applies no handler.
+     *
+     * @return true if the pipeline is compiled and empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return stages != null && stages.length == 0;
+    }
+
+    /**
+     * Applies every handler to the input in turn.
+     *
+     * @param input the non-null input
+     * @return the result of the last handler, or the input if there is no handler
+     * @throws IllegalStateException if the pipeline is not compiled
+     */
+    public Object apply(Object input) {
+        if (stages == null) {
+            throw new IllegalStateException("The handlers of this pipeline depend on the runtime class of the input.");
+        }
+        var value = input;
+        for (var stage : stages) {
+            value = stage.apply(value);
+        }
+        return value;
+    }
+
+    /**
+     * Replaces every run of at least two fusable handlers with one fused stage.
+     */
+    private static Stage[] fuse(List<Stage> stages) {
+        var fused = new ArrayList<Stage>(stages.size());
+        int i = 0;
+        while (i < stages.size()) {
+            int end = i;
+            while (end < stages.size() && isFusable(stages.get(end))) {
+                end++;
+            }
+            if (end - i >= 2) {
+                fused.add(new FusedStrings(stages.subList(i, end).toArray(Handle[]::new)));
+                i = end;
+            } else {
+                fused.add(stages.get(i++));
+            }
+        }
+        return fused.toArray(Stage[]::new);
+    }
+
+    private static boolean isFusable(Stage stage) {
+        return stage instanceof Handle(var parsedInfo, var ignored)
+                && parsedInfo.annotationHandler() instanceof FusableStringAnnotationHandler
+                && !(parsedInfo.annotationHandler() instanceof AsyncAnnotationHandler)
+                && parsedInfo.resultCache() == null;
+    }
+
+    /**
+     * One step of a pipeline.
+     */
+    private sealed interface Stage permits Handle, FusedStrings {
+
+        Object apply(Object value);
+    }
+
+    /**
+     * Applies one handler for one annotation.
+     *
+     * @param parsedInfo the handler and its result cache
+     * @param annotation the annotation
+     */
+    private record Handle(ObjectTypeParser.ParsedInfo parsedInfo, Annotation annotation) implements Stage {
+
+        @Override
+        public Object apply(Object value) {
+            return parsedInfo.handle(value, annotation);
+        }
+
+        /**
+         * Applies the handler, which is fusable, to a buffer.
+         *
+         * @param buffer the buffer holding the value
+         */
+        @SuppressWarnings("unchecked")
+        private void edit(StringBuilder buffer) {
+            AnnotationHandler<?, ?, ?> annotationHandler = parsedInfo.annotationHandler();
+            ((FusableStringAnnotationHandler<Annotation>) annotationHandler).handle(buffer, annotation);
+        }
+    }
+
+    /**
+     * Applies consecutive fusable handlers to one buffer, which is local to the call so that it is never shared between
+     * threads, virtual or not, or with a handler that parses another value. Each handler is applied on its own when
+     * changes are recorded, since every intermediate value is reported then, while an async parse is running, since
+     * its calls are replayed one by one, and when the value is not a resolved String. If the handlers leave the value
+     * unchanged, the value itself is returned, so that the callers that compare a parsed value with its input by
+     * identity, such as the clone of a cascaded object, see it as unchanged.
+     *
+     * @param handles the fused handlers
+     */
+    private record FusedStrings(Handle[] handles) implements Stage {
+
+        @Override
+        public Object apply(Object value) {
+            if (!(value instanceof String string) || ChangeRecorder.isRecording() || AsyncCalls.isRunning()) {
+                for (var handle : handles) {
+                    value = handle.apply(value);
+                }
+                return value;
+            }
+            var buffer = new StringBuilder(string.length() + 16).append(string);
+            for (var handle : handles) {
+                handle.edit(buffer);
+            }
+            return string.contentEquals(buffer) ? string : buffer.toString();
+        }
+    }
+}
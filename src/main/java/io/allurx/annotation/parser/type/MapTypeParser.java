@@ -15,16 +15,30 @@
  */
 package io.allurx.annotation.parser.type;
 
-import io.allurx.annotation.parser.AnnotationParser;
-import io.allurx.annotation.parser.util.Instances;
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.ParseSink;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
 import io.allurx.annotation.parser.util.Reflections;
 
 import java.lang.reflect.AnnotatedParameterizedType;
 import java.lang.reflect.AnnotatedType;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
- * Generic {@link Map} type parser.
+ * Generic {@link Map} type parser. The keys and the values are each parsed as one column, see {@link BatchColumns}.
+ * The parsed map keeps the comparator of a {@link SortedMap} and the ordering mode of a {@link LinkedHashMap}. {@link EnumMap}s are parsed by {@link EnumMapTypeParser}.
  *
  * @author allurx
  */
@@ -38,22 +52,237 @@ public class MapTypeParser implements TypeParser<Map<Object, Object>, AnnotatedP
 
     @Override
     public Map<Object, Object> parse(Map<Object, Object> input, AnnotatedParameterizedType annotatedParameterizedType) {
-        AnnotatedType[] annotatedActualTypeArguments = annotatedParameterizedType.getAnnotatedActualTypeArguments();
-        Map<Object, Object> parsed = Instances.create(Reflections.getClass(input));
-        input.forEach((key, value) -> parsed.put(
-                AnnotationParser.parse(key, annotatedActualTypeArguments[0]),
-                AnnotationParser.parse(value, annotatedActualTypeArguments[1])
-        ));
-        return parsed;
+        var entries = BatchColumns.parseEntries(input, AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), AnnotatedTypes.typeArgument(annotatedParameterizedType, 1));
+        return rebuild(input, entries.keys(), entries.parsedKeys(), entries.parsedValues());
+    }
+
+    @Override
+    public void emit(Map<Object, Object> input, AnnotatedParameterizedType annotatedParameterizedType, ParseSink sink) {
+        ContainerEmitter.emitEntries(input, AnnotatedTypes.typeArgument(annotatedParameterizedType, 0), AnnotatedTypes.typeArgument(annotatedParameterizedType, 1), sink);
     }
 
     @Override
     public boolean support(Object input, AnnotatedType annotatedType) {
-        return input instanceof Map && annotatedType instanceof AnnotatedParameterizedType;
+        return input instanceof Map && !(input instanceof EnumMap) && annotatedType instanceof AnnotatedParameterizedType;
     }
 
     @Override
     public int order() {
         return 1;
     }
+
+    /**
+     * Creates the parsed map. A {@link SortedMap} keeps the comparator of the input: a {@link TreeMap} or
+     * {@link ConcurrentSkipListMap} is built in linear time from the parsed entries when the parsed keys are still
+     * strictly ascending, which is always the case when a parse leaves the keys unchanged, and a subclass of either is
+     * cloned and cleared. A {@link LinkedHashMap}, including a subclass, is cloned, so it keeps its ordering mode,
+     * including access order, and the values of the clone are replaced in place when the parse leaves the keys
+     * unchanged. Any other map is created by the instance registry of the current engine and filled entry by entry.
+     *
+     * @param input        the input map
+     * @param keys         the keys of the input, in its iteration order
+     * @param parsedKeys   the parsed keys, in the iteration order of the input
+     * @param parsedValues the parsed values, in the iteration order of the input
+     * @return the parsed map
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> rebuild(Map<Object, Object> input, Object[] keys, Object[] parsedKeys, Object[] parsedValues) {
+        var mapClass = input.getClass();
+        if (input instanceof SortedMap<Object, Object> sortedInput) {
+            var comparator = sortedInput.comparator();
+            var ascending = isStrictlyAscending(parsedKeys, comparator);
+            if (ascending && mapClass == TreeMap.class) {
+                return new TreeMap<>(new SortedEntries(parsedKeys, parsedValues, comparator));
+            }
+            if (ascending && mapClass == ConcurrentSkipListMap.class) {
+                return new ConcurrentSkipListMap<>(new SortedEntries(parsedKeys, parsedValues, comparator));
+            }
+            SortedMap<Object, Object> parsed;
+            if (mapClass == TreeMap.class) {
+                parsed = new TreeMap<>(comparator);
+            } else if (mapClass == ConcurrentSkipListMap.class) {
+                parsed = new ConcurrentSkipListMap<>(comparator);
+            } else if (input instanceof TreeMap<Object, Object> treeMap) {
+                parsed = (SortedMap<Object, Object>) treeMap.clone();
+                parsed.clear();
+            } else if (input instanceof ConcurrentSkipListMap<Object, Object> skipListMap) {
+                parsed = skipListMap.clone();
+                parsed.clear();
+            } else {
+                parsed = (SortedMap<Object, Object>) AnnotationEngine.current().instanceRegistry().create(Reflections.getClass(input));
+            }
+            if (ascending) {
+                parsed.putAll(new SortedEntries(parsedKeys, parsedValues, comparator));
+            } else {
+                putAll(parsed, parsedKeys, parsedValues);
+            }
+            return parsed;
+        }
+        if (input instanceof LinkedHashMap<Object, Object> linkedHashMap) {
+            // A clone is the only way to obtain the ordering mode of a LinkedHashMap without reflection. Putting the
+            // unchanged keys in iteration order keeps that order, also in access order.
+            var parsed = (Map<Object, Object>) linkedHashMap.clone();
+            if (!isSame(keys, parsedKeys)) {
+                parsed.clear();
+            }
+            putAll(parsed, parsedKeys, parsedValues);
+            return parsed;
+        }
+        Map<Object, Object> parsed = AnnotationEngine.current().instanceRegistry().create(Reflections.getClass(input));
+        putAll(parsed, parsedKeys, parsedValues);
+        return parsed;
+    }
+
+    private static void putAll(Map<Object, Object> map, Object[] keys, Object[] values) {
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+    }
+
+    private static boolean isSame(Object[] keys, Object[] parsedKeys) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != parsedKeys[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isStrictlyAscending(Object[] keys, Comparator<Object> comparator) {
+        for (int i = 1; i < keys.length; i++) {
+            int result = comparator == null
+                    ? ((Comparable<Object>) keys[i - 1]).compareTo(keys[i])
+                    : comparator.compare(keys[i - 1], keys[i]);
+            if (result >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An immutable {@link SortedMap} of entries that are already strictly ascending by the comparator, from which
+     * {@link TreeMap#TreeMap(SortedMap)} and {@link ConcurrentSkipListMap#ConcurrentSkipListMap(SortedMap)} build a map
+     * in linear time. Keys are looked up by binary search, and the views of a range are snapshots in a {@link TreeMap},
+     * which are indistinguishable from views since neither map can be modified.
+     */
+    private static final class SortedEntries extends AbstractMap<Object, Object> implements SortedMap<Object, Object> {
+
+        private final Object[] keys;
+        private final Object[] values;
+        private final Comparator<Object> comparator;
+
+        private SortedEntries(Object[] keys, Object[] values, Comparator<Object> comparator) {
+            this.keys = keys;
+            this.values = values;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Comparator<Object> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = indexOf(key);
+            return index >= 0 ? values[index] : null;
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return new AbstractSet<>() {
+
+                @Override
+                public Iterator<Entry<Object, Object>> iterator() {
+                    return new Iterator<>() {
+
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < keys.length;
+                        }
+
+                        @Override
+                        public Entry<Object, Object> next() {
+                            if (index >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            var entry = new SimpleImmutableEntry<>(keys[index], values[index]);
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+        }
+
+        @Override
+        public Object firstKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[0];
+        }
+
+        @Override
+        public Object lastKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[keys.length - 1];
+        }
+
+        @Override
+        public SortedMap<Object, Object> subMap(Object fromKey, Object toKey) {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(this).subMap(fromKey, toKey));
+        }
+
+        @Override
+        public SortedMap<Object, Object> headMap(Object toKey) {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(this).headMap(toKey));
+        }
+
+        @Override
+        public SortedMap<Object, Object> tailMap(Object fromKey) {
+            return Collections.unmodifiableSortedMap(new TreeMap<>(this).tailMap(fromKey));
+        }
+
+        @SuppressWarnings("unchecked")
+        private int indexOf(Object key) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int result = comparator == null
+                        ? ((Comparable<Object>) keys[middle]).compareTo(key)
+                        : comparator.compare(keys[middle], key);
+                if (result < 0) {
+                    low = middle + 1;
+                } else if (result > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+    }
 }
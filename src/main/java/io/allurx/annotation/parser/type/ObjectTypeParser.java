@@ -15,22 +15,29 @@
  */
 package io.allurx.annotation.parser.type;
 
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.cache.BoundedCache;
 import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.AsyncAnnotationHandler;
 import io.allurx.annotation.parser.handler.Location;
+import io.allurx.annotation.parser.handler.Memoized;
 import io.allurx.annotation.parser.handler.Parse;
-import io.allurx.annotation.parser.util.Instances;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedType;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 
 /**
  * Finds all annotations marked with {@link Parse} on the object and parses the object in the order these annotations appear.
  * This parser iterates through each annotation on the input to handle parsing using specified handlers.
+ * The handlers of an annotated type are composed once per engine into a {@link HandlerPipeline}, unless they depend
+ * on the runtime class of the input.
+ * Results of {@link Memoized} handlers are served from the result cache of the current engine when possible.
+ * Values that are only on the way to the branches selected by a {@link PathSelector} are not handled.
  *
  * @author allurx
  * @see Parse
@@ -46,13 +53,22 @@ public class ObjectTypeParser implements TypeParser<Object, AnnotatedType> {
 
     @Override
     public Object parse(Object input, AnnotatedType annotatedType) {
-        return Arrays.stream(annotatedType.getDeclaredAnnotations())
-                .map(annotation -> annotation.annotationType().getDeclaredAnnotation(Parse.class))
-                .filter(Objects::nonNull)
-                .map(parse -> parseAnnotation(input, annotatedType, parse))
-                .reduce(input, (o, parsedInfo) -> parsedInfo.annotations.stream()
-                                .reduce(o, parsedInfo.annotationHandler::handle, (v1, v2) -> null),
-                        (v1, v2) -> null);
+        if (!PathSelector.current().isComplete()) {
+            return input;
+        }
+        var pipeline = AnnotationEngine.current().handlerPipeline(annotatedType);
+        Object parsed;
+        if (pipeline.isCompiled()) {
+            parsed = pipeline.apply(input);
+        } else {
+            parsed = input;
+            for (var parsedInfo : parsedInfos(input, annotatedType)) {
+                for (var annotation : parsedInfo.annotations) {
+                    parsed = parsedInfo.handle(parsed, annotation);
+                }
+            }
+        }
+        return parsed == AsyncCalls.UNRESOLVED ? input : parsed;
     }
 
     @Override
@@ -65,6 +81,40 @@ public class ObjectTypeParser implements TypeParser<Object, AnnotatedType> {
         return LOWEST_PRIORITY - 1;
     }
 
+    /**
+     * Whether the annotated type has any annotation marked with {@link Parse}, that is, whether this parser would
+     * apply any handler to a value of the type.
+     *
+     * @param annotatedType {@link AnnotatedType} representing the annotated type of a value.
+     * @return true if the annotated type has handler annotations, false otherwise.
+     */
+    public static boolean hasParseAnnotations(AnnotatedType annotatedType) {
+        for (var annotation : AnnotatedTypes.annotations(annotatedType)) {
+            if (annotation.annotationType().isAnnotationPresent(Parse.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the handlers to apply to the input, in the order their annotations appear.
+     *
+     * @param input         The object to be parsed.
+     * @param annotatedType {@link AnnotatedType} representing the annotated type of the input.
+     * @return {@link ParsedInfo}s of all {@link Parse} meta-annotated annotations on the annotated type.
+     */
+    static List<ParsedInfo> parsedInfos(Object input, AnnotatedType annotatedType) {
+        var parsedInfos = new ArrayList<ParsedInfo>();
+        for (var annotation : AnnotatedTypes.annotations(annotatedType)) {
+            var parse = annotation.annotationType().getDeclaredAnnotation(Parse.class);
+            if (parse != null) {
+                parsedInfos.add(parseAnnotation(input, annotatedType, parse));
+            }
+        }
+        return parsedInfos;
+    }
+
     /**
      * Parses all annotations on the input that meet the specified conditions based on {@link Parse}.
      *
@@ -73,37 +123,133 @@ public class ObjectTypeParser implements TypeParser<Object, AnnotatedType> {
      * @param parse         {@link Parse} indicating how annotations should be handled.
      * @return {@link ParsedInfo} containing parsed annotations and their handler.
      */
-    private ParsedInfo parseAnnotation(Object input, AnnotatedType annotatedType, Parse parse) {
+    private static ParsedInfo parseAnnotation(Object input, AnnotatedType annotatedType, Parse parse) {
+        var engine = AnnotationEngine.current();
         @SuppressWarnings("unchecked")
-        var annotationHandler = (AnnotationHandler<Object, Annotation, Object>) Instances.create(parse.handler());
+        var annotationHandler = (AnnotationHandler<Object, Annotation, Object>) engine.instanceRegistry().create(parse.handler());
+        var annotations = resolveAnnotations(input.getClass(), annotatedType, parse);
+        return new ParsedInfo(parse, annotations, annotationHandler, engine.handlerCache(parse.handler()).orElse(null));
+    }
+
+    /**
+     * Resolves the annotations of a {@link Parse} at each of its {@link Location}s.
+     *
+     * @param inputClass    The runtime class of the input, or null if it is unknown, in which case annotations on the
+     *                      class are not resolved.
+     * @param annotatedType {@link AnnotatedType} representing the annotated type of the input.
+     * @param parse         {@link Parse} indicating how annotations should be handled.
+     * @return All annotations that meet the parsing conditions.
+     */
+    static List<Annotation> resolveAnnotations(Class<?> inputClass, AnnotatedType annotatedType, Parse parse) {
         var annotations = new ArrayList<Annotation>();
         for (Location location : parse.location()) {
             switch (location) {
-                case DIRECTLY_PRESENT ->
-                        Optional.ofNullable(annotatedType.getDeclaredAnnotation(parse.annotation())).ifPresent(annotations::add);
+                case DIRECTLY_PRESENT -> addIfPresent(annotations, annotatedType.getDeclaredAnnotation(parse.annotation()));
                 case INDIRECTLY_PRESENT ->
-                        annotations.addAll(Arrays.asList(annotatedType.getDeclaredAnnotationsByType(parse.annotation())));
+                        Collections.addAll(annotations, annotatedType.getDeclaredAnnotationsByType(parse.annotation()));
                 case PRESENT -> {
-                    Optional.ofNullable(annotatedType.getAnnotation(parse.annotation())).ifPresent(annotations::add);
-                    Optional.ofNullable(input.getClass().getAnnotation(parse.annotation())).ifPresent(annotations::add);
+                    addIfPresent(annotations, annotatedType.getAnnotation(parse.annotation()));
+                    if (inputClass != null) {
+                        addIfPresent(annotations, inputClass.getAnnotation(parse.annotation()));
+                    }
                 }
                 case ASSOCIATED -> {
-                    annotations.addAll(Arrays.asList(annotatedType.getAnnotationsByType(parse.annotation())));
-                    annotations.addAll(Arrays.asList(input.getClass().getAnnotationsByType(parse.annotation())));
+                    Collections.addAll(annotations, annotatedType.getAnnotationsByType(parse.annotation()));
+                    if (inputClass != null) {
+                        Collections.addAll(annotations, inputClass.getAnnotationsByType(parse.annotation()));
+                    }
                 }
             }
         }
-        return new ParsedInfo(annotations, annotationHandler);
+        return annotations;
+    }
+
+    private static void addIfPresent(List<Annotation> annotations, Annotation annotation) {
+        if (annotation != null) {
+            annotations.add(annotation);
+        }
     }
 
     /**
      * Information about parsed annotations, containing relevant annotations and their handler.
      *
+     * @param parse             The {@link Parse} the annotations were found with.
      * @param annotations       All annotations that meet the parsing conditions.
      * @param annotationHandler The handler for the annotations.
+     * @param resultCache       The result cache of a {@link Memoized} handler, or null.
+     */
+    record ParsedInfo(Parse parse,
+                      List<Annotation> annotations,
+                      AnnotationHandler<Object, Annotation, Object> annotationHandler,
+                      BoundedCache<Object, Object> resultCache) {
+
+        /**
+         * Applies the handler and reports its result to the {@link ChangeRecorder} if changes are recorded.
+         *
+         * @param input      The object to be handled.
+         * @param annotation The annotation present on the object.
+         * @return The result of the handler.
+         */
+        Object handle(Object input, Annotation annotation) {
+            var result = apply(input, annotation);
+            if (result != AsyncCalls.UNRESOLVED) {
+                ChangeRecorder.changed(input, result, annotation);
+            }
+            return result;
+        }
+
+        /**
+         * Applies the handler, consulting the result cache first if the handler is memoized. While an async parse
+         * is {@link AsyncCalls#isRunning() running}, every handler is applied through {@link AsyncCalls}, which
+         * replays the results of earlier rounds; otherwise an async handler is waited for.
+         *
+         * @param input      The object to be handled.
+         * @param annotation The annotation present on the object.
+         * @return The result of the handler.
+         */
+        private Object apply(Object input, Annotation annotation) {
+            if (AsyncCalls.isRunning()) {
+                return AsyncCalls.handle(this, input, annotation);
+            }
+            if (annotationHandler instanceof AsyncAnnotationHandler<Object, Annotation, Object> asyncHandler) {
+                return AsyncCalls.join(asyncHandler, input, annotation, resultCache);
+            }
+            return applySynchronously(input, annotation);
+        }
+
+        /**
+         * Applies the handler, which is synchronous, consulting the result cache first if the handler is memoized.
+         *
+         * @param input      The object to be handled.
+         * @param annotation The annotation present on the object.
+         * @return The result of the handler.
+         */
+        Object applySynchronously(Object input, Annotation annotation) {
+            return resultCache == null
+                    ? annotationHandler.handle(input, annotation)
+                    : resultCache.get(new ResultKey(input, annotation), key -> annotationHandler.handle(input, annotation));
+        }
+    }
+
+    /**
+     * The key of a memoized handler result: the input by equality and the annotation by identity.
+     *
+     * @param input      The handled object.
+     * @param annotation The annotation present on the object.
      */
-    record ParsedInfo(List<Annotation> annotations,
-                      AnnotationHandler<Object, Annotation, Object> annotationHandler) {
+    record ResultKey(Object input, Annotation annotation) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ResultKey(Object otherInput, Annotation otherAnnotation)
+                    && annotation == otherAnnotation
+                    && Objects.equals(input, otherInput);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(input) + System.identityHashCode(annotation);
+        }
     }
 }
 
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.Explanation;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.util.Reflections;
+
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Builds the {@link Explanation} of how an engine parses a type.
+ * <p>
+ * With a sample input, the sample is walked the way the type parsers of the engine walk it, without parsing it: every
+ * value is offered to every type parser, and the values of one runtime class at one path are merged into one node
+ * whose counts add up. Without a sample, the declared type is expanded instead, and only the built-in type parsers
+ * are predicted from it. The permitted subclasses of a sealed {@link Cascade} type are then expanded one by one,
+ * while other abstract {@link Cascade} types and values claimed by unknown type parsers are never prunable, since
+ * what is below them is not known.
+ *
+ * @author allurx
+ * @see AnnotationEngine#explain(Object, AnnotatedType)
+ */
+public final class ParseExplainer {
+
+    private final AnnotationEngine engine;
+    private final Set<Class<?>> expanding = new HashSet<>();
+
+    private ParseExplainer(AnnotationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Explains how the specified engine parses a type.
+     *
+     * @param engine        the engine
+     * @param sample        a sample input whose parse is counted, or null to explain the declared type only
+     * @param annotatedType the {@link AnnotatedType} of the input
+     * @return the root of the explanation
+     */
+    public static Explanation explain(AnnotationEngine engine, Object sample, AnnotatedType annotatedType) {
+        var explainer = new ParseExplainer(engine);
+        Node root;
+        if (sample == null) {
+            root = new Node("$", annotatedType, rawClass(annotatedType.getType()));
+            explainer.expand(root);
+        } else {
+            root = new Node("$", annotatedType, sample.getClass());
+            explainer.visit(root, sample);
+        }
+        return root.toExplanation(sample != null);
+    }
+
+    /**
+     * Walks a value of the sample.
+     *
+     * @param node  the node of the value
+     * @param value the non-null value
+     */
+    @SuppressWarnings("unchecked")
+    private void visit(Node node, Object value) {
+        var annotatedType = node.annotatedType;
+        node.nodes++;
+        if (node.typeParsers == null) {
+            node.typeParsers = engine.typeParsers()
+                    .stream()
+                    .filter(tp -> tp.support(value, annotatedType))
+                    .toList();
+            node.handlers = node.typeParsers.stream().anyMatch(ObjectTypeParser.class::isInstance)
+                    ? bindings(node.type, annotatedType)
+                    : List.of();
+        }
+        for (var typeParser : node.typeParsers) {
+            switch (typeParser) {
+                case TypeVariableParser ignored -> {
+                    var bounds = ((AnnotatedTypeVariable) annotatedType).getAnnotatedBounds();
+                    for (int i = 0; i < bounds.length; i++) {
+                        visit(node.child(node.path, i, bounds[i], node.type), value);
+                    }
+                }
+                case WildcardTypeParser ignored -> {
+                    var bounds = bounds((AnnotatedWildcardType) annotatedType);
+                    for (int i = 0; i < bounds.size(); i++) {
+                        visit(node.child(node.path, i, bounds.get(i), node.type), value);
+                    }
+                }
+                case CollectionTypeParser ignored -> visitElements(node, ((Collection<Object>) value).toArray(), typeArgument(annotatedType, 0));
+                case EnumSetTypeParser ignored -> visitElements(node, ((Collection<Object>) value).toArray(), typeArgument(annotatedType, 0));
+                case ArrayTypeParser ignored -> visitElements(node, (Object[]) value, ((AnnotatedArrayType) annotatedType).getAnnotatedGenericComponentType());
+                case MapTypeParser ignored -> visitEntries(node, (Map<Object, Object>) value);
+                case EnumMapTypeParser ignored -> visitEntries(node, (Map<Object, Object>) value);
+                case ObjectTypeParser ignored -> {
+                }
+                case CascadeTypeParser ignored -> visitCascade(node, value);
+                default -> node.opaque = true;
+            }
+        }
+    }
+
+    private void visitElements(Node node, Object[] elements, AnnotatedType elementType) {
+        node.allocations++;
+        for (var element : elements) {
+            if (element != null) {
+                visit(node.child(node.path + "[*]", 0, elementType, element.getClass()), element);
+            }
+        }
+    }
+
+    private void visitEntries(Node node, Map<Object, Object> map) {
+        node.allocations++;
+        var keyType = typeArgument(node.annotatedType, 0);
+        var valueType = typeArgument(node.annotatedType, 1);
+        map.forEach((key, value) -> {
+            if (key != null) {
+                visit(node.child(node.path + "{*}", 0, keyType, key.getClass()), key);
+            }
+            if (value != null) {
+                visit(node.child(node.path + "{*}", 1, valueType, value.getClass()), value);
+            }
+        });
+    }
+
+    private void visitCascade(Node node, Object value) {
+        var metadata = CascadeMetadata.of(value.getClass()).resolve(node.annotatedType);
+        if (metadata.isEnum()) {
+            return;
+        }
+        node.allocations++;
+        if (metadata.isRecord()) {
+            node.reflectiveAccesses += metadata.recordComponents().size() + 1;
+            for (var rc : metadata.recordComponents()) {
+                var componentValue = Reflections.invokeMethod(value, rc.accessor());
+                if (componentValue != null) {
+                    visit(node.child(node.path + "." + rc.accessor().getName(), 0, rc.annotatedType(), componentValue.getClass()), componentValue);
+                }
+            }
+            return;
+        }
+        var cascade = node.annotatedType.getDeclaredAnnotation(Cascade.class);
+        var parsedFields = metadata.fields().stream().filter(fm -> fm.shouldParse(cascade)).toList();
+        node.reflectiveAccesses += cascade.copy() == CopyStrategy.CLONE && metadata.cloneMethod() != null
+                ? 1 + 2L * parsedFields.size()
+                : 1 + 2L * metadata.fields().size();
+        for (var fm : parsedFields) {
+            var fieldValue = Reflections.getFieldValue(value, fm.field());
+            if (fieldValue != null) {
+                visit(node.child(node.path + "." + fm.field().getName(), 0, fm.annotatedType(), fieldValue.getClass()), fieldValue);
+            }
+        }
+    }
+
+    /**
+     * Expands a declared type.
+     *
+     * @param node the node of the type
+     */
+    private void expand(Node node) {
+        var annotatedType = node.annotatedType;
+        var type = node.type;
+        node.typeParsers = engine.typeParsers()
+                .stream()
+                .filter(tp -> claims(tp, annotatedType, type))
+                .toList();
+        node.handlers = node.typeParsers.stream().anyMatch(ObjectTypeParser.class::isInstance)
+                ? bindings(type, annotatedType)
+                : List.of();
+        for (var typeParser : node.typeParsers) {
+            switch (typeParser) {
+                case TypeVariableParser ignored -> {
+                    var bounds = ((AnnotatedTypeVariable) annotatedType).getAnnotatedBounds();
+                    for (int i = 0; i < bounds.length; i++) {
+                        expandChild(node, node.path, i, bounds[i]);
+                    }
+                }
+                case WildcardTypeParser ignored -> {
+                    var bounds = bounds((AnnotatedWildcardType) annotatedType);
+                    for (int i = 0; i < bounds.size(); i++) {
+                        expandChild(node, node.path, i, bounds.get(i));
+                    }
+                }
+                case CollectionTypeParser ignored -> expandChild(node, node.path + "[*]", 0, typeArgument(annotatedType, 0));
+                case EnumSetTypeParser ignored -> expandChild(node, node.path + "[*]", 0, typeArgument(annotatedType, 0));
+                case ArrayTypeParser ignored ->
+                        expandChild(node, node.path + "[*]", 0, ((AnnotatedArrayType) annotatedType).getAnnotatedGenericComponentType());
+                case MapTypeParser ignored -> {
+                    expandChild(node, node.path + "{*}", 0, typeArgument(annotatedType, 0));
+                    expandChild(node, node.path + "{*}", 1, typeArgument(annotatedType, 1));
+                }
+                case EnumMapTypeParser ignored -> {
+                    expandChild(node, node.path + "{*}", 0, typeArgument(annotatedType, 0));
+                    expandChild(node, node.path + "{*}", 1, typeArgument(annotatedType, 1));
+                }
+                case CascadeTypeParser cascadeTypeParser -> expandCascade(node, cascadeTypeParser);
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void expandChild(Node node, String path, int index, AnnotatedType annotatedType) {
+        expand(node.child(path, index, annotatedType, rawClass(annotatedType.getType())));
+    }
+
+    private void expandCascade(Node node, CascadeTypeParser cascadeTypeParser) {
+        var type = node.type;
+        if (type == null) {
+            node.opaque = true;
+        } else if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            if (type.isSealed()) {
+                for (var subclass : concreteSubclasses(type)) {
+                    var subclassNode = node.child(node.path, 0, node.annotatedType, subclass);
+                    subclassNode.typeParsers = List.of(cascadeTypeParser);
+                    subclassNode.handlers = List.of();
+                    expandFields(subclassNode);
+                }
+            } else {
+                node.opaque = true;
+            }
+        } else {
+            expandFields(node);
+        }
+    }
+
+    private void expandFields(Node node) {
+        var type = node.type;
+        if (type.isEnum() || !expanding.add(type)) {
+            return;
+        }
+        var metadata = CascadeMetadata.of(type).resolve(node.annotatedType);
+        if (metadata.isRecord()) {
+            metadata.recordComponents().forEach(rc -> expandChild(node, node.path + "." + rc.accessor().getName(), 0, rc.annotatedType()));
+        } else {
+            var cascade = node.annotatedType.getDeclaredAnnotation(Cascade.class);
+            metadata.fields()
+                    .stream()
+                    .filter(fm -> fm.shouldParse(cascade))
+                    .forEach(fm -> expandChild(node, node.path + "." + fm.field().getName(), 0, fm.annotatedType()));
+        }
+        expanding.remove(type);
+    }
+
+    /**
+     * Whether a built-in type parser claims the values of a declared type.
+     */
+    private static boolean claims(TypeParser<?, ? extends AnnotatedType> typeParser, AnnotatedType annotatedType, Class<?> type) {
+        var parameterized = annotatedType instanceof AnnotatedParameterizedType && type != null;
+        return switch (typeParser) {
+            case TypeVariableParser ignored -> annotatedType instanceof AnnotatedTypeVariable;
+            case WildcardTypeParser ignored -> annotatedType instanceof AnnotatedWildcardType;
+            case EnumSetTypeParser ignored -> parameterized && EnumSet.class.isAssignableFrom(type);
+            case CollectionTypeParser ignored -> parameterized && Collection.class.isAssignableFrom(type) && !EnumSet.class.isAssignableFrom(type);
+            case EnumMapTypeParser ignored -> parameterized && EnumMap.class.isAssignableFrom(type);
+            case MapTypeParser ignored -> parameterized && Map.class.isAssignableFrom(type) && !EnumMap.class.isAssignableFrom(type);
+            case ArrayTypeParser ignored -> annotatedType instanceof AnnotatedArrayType && type != null && Object[].class.isAssignableFrom(type);
+            case ObjectTypeParser ignored -> type == null || !type.isPrimitive();
+            case CascadeTypeParser ignored -> annotatedType.getDeclaredAnnotation(Cascade.class) != null;
+            default -> false;
+        };
+    }
+
+    private static List<Explanation.HandlerBinding> bindings(Class<?> type, AnnotatedType annotatedType) {
+        var bindings = new ArrayList<Explanation.HandlerBinding>();
+        for (var annotation : annotatedType.getDeclaredAnnotations()) {
+            var parse = annotation.annotationType().getDeclaredAnnotation(Parse.class);
+            if (parse != null) {
+                bindings.add(new Explanation.HandlerBinding(parse.annotation(), parse.handler(), List.of(parse.location()),
+                        List.copyOf(ObjectTypeParser.resolveAnnotations(type, annotatedType, parse))));
+            }
+        }
+        return List.copyOf(bindings);
+    }
+
+    private static List<AnnotatedType> bounds(AnnotatedWildcardType annotatedWildcardType) {
+        return Stream.of(annotatedWildcardType.getAnnotatedUpperBounds(), annotatedWildcardType.getAnnotatedLowerBounds())
+                .flatMap(Arrays::stream)
+                .toList();
+    }
+
+    private static AnnotatedType typeArgument(AnnotatedType annotatedType, int index) {
+        return ((AnnotatedParameterizedType) annotatedType).getAnnotatedActualTypeArguments()[index];
+    }
+
+    private static List<Class<?>> concreteSubclasses(Class<?> sealedClass) {
+        var subclasses = new ArrayList<Class<?>>();
+        for (var subclass : sealedClass.getPermittedSubclasses()) {
+            if (!subclass.isInterface() && !Modifier.isAbstract(subclass.getModifiers())) {
+                subclasses.add(subclass);
+            }
+            if (subclass.isSealed()) {
+                concreteSubclasses(subclass).stream().filter(c -> !subclasses.contains(c)).forEach(subclasses::add);
+            }
+        }
+        return subclasses;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        return switch (type) {
+            case Class<?> clazz -> clazz;
+            case ParameterizedType parameterizedType -> (Class<?>) parameterizedType.getRawType();
+            case GenericArrayType genericArrayType -> {
+                var componentClass = rawClass(genericArrayType.getGenericComponentType());
+                yield componentClass == null ? null : componentClass.arrayType();
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * A node that is being built.
+     */
+    private static final class Node {
+
+        private final String path;
+        private final AnnotatedType annotatedType;
+        private final Class<?> type;
+        private final Map<Key, Node> children = new LinkedHashMap<>();
+        private List<TypeParser<?, ? extends AnnotatedType>> typeParsers;
+        private List<Explanation.HandlerBinding> handlers;
+        private boolean opaque;
+        private long nodes;
+        private long reflectiveAccesses;
+        private long allocations;
+
+        private Node(String path, AnnotatedType annotatedType, Class<?> type) {
+            this.path = path;
+            this.annotatedType = annotatedType;
+            this.type = type;
+        }
+
+        private Node child(String path, int index, AnnotatedType annotatedType, Class<?> type) {
+            return children.computeIfAbsent(new Key(path, index, annotatedType, type), key -> new Node(path, annotatedType, type));
+        }
+
+        private Explanation toExplanation(boolean sampled) {
+            var explanations = children.values().stream().map(child -> child.toExplanation(sampled)).toList();
+            var prunable = !opaque && handlers.isEmpty() && explanations.stream().allMatch(Explanation::prunable);
+            Explanation.Counts counts = null;
+            if (sampled) {
+                long totalNodes = nodes, totalReflectiveAccesses = reflectiveAccesses, totalAllocations = allocations;
+                for (var explanation : explanations) {
+                    totalNodes += explanation.counts().nodes();
+                    totalReflectiveAccesses += explanation.counts().reflectiveAccesses();
+                    totalAllocations += explanation.counts().allocations();
+                }
+                counts = new Explanation.Counts(totalNodes, totalReflectiveAccesses, totalAllocations);
+            }
+            return new Explanation(path, annotatedType, type, typeParsers, handlers, prunable, counts, explanations);
+        }
+    }
+
+    /**
+     * The identity of a node among its siblings.
+     *
+     * @param path          the path of the values
+     * @param index         the position of the annotated type among the type arguments or bounds it is declared with
+     * @param annotatedType the annotated type of the values
+     * @param type          the class of the values
+     */
+    private record Key(String path, int index, AnnotatedType annotatedType, Class<?> type) {
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.type;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A compiled set of paths that restricts a parse to the selected branches of the input, for example
+ * <pre>
+ *     var selector = PathSelector.compile("customer.contact.*", "orders[*].payment.card", "attributes{*}");
+ *     var parsed = engine.parse(input, new AnnotatedTypeToken&lt;@Cascade Order&gt;() {
+ *     }, selector);
+ * </pre>
+ * A path consists of the following segments:
+ * <ul>
+ *     <li>{@code name} or {@code .name} selects a field or record component of a {@link Cascade} object,</li>
+ *     <li>{@code .*} selects every field,</li>
+ *     <li>{@code [*]} selects every element of a collection or an array,</li>
+ *     <li>{@code {key}} selects the entry of a map whose key is {@code key} in its string form, and {@code {*}} selects
+ *     every entry.</li>
+ * </ul>
+ * Everything below the end of a path is selected, and handlers are only applied to selected values; the values on the
+ * way to them are walked but not handled. A field, element or entry that no path leads to is not walked at all: it
+ * is copied into the parsed object, or reported as a value when emitting, as it is. The paths are compiled into a tree once, so that each step of the parse only looks up its children.
+ *
+ * @author allurx
+ * @see AnnotationEngine#parse(Object, java.lang.reflect.AnnotatedType, PathSelector)
+ */
+public final class PathSelector {
+
+    private static final ScopedValue<Node> CURRENT = ScopedValue.newInstance();
+
+    private final List<String> paths;
+    private final Node root;
+
+    private PathSelector(List<String> paths, Node root) {
+        this.paths = paths;
+        this.root = root;
+    }
+
+    /**
+     * Compiles the specified paths.
+     *
+     * @param paths the paths to select
+     * @return the compiled selector
+     * @throws IllegalArgumentException if a path is malformed
+     */
+    public static PathSelector compile(String... paths) {
+        var root = new Node();
+        for (var path : paths) {
+            insert(root, path);
+        }
+        root.mergeWildcards();
+        return new PathSelector(List.of(paths), root);
+    }
+
+    /**
+     * Runs a parse in which only the branches selected by this selector are walked.
+     *
+     * @param parse the parse
+     * @param <T>   the type of the parsed object
+     * @return the result of the parse
+     */
+    public <T> T apply(Supplier<T> parse) {
+        return ScopedValue.where(CURRENT, root).call(parse::get);
+    }
+
+    /**
+     * The paths this selector was compiled from.
+     *
+     * @return the paths
+     */
+    public List<String> paths() {
+        return paths;
+    }
+
+    @Override
+    public String toString() {
+        return "PathSelector" + paths;
+    }
+
+    /**
+     * The selection of the value that is being parsed on the current thread.
+     *
+     * @return the current selection, which selects everything if no selector is applied
+     */
+    static Node current() {
+        return CURRENT.orElse(Node.ALL);
+    }
+
+    /**
+     * Runs a nested parse with the specified selection.
+     *
+     * @param node  the selection of the nested value
+     * @param parse the nested parse
+     * @param <T>   the type of the parsed object
+     * @return the result of the nested parse
+     */
+    static <T> T within(Node node, Supplier<T> parse) {
+        return node == current() ? parse.get() : ScopedValue.where(CURRENT, node).call(parse::get);
+    }
+
+    /**
+     * Runs a nested parse with the specified selection.
+     *
+     * @param node  the selection of the nested value
+     * @param parse the nested parse
+     */
+    static void within(Node node, Runnable parse) {
+        if (node == current()) {
+            parse.run();
+        } else {
+            ScopedValue.where(CURRENT, node).run(parse);
+        }
+    }
+
+    private static void insert(Node root, String path) {
+        var node = root;
+        int i = 0;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                if (i == 0 || i == path.length() - 1) {
+                    throw malformed(path);
+                }
+                i++;
+                continue;
+            }
+            if (c == '[') {
+                if (!path.startsWith("[*]", i)) {
+                    throw malformed(path);
+                }
+                node = node.elements == null ? (node.elements = new Node()) : node.elements;
+                i += 3;
+            } else if (c == '{') {
+                int end = path.indexOf('}', i);
+                if (end < 0) {
+                    throw malformed(path);
+                }
+                var key = path.substring(i + 1, end);
+                node = key.equals("*")
+                        ? node.anyEntry == null ? (node.anyEntry = new Node()) : node.anyEntry
+                        : node.entries.computeIfAbsent(key, k -> new Node());
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < path.length() && ".[{".indexOf(path.charAt(end)) < 0) {
+                    end++;
+                }
+                var name = path.substring(i, end);
+                if (name.indexOf('}') >= 0 || name.indexOf(']') >= 0) {
+                    throw malformed(path);
+                }
+                node = name.equals("*")
+                        ? node.anyField == null ? (node.anyField = new Node()) : node.anyField
+                        : node.fields.computeIfAbsent(name, n -> new Node());
+                i = end;
+            }
+        }
+        if (node == root) {
+            throw malformed(path);
+        }
+        node.all = true;
+    }
+
+    private static IllegalArgumentException malformed(String path) {
+        return new IllegalArgumentException("Malformed path: '%s'.".formatted(path));
+    }
+
+    /**
+     * The selection of a value: which of its fields, elements and entries are walked.
+     */
+    static final class Node {
+
+        /**
+         * Selects everything.
+         */
+        static final Node ALL = new Node();
+
+        static {
+            ALL.all = true;
+        }
+
+        private final Map<String, Node> fields = new HashMap<>();
+        private final Map<String, Node> entries = new HashMap<>();
+        private Node anyField;
+        private Node elements;
+        private Node anyEntry;
+        private boolean all;
+
+        /**
+         * Whether the value itself is selected, that is, whether handlers are applied to it.
+         *
+         * @return true if everything from the value on is selected, false if it is only on the way to selected values
+         */
+        boolean isComplete() {
+            return all;
+        }
+
+        /**
+         * The selection of the specified field.
+         *
+         * @param name the name of the field
+         * @return the selection of the field, or null if it is not selected
+         */
+        Node field(String name) {
+            if (all) {
+                return ALL;
+            }
+            var node = fields.get(name);
+            return node != null ? node : anyField;
+        }
+
+        /**
+         * The selection of the elements.
+         *
+         * @return the selection of the elements, or null if they are not selected
+         */
+        Node elements() {
+            return all ? ALL : elements;
+        }
+
+        /**
+         * Whether some entries are selected by their key, so that the entries of a map have different selections.
+         *
+         * @return true if entries are selected by key, false otherwise
+         */
+        boolean selectsEntriesByKey() {
+            return !all && !entries.isEmpty();
+        }
+
+        /**
+         * The selection of the entry with the specified key.
+         *
+         * @param key the original key of the entry
+         * @return the selection of the entry, or null if it is not selected
+         */
+        Node entry(Object key) {
+            if (all) {
+                return ALL;
+            }
+            var node = entries.get(String.valueOf(key));
+            return node != null ? node : anyEntry;
+        }
+
+        /**
+         * Folds the wildcard selections into the named ones they overlap with, and collapses fully selected nodes.
+         */
+        private void mergeWildcards() {
+            if (all) {
+                fields.clear();
+                entries.clear();
+                anyField = elements = anyEntry = null;
+                return;
+            }
+            if (anyField != null) {
+                fields.replaceAll((name, node) -> node.merge(anyField));
+            }
+            if (anyEntry != null) {
+                entries.replaceAll((key, node) -> node.merge(anyEntry));
+            }
+            fields.values().forEach(Node::mergeWildcards);
+            entries.values().forEach(Node::mergeWildcards);
+            for (var node : new Node[]{anyField, elements, anyEntry}) {
+                if (node != null) {
+                    node.mergeWildcards();
+                }
+            }
+        }
+
+        /**
+         * Creates the union of this selection and the specified one.
+         */
+        private Node merge(Node other) {
+            var merged = new Node();
+            merged.all = all || other.all;
+            if (merged.all) {
+                return merged;
+            }
+            merged.fields.putAll(fields);
+            other.fields.forEach((name, node) -> merged.fields.merge(name, node, Node::merge));
+            merged.entries.putAll(entries);
+            other.entries.forEach((key, node) -> merged.entries.merge(key, node, Node::merge));
+            merged.anyField = union(anyField, other.anyField);
+            merged.elements = union(elements, other.elements);
+            merged.anyEntry = union(anyEntry, other.anyEntry);
+            return merged;
+        }
+
+        private static Node union(Node a, Node b) {
+            return a == null ? b : b == null ? a : a.merge(b);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package io.allurx.annotation.parser.type;
 
 import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.ParseSink;
 
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Array;
@@ -27,7 +28,10 @@ import java.util.Map;
 /**
  * Type parser for parsing different types, such as {@link Collection}, {@link Map}, and {@link Array}.
  * Users can implement this interface to define specific type parsers and register them by calling
- * {@link AnnotationParser#addTypeParser} method.
+ * {@link AnnotationParser#addTypeParser} method, or add them to an isolated engine with
+ * {@link io.allurx.annotation.parser.AnnotationEngine.Builder#addTypeParser}. Type parsers recurse into nested
+ * values through {@link AnnotationParser#parse(Object, AnnotatedType)}, which always parses with the engine that
+ * started the parse.
  * Essentially, any object that needs parsing can be represented by a {@link TypeVariable} or {@link WildcardType},
  * and the object itself may need to be parsed or may require parsing of its internal fields.
  * Therefore, when registering type parsers, the following two conventions must be adhered to:
@@ -65,6 +69,21 @@ public interface TypeParser<T, AT extends AnnotatedType> extends Sortable, Compa
      */
     T parse(T input, AT annotatedType);
 
+    /**
+     * Parses the object and reports the result to a sink instead of returning it, see
+     * {@link io.allurx.annotation.parser.AnnotationEngine#emit AnnotationEngine.emit}. Container and cascade
+     * parsers override this method to report the structure of the parsed object and recurse into nested values
+     * through {@link AnnotationParser#emit(Object, AnnotatedType, ParseSink)}, so that no parsed copy is built.
+     * The default implementation reports the result of {@link #parse} as a single value.
+     *
+     * @param input         The object to be parsed
+     * @param annotatedType The {@link AnnotatedType} of the object to be parsed
+     * @param sink          The sink that receives the parsed form of the object
+     */
+    default void emit(T input, AT annotatedType, ParseSink sink) {
+        sink.value(parse(input, annotatedType));
+    }
+
     /**
      * Determines whether the parser supports parsing the input object.
      *
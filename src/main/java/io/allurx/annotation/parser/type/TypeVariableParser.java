@@ -20,7 +20,6 @@ import io.allurx.annotation.parser.AnnotationParser;
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.AnnotatedTypeVariable;
 import java.lang.reflect.TypeVariable;
-import java.util.Arrays;
 
 /**
  * {@link TypeVariable} type parser.
@@ -43,8 +42,11 @@ public class TypeVariableParser implements TypeParser<Object, AnnotatedTypeVaria
 
     @Override
     public Object parse(Object input, AnnotatedTypeVariable annotatedTypeVariable) {
-        return Arrays.stream(annotatedTypeVariable.getAnnotatedBounds())
-                .reduce(input, AnnotationParser::parse, (v1, v2) -> null);
+        var parsed = input;
+        for (var bound : annotatedTypeVariable.getAnnotatedBounds()) {
+            parsed = AnnotationParser.parse(parsed, bound);
+        }
+        return parsed;
     }
 
     @Override
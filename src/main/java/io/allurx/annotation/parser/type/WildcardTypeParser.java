@@ -20,8 +20,6 @@ import io.allurx.annotation.parser.AnnotationParser;
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.AnnotatedWildcardType;
 import java.lang.reflect.WildcardType;
-import java.util.Arrays;
-import java.util.stream.Stream;
 
 /**
  * {@link WildcardType} type parser.
@@ -44,9 +42,14 @@ public class WildcardTypeParser implements TypeParser<Object, AnnotatedWildcardT
 
     @Override
     public Object parse(Object input, AnnotatedWildcardType annotatedWildcardType) {
-        return Stream.of(annotatedWildcardType.getAnnotatedUpperBounds(), annotatedWildcardType.getAnnotatedLowerBounds())
-                .flatMap(Arrays::stream)
-                .reduce(input, AnnotationParser::parse, (v1, v2) -> null);
+        var parsed = input;
+        for (var bound : annotatedWildcardType.getAnnotatedUpperBounds()) {
+            parsed = AnnotationParser.parse(parsed, bound);
+        }
+        for (var bound : annotatedWildcardType.getAnnotatedLowerBounds()) {
+            parsed = AnnotationParser.parse(parsed, bound);
+        }
+        return parsed;
     }
 
     @Override
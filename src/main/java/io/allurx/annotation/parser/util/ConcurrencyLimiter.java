@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.util;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous calls in flight without blocking the submitting thread.
+ * <p>
+ * A call that exceeds the limit is queued and started by the thread that completes an earlier call, so slow
+ * downstream services apply back pressure to the calls rather than to the threads that submit them.
+ *
+ * @author allurx
+ * @see io.allurx.annotation.parser.handler.AsyncAnnotationHandler
+ */
+public final class ConcurrencyLimiter {
+
+    private final int maxConcurrency;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger drains = new AtomicInteger();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param maxConcurrency the maximum number of calls in flight, at least 1
+     */
+    public ConcurrencyLimiter(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum concurrency must be at least 1 but was %d.".formatted(maxConcurrency));
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Starts the call when a permit is available.
+     *
+     * @param call starts the asynchronous work
+     * @param <R>  the type of the result
+     * @return a future that completes with the result of the call
+     */
+    public <R> CompletableFuture<R> submit(Supplier<? extends CompletionStage<R>> call) {
+        var result = new CompletableFuture<R>();
+        waiting.add(() -> start(call, result));
+        drain();
+        return result;
+    }
+
+    /**
+     * The maximum number of calls in flight.
+     *
+     * @return the maximum number of calls in flight
+     */
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * The number of calls in flight.
+     *
+     * @return the number of calls in flight
+     */
+    public int active() {
+        return active.get();
+    }
+
+    private <R> void start(Supplier<? extends CompletionStage<R>> call, CompletableFuture<R> result) {
+        CompletionStage<R> stage;
+        try {
+            stage = call.get();
+        } catch (Throwable t) {
+            release();
+            result.completeExceptionally(t);
+            return;
+        }
+        stage.whenComplete((value, failure) -> {
+            release();
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Starts queued calls while permits are available. Only one thread drains at a time; a thread that finds
+     * another one draining leaves the work to it, which also keeps calls that complete synchronously from
+     * recursing.
+     */
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (active.get() < maxConcurrency) {
+                var next = waiting.poll();
+                if (next == null) {
+                    break;
+                }
+                active.incrementAndGet();
+                next.run();
+            }
+        } while (drains.decrementAndGet() != 0);
+    }
+}
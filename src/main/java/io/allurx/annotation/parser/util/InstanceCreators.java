@@ -15,17 +15,7 @@
  */
 package io.allurx.annotation.parser.util;
 
-import io.allurx.kit.base.Conditional;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static io.allurx.kit.base.reflection.TypeConverter.uncheckedCast;
 
 /**
  * A helper class for managing instance creators. Users can register or remove
@@ -48,15 +38,25 @@ import static io.allurx.kit.base.reflection.TypeConverter.uncheckedCast;
  * interface types, abstract types, or array types, as these are generally not meaningful.
  * Instead, register creators for concrete types that may require additional operations during initialization.</p>
  *
+ * <p>In {@link #reflectionFree(boolean) reflection-free mode} only registered instance creators are used and
+ * constructors are never discovered reflectively, which is useful for GraalVM native images that should not
+ * depend on reflective constructor lookup. The mode can also be enabled at startup with the
+ * {@value #REFLECTION_FREE_PROPERTY} system property.</p>
+ *
+ * <p>All methods operate on the {@link InstanceRegistry#global() global registry}; engines built with their own
+ * {@link InstanceRegistry} are not affected.</p>
+ *
  * @author allurx
  * @see InstanceCreator
+ * @see InstanceRegistry
  * @see Instances
  */
 public final class InstanceCreators {
 
-    private static final Map<?, ?> EMPTY_MAP = new HashMap<>();
-    private static final List<?> EMPTY_LIST = new ArrayList<>();
-    private static final Map<Class<?>, InstanceCreator<?>> INSTANCE_CREATORS = new ConcurrentHashMap<>();
+    /**
+     * The system property that enables {@link #reflectionFree(boolean) reflection-free mode} at startup.
+     */
+    public static final String REFLECTION_FREE_PROPERTY = "io.allurx.annotation.parser.reflection-free";
 
     private InstanceCreators() {
     }
@@ -69,7 +69,7 @@ public final class InstanceCreators {
      * @return the instance creator for the specified {@link Class}
      */
     public static <T> InstanceCreator<T> find(Class<T> clazz) {
-        return uncheckedCast(INSTANCE_CREATORS.computeIfAbsent(clazz, InstanceCreators::findInstanceCreator));
+        return InstanceRegistry.global().find(clazz);
     }
 
     /**
@@ -84,7 +84,7 @@ public final class InstanceCreators {
      * @param <T>             the type of the object created by the instance creator
      */
     public static <T> void add(Class<T> clazz, InstanceCreator<T> instanceCreator) {
-        INSTANCE_CREATORS.put(clazz, instanceCreator);
+        InstanceRegistry.global().add(clazz, instanceCreator);
     }
 
     /**
@@ -94,67 +94,35 @@ public final class InstanceCreators {
      * @param <T>   the type of the specified {@link Class}
      */
     public static <T> void remove(Class<T> clazz) {
-        INSTANCE_CREATORS.remove(clazz);
+        InstanceRegistry.global().remove(clazz);
     }
 
     /**
-     * a map of all registered instance creators
+     * a map of all registered instance creators, creators that were discovered reflectively are not included
      *
      * @return a map of all registered instance creators
      */
     public static Map<Class<?>, InstanceCreator<?>> instanceCreators() {
-        return INSTANCE_CREATORS;
-    }
-
-    /**
-     * Retrieves the instance creator for the specified {@link Class}, attempting to find it in the following order:
-     * <ol>
-     *     <li>If the type has a no-argument constructor, create an instance creator using that constructor.</li>
-     *     <li>If the type is a {@link Collection} or {@link Map}, attempt to find a constructor that takes a
-     *     {@link Collection} or {@link Map} as a parameter, respectively, in accordance with the definitions of
-     *     {@link Collection} and {@link Map}.</li>
-     * </ol>
-     *
-     * @param clazz the specified {@link Class}
-     * @param <T>   the type of the specified {@link Class}
-     * @return the instance creator for the specified {@link Class}
-     */
-    private static <T> InstanceCreator<T> findInstanceCreator(Class<T> clazz) {
-        return createByNoArgsConstructor(clazz)
-                .or(() -> createByCollectionOrMapConstructor(clazz))
-                .orElseThrow(() -> new UnableCreateInstanceException("Unable to create an instance of %s. Please provide an InstanceCreator for this class.".formatted(clazz)));
+        return InstanceRegistry.global().instanceCreators();
     }
 
     /**
-     * Creates an instance creator using the no-argument constructor of the specified {@link Class}.
+     * Enables or disables reflection-free mode of the global registry.
      *
-     * @param clazz the specified {@link Class}
-     * @param <T>   the type of the object
-     * @return the instance creator for the object
+     * @param enabled whether reflection-free mode is enabled
+     * @see InstanceRegistry#reflectionFree(boolean)
      */
-    private static <T> Optional<InstanceCreator<T>> createByNoArgsConstructor(Class<T> clazz) {
-        return Reflections.getDeclaredConstructor(clazz)
-                .map(constructor -> () -> Reflections.newInstance(constructor));
+    public static void reflectionFree(boolean enabled) {
+        InstanceRegistry.global().reflectionFree(enabled);
     }
 
     /**
-     * Creates an instance creator using a constructor that follows the definitions of {@link Collection} and {@link Map}.
+     * Whether reflection-free mode of the global registry is enabled.
      *
-     * @param clazz the specified {@link Class}
-     * @param <T>   the type of the object
-     * @return the instance creator for the object
+     * @return true if only registered instance creators are used, false otherwise
      */
-    private static <T> Optional<InstanceCreator<T>> createByCollectionOrMapConstructor(Class<T> clazz) {
-        return Conditional.of(clazz)
-                .when(Collection.class::isAssignableFrom)
-                .map(c -> Reflections.getDeclaredConstructor(c, Collection.class)
-                        .<InstanceCreator<T>>map(constructor -> () -> Reflections.newInstance(constructor, EMPTY_LIST)))
-                .elseIf(Map.class::isAssignableFrom)
-                .map(c -> Reflections.getDeclaredConstructor(c, Map.class)
-                        .<InstanceCreator<T>>map(constructor -> () -> Reflections.newInstance(constructor, EMPTY_MAP)))
-                .orElse()
-                .map(c -> Optional.<InstanceCreator<T>>empty())
-                .get();
+    public static boolean isReflectionFree() {
+        return InstanceRegistry.global().isReflectionFree();
     }
 
 }
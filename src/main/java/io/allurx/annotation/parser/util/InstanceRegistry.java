@@ -0,0 +1,314 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.util;
+
+import io.allurx.annotation.parser.cache.CacheSpec;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
+import io.allurx.kit.base.Conditional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.allurx.kit.base.reflection.TypeConverter.uncheckedCast;
+
+/**
+ * An isolated set of instance creators and singleton instances.
+ * <p>
+ * Every {@link io.allurx.annotation.parser.AnnotationEngine AnnotationEngine} owns a registry, so that engines
+ * in the same JVM can register different creators and hold their own handler instances. The
+ * {@link #global() global registry} backs the static {@link InstanceCreators}, {@link Singletons} and
+ * {@link Instances} helpers and the default engine.
+ * <p>
+ * Registered creators are held strongly until they are {@link #remove removed}, whereas discovered creators are
+ * cached in a {@link ClassCache}, whose size can be bounded, and singleton instances in a {@link ClassValue}, so a
+ * registry never keeps a class or its class loader reachable once the class is otherwise unused, for example after an
+ * application is redeployed. Singleton instances are never evicted, since a singleton must not be created twice.
+ *
+ * @author allurx
+ * @see InstanceCreators
+ * @see Singletons
+ * @see Instances
+ */
+public final class InstanceRegistry {
+
+    private static final Map<?, ?> EMPTY_MAP = new HashMap<>();
+    private static final List<?> EMPTY_LIST = new ArrayList<>();
+    private static final InstanceRegistry GLOBAL = new InstanceRegistry(Boolean.getBoolean(InstanceCreators.REFLECTION_FREE_PROPERTY), Caches.spec(Caches.INSTANCE_CREATORS));
+
+    static {
+        Caches.register(GLOBAL.discoveredInstanceCreators);
+    }
+
+    private final Map<Class<?>, InstanceCreator<?>> instanceCreators = new ConcurrentHashMap<>();
+    private final ClassCache<InstanceCreator<?>> discoveredInstanceCreators;
+    private final ClassValue<SingletonSlot> singletons = new ClassValue<>() {
+        @Override
+        protected SingletonSlot computeValue(Class<?> type) {
+            return new SingletonSlot(type);
+        }
+    };
+    private final Set<Class<?>> singletonTypes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private volatile boolean reflectionFree;
+
+    /**
+     * Creates an empty registry in which constructors are discovered reflectively.
+     */
+    public InstanceRegistry() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty registry.
+     *
+     * @param reflectionFree whether only registered instance creators are used
+     * @see #reflectionFree(boolean)
+     */
+    public InstanceRegistry(boolean reflectionFree) {
+        this(reflectionFree, Caches.spec(Caches.INSTANCE_CREATORS));
+    }
+
+    /**
+     * Creates an empty registry whose cache of discovered instance creators has the specified size and eviction policy.
+     *
+     * @param reflectionFree            whether only registered instance creators are used
+     * @param instanceCreatorsCacheSpec the maximum size and eviction policy of the discovered instance creators
+     * @see #reflectionFree(boolean)
+     */
+    public InstanceRegistry(boolean reflectionFree, CacheSpec instanceCreatorsCacheSpec) {
+        this.reflectionFree = reflectionFree;
+        this.discoveredInstanceCreators = new ClassCache<>(Caches.INSTANCE_CREATORS, instanceCreatorsCacheSpec, type -> findInstanceCreator(type));
+    }
+
+    /**
+     * The global registry shared by the static helpers and the default engine.
+     *
+     * @return the global registry
+     */
+    public static InstanceRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Creates or obtains an instance of the specified type. Types marked with {@link Singleton} are created once
+     * per registry; all other types are created directly by their registered or discovered creator.
+     *
+     * @param clazz the type to create
+     * @param <T>   the type of the instance
+     * @return the created or cached instance
+     */
+    public <T> T create(Class<T> clazz) {
+        var instanceCreator = find(clazz);
+        return Singletons.isSingleton(clazz)
+                ? getOrCreateSingleton(clazz, instanceCreator)
+                : instanceCreator.create();
+    }
+
+    /**
+     * Retrieves the instance creator for the specified {@link Class}, discovering it on first use.
+     *
+     * @param clazz the specified {@link Class}
+     * @param <T>   the type of the specified {@link Class}
+     * @return the instance creator for the specified {@link Class}
+     * @throws UnableCreateInstanceException if no instance creator can be found
+     */
+    public <T> InstanceCreator<T> find(Class<T> clazz) {
+        var instanceCreator = instanceCreators.get(clazz);
+        return uncheckedCast(instanceCreator != null ? instanceCreator : discoveredInstanceCreators.get(clazz));
+    }
+
+    /**
+     * Registers an instance creator for the specified {@link Class}.
+     *
+     * @param clazz           the specified {@link Class}
+     * @param instanceCreator the instance creator for the specified {@link Class}
+     * @param <T>             the type of the object created by the instance creator
+     */
+    public <T> void add(Class<T> clazz, InstanceCreator<T> instanceCreator) {
+        instanceCreators.put(clazz, instanceCreator);
+    }
+
+    /**
+     * Removes the instance creator for the specified {@link Class}.
+     *
+     * @param clazz the specified {@link Class}
+     */
+    public void remove(Class<?> clazz) {
+        instanceCreators.remove(clazz);
+        discoveredInstanceCreators.remove(clazz);
+    }
+
+    /**
+     * a map of all registered instance creators, creators that were discovered reflectively are not included
+     *
+     * @return a map of all registered instance creators
+     */
+    public Map<Class<?>, InstanceCreator<?>> instanceCreators() {
+        return instanceCreators;
+    }
+
+    /**
+     * The cache of the instance creators discovered reflectively, with its statistics.
+     *
+     * @return the cache of the discovered instance creators
+     */
+    public ClassCache<InstanceCreator<?>> instanceCreatorsCache() {
+        return discoveredInstanceCreators;
+    }
+
+    /**
+     * Returns the singleton for the specified type, creating it atomically when necessary.
+     *
+     * @param clazz           the singleton type
+     * @param instanceCreator the creator used for initialization
+     * @param <T>             the type of the singleton
+     * @return the singleton instance
+     */
+    public <T> T getOrCreateSingleton(Class<T> clazz, InstanceCreator<T> instanceCreator) {
+        return clazz.cast(singletons.get(clazz).getOrCreate(instanceCreator));
+    }
+
+    /**
+     * Removes the cached singleton for the specified type.
+     *
+     * @param clazz the singleton type
+     */
+    public void removeSingleton(Class<?> clazz) {
+        singletons.remove(clazz);
+        singletonTypes.remove(clazz);
+    }
+
+    /**
+     * The types whose singleton has been created in this registry and not removed. The types are tracked weakly, so
+     * types that were unloaded are not included.
+     *
+     * @return a snapshot of the singleton types
+     */
+    public Set<Class<?>> singletonTypes() {
+        synchronized (singletonTypes) {
+            return Set.copyOf(singletonTypes);
+        }
+    }
+
+    /**
+     * Enables or disables reflection-free mode. When enabled, {@link #find(Class)} only returns instance creators
+     * that have been {@link #add registered}, and throws {@link UnableCreateInstanceException} for any other type.
+     * Instance creators that were already discovered before the mode was enabled remain cached.
+     *
+     * @param enabled whether reflection-free mode is enabled
+     */
+    public void reflectionFree(boolean enabled) {
+        reflectionFree = enabled;
+    }
+
+    /**
+     * Whether reflection-free mode is enabled.
+     *
+     * @return true if only registered instance creators are used, false otherwise
+     */
+    public boolean isReflectionFree() {
+        return reflectionFree;
+    }
+
+    /**
+     * Retrieves the instance creator for the specified {@link Class}, attempting to find it in the following order:
+     * <ol>
+     *     <li>If the type has a no-argument constructor, create an instance creator using that constructor.</li>
+     *     <li>If the type is a {@link Collection} or {@link Map}, attempt to find a constructor that takes a
+     *     {@link Collection} or {@link Map} as a parameter, respectively, in accordance with the definitions of
+     *     {@link Collection} and {@link Map}.</li>
+     * </ol>
+     *
+     * @param clazz the specified {@link Class}
+     * @param <T>   the type of the specified {@link Class}
+     * @return the instance creator for the specified {@link Class}
+     */
+    private <T> InstanceCreator<T> findInstanceCreator(Class<T> clazz) {
+        if (reflectionFree) {
+            throw new UnableCreateInstanceException("No InstanceCreator is registered for %s in reflection-free mode.".formatted(clazz));
+        }
+        return createByNoArgsConstructor(clazz)
+                .or(() -> createByCollectionOrMapConstructor(clazz))
+                .orElseThrow(() -> new UnableCreateInstanceException("Unable to create an instance of %s. Please provide an InstanceCreator for this class.".formatted(clazz)));
+    }
+
+    /**
+     * Creates an instance creator using the no-argument constructor of the specified {@link Class}.
+     *
+     * @param clazz the specified {@link Class}
+     * @param <T>   the type of the object
+     * @return the instance creator for the object
+     */
+    private static <T> Optional<InstanceCreator<T>> createByNoArgsConstructor(Class<T> clazz) {
+        return Reflections.getDeclaredConstructor(clazz)
+                .map(constructor -> () -> Reflections.newInstance(constructor));
+    }
+
+    /**
+     * Creates an instance creator using a constructor that follows the definitions of {@link Collection} and {@link Map}.
+     *
+     * @param clazz the specified {@link Class}
+     * @param <T>   the type of the object
+     * @return the instance creator for the object
+     */
+    private static <T> Optional<InstanceCreator<T>> createByCollectionOrMapConstructor(Class<T> clazz) {
+        return Conditional.of(clazz)
+                .when(Collection.class::isAssignableFrom)
+                .map(c -> Reflections.getDeclaredConstructor(c, Collection.class)
+                        .<InstanceCreator<T>>map(constructor -> () -> Reflections.newInstance(constructor, EMPTY_LIST)))
+                .elseIf(Map.class::isAssignableFrom)
+                .map(c -> Reflections.getDeclaredConstructor(c, Map.class)
+                        .<InstanceCreator<T>>map(constructor -> () -> Reflections.newInstance(constructor, EMPTY_MAP)))
+                .orElse()
+                .map(c -> Optional.<InstanceCreator<T>>empty())
+                .get();
+    }
+
+    /**
+     * Holds the singleton of one type, which is created at most once until the slot is removed.
+     */
+    private final class SingletonSlot {
+
+        private final Class<?> type;
+        private volatile Object instance;
+
+        private SingletonSlot(Class<?> type) {
+            this.type = type;
+        }
+
+        Object getOrCreate(InstanceCreator<?> instanceCreator) {
+            var result = instance;
+            if (result == null) {
+                synchronized (this) {
+                    result = instance;
+                    if (result == null) {
+                        instance = result = instanceCreator.create();
+                        singletonTypes.add(type);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
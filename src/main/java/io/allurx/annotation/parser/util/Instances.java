@@ -21,6 +21,7 @@ package io.allurx.annotation.parser.util;
  * @author allurx
  * @see InstanceCreators
  * @see Singletons
+ * @see InstanceRegistry
  */
 public final class Instances {
 
@@ -28,17 +29,15 @@ public final class Instances {
     }
 
     /**
-     * Creates or obtains an instance of the specified type. Types marked with {@link Singleton} are obtained from
-     * {@link Singletons}; all other types are created directly by their registered or discovered creator.
+     * Creates or obtains an instance of the specified type from the {@link InstanceRegistry#global() global registry}.
+     * Types marked with {@link Singleton} are obtained from {@link Singletons}; all other types are created directly
+     * by their registered or discovered creator.
      *
      * @param clazz the type to create
      * @param <T>   the type of the instance
      * @return the created or cached instance
      */
     public static <T> T create(Class<T> clazz) {
-        var instanceCreator = InstanceCreators.find(clazz);
-        return Singletons.isSingleton(clazz)
-                ? Singletons.getOrCreate(clazz, instanceCreator)
-                : instanceCreator.create();
+        return InstanceRegistry.global().create(clazz);
     }
 }
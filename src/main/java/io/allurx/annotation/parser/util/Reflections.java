@@ -15,18 +15,15 @@
  */
 package io.allurx.annotation.parser.util;
 
-import io.allurx.kit.base.Conditional;
-
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static io.allurx.kit.base.reflection.TypeConverter.uncheckedCast;
 
@@ -40,6 +37,8 @@ import static io.allurx.kit.base.reflection.TypeConverter.uncheckedCast;
  */
 public final class Reflections {
 
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
     private Reflections() {
     }
 
@@ -52,13 +51,14 @@ public final class Reflections {
      * including inherited fields if specified
      */
     public static List<Field> listFields(Class<?> inputClass, boolean inherited) {
-        return Optional.ofNullable(inputClass)
-                .filter(clazz -> clazz != Object.class)
-                .map(clazz -> Conditional.of(Stream.of(clazz.getDeclaredFields()).collect(Collectors.toList()))
-                        .when(inherited)
-                        .consume(fields -> fields.addAll(listFields(clazz.getSuperclass(), true)))
-                        .get())
-                .orElseGet(ArrayList::new);
+        var fields = new ArrayList<Field>();
+        for (var clazz = inputClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            Collections.addAll(fields, clazz.getDeclaredFields());
+            if (!inherited) {
+                break;
+            }
+        }
+        return fields;
     }
 
     /**
@@ -95,6 +95,18 @@ public final class Reflections {
         }
     }
 
+    /**
+     * Invokes a method without parameters, such as an accessor, on the input object.
+     *
+     * @param input  the input object on which to invoke the method
+     * @param method the {@link Method} object representing the method to invoke
+     * @return the result of the method execution
+     * @throws ReflectionException if method invocation fails
+     */
+    public static Object invokeMethod(Object input, Method method) {
+        return invokeMethod(input, method, NO_ARGUMENTS);
+    }
+
     /**
      * Invokes a method on the input object.
      *
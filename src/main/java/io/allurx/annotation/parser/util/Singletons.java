@@ -15,13 +15,14 @@
  */
 package io.allurx.annotation.parser.util;
 
-import java.util.Arrays;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
 
 /**
  * Manages singleton detection and instances independently of instance creator resolution.
+ * Singleton marks are derived from the class hierarchy and shared by all registries, while the instances
+ * managed by this class belong to the {@link InstanceRegistry#global() global registry}. The marks are cached in the
+ * {@link Caches#SINGLETON_MARKS} cache, which does not keep the classes or their class loaders reachable.
  *
  * @author allurx
  * @see Singleton
@@ -29,8 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class Singletons {
 
-    private static final Map<Class<?>, Object> INSTANCES = new ConcurrentHashMap<>();
-    private static final Map<Class<?>, Boolean> SINGLETON_MARKS = new ConcurrentHashMap<>();
+    private static final ClassCache<Boolean> SINGLETON_MARKS = Caches.create(Caches.SINGLETON_MARKS, Singletons::singleton);
 
     private Singletons() {
     }
@@ -43,7 +43,7 @@ public final class Singletons {
      * @return true if the type is a singleton, false otherwise
      */
     public static boolean isSingleton(Class<?> clazz) {
-        return Optional.ofNullable(SINGLETON_MARKS.get(clazz)).orElseGet(() -> singleton(clazz));
+        return SINGLETON_MARKS.get(clazz);
     }
 
     /**
@@ -55,7 +55,7 @@ public final class Singletons {
      * @return the singleton instance
      */
     public static <T> T getOrCreate(Class<T> clazz, InstanceCreator<T> instanceCreator) {
-        return clazz.cast(INSTANCES.computeIfAbsent(clazz, c -> instanceCreator.create()));
+        return InstanceRegistry.global().getOrCreateSingleton(clazz, instanceCreator);
     }
 
     /**
@@ -64,16 +64,22 @@ public final class Singletons {
      * @param clazz the singleton type
      */
     public static void remove(Class<?> clazz) {
-        INSTANCES.remove(clazz);
+        InstanceRegistry.global().removeSingleton(clazz);
     }
 
     private static boolean singleton(Class<?> clazz) {
-        Class<?>[] interfaces;
-        boolean value = clazz != null && clazz != Object.class &&
-                ((clazz.isInterface() ? clazz.getDeclaredAnnotation(Singleton.class) != null : clazz.isAnnotationPresent(Singleton.class)) ||
-                        ((interfaces = clazz.getInterfaces()).length > 0 && Arrays.stream(interfaces).anyMatch(Singletons::singleton)) ||
-                        singleton(clazz.getSuperclass()));
-        Optional.ofNullable(clazz).ifPresent(c -> SINGLETON_MARKS.putIfAbsent(c, value));
-        return value;
+        if (clazz == Object.class) {
+            return false;
+        }
+        if (clazz.isInterface() ? clazz.getDeclaredAnnotation(Singleton.class) != null : clazz.isAnnotationPresent(Singleton.class)) {
+            return true;
+        }
+        for (var anInterface : clazz.getInterfaces()) {
+            if (isSingleton(anInterface)) {
+                return true;
+            }
+        }
+        var superclass = clazz.getSuperclass();
+        return superclass != null && isSingleton(superclass);
     }
 }
@@ -20,8 +20,13 @@
  */
 module io.allurx.annotation.parser {
     requires transitive io.allurx.kit.base;
+    requires static java.management;
     exports io.allurx.annotation.parser;
+    exports io.allurx.annotation.parser.aot;
+    exports io.allurx.annotation.parser.cache;
     exports io.allurx.annotation.parser.handler;
+    exports io.allurx.annotation.parser.management;
+    exports io.allurx.annotation.parser.metadata;
     exports io.allurx.annotation.parser.type;
     exports io.allurx.annotation.parser.util;
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import com.sun.management.ThreadMXBean;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Guards the number of bytes a warmed-up {@link AnnotationParser#parse} allocates for representative shapes, so that a
+ * change that regresses allocation on the hot paths fails the build. Each budget is about 1.2 to 1.5 times the measured
+ * allocation of the shape, which is mostly the parsed output, so that an intermediate copy of a container or a
+ * doubling fails; lower it when an optimization makes a shape cheaper.
+ *
+ * @author allurx
+ */
+class AllocationBudgetTest {
+
+    private static final int ROUNDS = 50;
+
+    private static ThreadMXBean threadMXBean;
+
+    @BeforeAll
+    static void enableAllocationTracking() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void stringLeaf() {
+
+        var token = new AnnotatedTypeToken<@Mask String>() {
+        };
+
+        // The masked string and the binding of the engine
+        assertBudget("String leaf", 448, 2_000, () -> AnnotationParser.parse("123456", token));
+    }
+
+    @Test
+    void list() {
+
+        var list = new ArrayList<String>();
+        for (int i = 0; i < 1_000; i++) {
+            list.add("value-" + i);
+        }
+        var token = new AnnotatedTypeToken<List<@EraseString String>>() {
+        };
+
+        // The parsed list and the array of the elements it is parsed in, about 4 KB each
+        assertBudget("1k-element list", 10 * 1024, 20, () -> AnnotationParser.parse(list, token));
+    }
+
+    @Test
+    void cascadedRecord() {
+
+        var wide = new Wide("v01", "v02", "v03", "v04", "v05", "v06", "v07", "v08", "v09", "v10",
+                "v11", "v12", "v13", "v14", "v15", "v16", "v17", "v18", "v19", "v20");
+        var token = new AnnotatedTypeToken<@Cascade Wide>() {
+        };
+
+        assertBudget("20-component record", 512, 500, () -> AnnotationParser.parse(wide, token));
+    }
+
+    @Test
+    void cascadedObject() {
+
+        var account = new Account();
+        account.password = "123456";
+        account.name = "alice";
+        account.phones = new ArrayList<>(List.of("123456", "654321"));
+        var token = new AnnotatedTypeToken<@Cascade Account>() {
+        };
+
+        assertBudget("cascaded object", 512, 500, () -> AnnotationParser.parse(account, token));
+    }
+
+    @Test
+    void map() {
+
+        var map = new HashMap<String, String>();
+        for (int i = 0; i < 100; i++) {
+            map.put("key-" + i, "value-" + i);
+        }
+        var token = new AnnotatedTypeToken<Map<@Mask String, @EraseString String>>() {
+        };
+
+        // The rebuilt map, about 4 KB, and its masked keys, about 8 KB
+        assertBudget("100-entry map", 18 * 1024, 100, () -> AnnotationParser.parse(map, token));
+    }
+
+    /**
+     * Warms the parse up and asserts the average number of bytes it allocates on the current thread. The average is
+     * measured in rounds until it is within the budget, at most {@link #ROUNDS} times, and the lowest one counts, so
+     * that rounds run before the optimizing compiler has caught up, which allocates what escape analysis would
+     * remove, or slowed down by deoptimization do not fail the test, while a regression, which shows up in every
+     * round, does.
+     *
+     * @param shape      the name of the parsed shape
+     * @param budget     the maximum number of bytes per parse
+     * @param iterations the number of parses of a round, and a tenth of the number of warm-up parses
+     * @param parse      the parse
+     */
+    private static void assertBudget(String shape, long budget, int iterations, Supplier<?> parse) {
+        for (int i = 0; i < iterations * 10; i++) {
+            parse.get();
+        }
+        var thread = Thread.currentThread().threadId();
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && allocated > budget; round++) {
+            long before = threadMXBean.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < iterations; i++) {
+                parse.get();
+            }
+            allocated = Math.min(allocated, (threadMXBean.getThreadAllocatedBytes(thread) - before) / iterations);
+        }
+        long measured = allocated;
+        Assertions.assertTrue(measured <= budget, () -> "%s allocated %d bytes per parse, over its budget of %d bytes.".formatted(shape, measured, budget));
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = MaskHandler.class, annotation = Mask.class)
+    @interface Mask {
+    }
+
+    /**
+     * Masks all but the last two characters of a string, so that the parse of a leaf allocates its result.
+     */
+    static class MaskHandler implements AnnotationHandler<String, Mask, String> {
+
+        @Override
+        public String handle(String input, Mask annotation) {
+            var masked = input.toCharArray();
+            Arrays.fill(masked, 0, Math.max(0, masked.length - 2), '*');
+            return new String(masked);
+        }
+    }
+
+    static class Account {
+
+        @EraseString
+        String password;
+        String name;
+        List<@EraseString String> phones;
+    }
+
+    record Wide(@EraseString String f01, String f02, @EraseString String f03, String f04, @EraseString String f05,
+                String f06, @EraseString String f07, String f08, @EraseString String f09, String f10,
+                @EraseString String f11, String f12, @EraseString String f13, String f14, @EraseString String f15,
+                String f16, @EraseString String f17, String f18, @EraseString String f19, String f20) {
+    }
+}
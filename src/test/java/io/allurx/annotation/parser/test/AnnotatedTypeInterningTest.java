@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link AnnotatedTypes#intern(AnnotatedType)}.
+ *
+ * @author allurx
+ */
+class AnnotatedTypeInterningTest {
+
+    /**
+     * Verifies that equal annotated types from different tokens and fields are interned to one instance, and that
+     * types that differ in any annotation are not.
+     */
+    @Test
+    void equalTypesShareOneInstance() {
+
+        var first = AnnotatedTypes.intern(new AnnotatedTypeToken<Map<@EraseString String, List<@EraseString String>>>() {
+        }.getAnnotatedType());
+        var second = AnnotatedTypes.intern(new AnnotatedTypeToken<Map<@EraseString String, List<@EraseString String>>>() {
+        }.getAnnotatedType());
+        var unannotated = AnnotatedTypes.intern(new AnnotatedTypeToken<Map<@EraseString String, List<String>>>() {
+        }.getAnnotatedType());
+
+        Assertions.assertTrue(AnnotatedTypes.isInterned(first));
+        Assertions.assertSame(first, second);
+        Assertions.assertSame(first, AnnotatedTypes.intern(first));
+        Assertions.assertNotEquals(first, unannotated);
+        var arguments = ((AnnotatedParameterizedType) first).getAnnotatedActualTypeArguments();
+        Assertions.assertSame(arguments[0], ((AnnotatedParameterizedType) arguments[1]).getAnnotatedActualTypeArguments()[0]);
+        Assertions.assertNotNull(arguments[0].getDeclaredAnnotation(EraseString.class));
+        Assertions.assertEquals(new AnnotatedTypeToken<Map<@EraseString String, List<@EraseString String>>>() {
+        }.getAnnotatedType().getType(), first.getType());
+
+        var field = CascadeMetadata.of(Contact.class).fields().getFirst();
+        var token = AnnotatedTypes.intern(new AnnotatedTypeToken<List<@EraseString String>>() {
+        }.getAnnotatedType());
+        Assertions.assertSame(token, field.annotatedType());
+        Assertions.assertSame(AnnotatedTypes.site(token), field.site());
+        Assertions.assertSame(AnnotatedTypes.annotations(arguments[0]), AnnotatedTypes.annotations(arguments[0]));
+    }
+
+    /**
+     * Verifies that arrays, wildcards and recursively bounded type variables are interned with their children.
+     */
+    @Test
+    void everyKindOfTypeIsInterned() throws NoSuchMethodException {
+
+        var array = (AnnotatedArrayType) AnnotatedTypes.intern(new AnnotatedTypeToken<@EraseString String[]>() {
+        }.getAnnotatedType());
+        Assertions.assertEquals(String[].class, array.getType());
+        Assertions.assertTrue(AnnotatedTypes.isInterned(array.getAnnotatedGenericComponentType()));
+
+        var list = (AnnotatedParameterizedType) AnnotatedTypes.intern(new AnnotatedTypeToken<List<? extends @EraseString CharSequence>>() {
+        }.getAnnotatedType());
+        var wildcard = (AnnotatedWildcardType) list.getAnnotatedActualTypeArguments()[0];
+        Assertions.assertEquals(CharSequence.class, wildcard.getAnnotatedUpperBounds()[0].getType());
+        Assertions.assertNotNull(wildcard.getAnnotatedUpperBounds()[0].getAnnotation(EraseString.class));
+        Assertions.assertEquals(0, wildcard.getAnnotatedLowerBounds().length);
+
+        var returnType = AnnotatedTypes.intern(AnnotatedTypeInterningTest.class.getDeclaredMethod("max", List.class).getAnnotatedReturnType());
+        var typeVariable = (AnnotatedTypeVariable) returnType;
+        var bound = (AnnotatedParameterizedType) typeVariable.getAnnotatedBounds()[0];
+        Assertions.assertEquals(Comparable.class, ((ParameterizedType) bound.getType()).getRawType());
+        Assertions.assertSame(typeVariable, bound.getAnnotatedActualTypeArguments()[0]);
+    }
+
+    /**
+     * Verifies that interned types parse like the types they were interned from.
+     */
+    @Test
+    void internedTypesParseLikeTheirSources() {
+
+        var contact = new Contact();
+        contact.phones = new ArrayList<>(List.of("123456", "654321"));
+        var token = new AnnotatedTypeToken<@Cascade Contact>() {
+        };
+
+        var parsed = AnnotationParser.parse(contact, AnnotatedTypes.intern(token.getAnnotatedType()));
+
+        Assertions.assertEquals(List.of("******", "******"), parsed.phones);
+        Assertions.assertEquals(List.of("******", "******"), AnnotationParser.parse(contact, token).phones);
+    }
+
+    static <T extends Comparable<T>> T max(List<T> values) {
+        return values.getFirst();
+    }
+
+    static class Contact {
+
+        private List<@EraseString String> phones;
+    }
+}
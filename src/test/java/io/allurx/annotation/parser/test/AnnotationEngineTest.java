@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.test.handler.EraseStringAnnotationHandler;
+import io.allurx.annotation.parser.type.CollectionTypeParser;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that engines built with {@link AnnotationEngine#builder()} are isolated from each other
+ * and from the default engine.
+ *
+ * @author allurx
+ */
+class AnnotationEngineTest {
+
+    /**
+     * Verifies that nested values are parsed with the handler instances of the engine that started the parse.
+     */
+    @Test
+    void ownsHandlerInstances() {
+
+        var engine = AnnotationEngine.builder()
+                .instanceCreator(EraseStringAnnotationHandler.class, () -> new EraseStringAnnotationHandler() {
+                    @Override
+                    public String handle(String input, EraseString annotation) {
+                        return "engine";
+                    }
+                })
+                .build();
+        var list = new ArrayList<>(List.of("123456", "654321"));
+
+        var parsedByEngine = engine.parse(list, new AnnotatedTypeToken<List<@EraseString String>>() {
+        });
+        var parsedByDefault = AnnotationParser.parse(list, new AnnotatedTypeToken<List<@EraseString String>>() {
+        });
+
+        parsedByEngine.forEach(s -> Assertions.assertEquals("engine", s));
+        parsedByDefault.forEach(s -> Assertions.assertEquals("******", s));
+    }
+
+    /**
+     * Verifies that an engine owns its type parser chain.
+     */
+    @Test
+    void ownsTypeParsers() {
+
+        var engine = AnnotationEngine.builder()
+                .removeTypeParser(new CollectionTypeParser())
+                .build();
+        var list = new ArrayList<>(List.of("123456"));
+
+        var parsed = engine.parse(list, new AnnotatedTypeToken<List<@EraseString String>>() {
+        });
+
+        Assertions.assertSame(list, parsed);
+        Assertions.assertEquals(AnnotationEngine.defaultTypeParsers().size() - 1, engine.typeParsers().size());
+        Assertions.assertEquals(AnnotationEngine.defaultTypeParsers().size(), AnnotationParser.typeParsers().size());
+    }
+
+    /**
+     * Verifies that the type parsers of an engine are only changed through the methods that keep its snapshot up to
+     * date.
+     */
+    @Test
+    void typeParsersAreUnmodifiable() {
+
+        var engine = AnnotationEngine.builder().build();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> AnnotationParser.typeParsers().add(new CollectionTypeParser()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> engine.typeParsers().clear());
+        Assertions.assertEquals(engine.orderedTypeParsers(), List.copyOf(engine.typeParsers()));
+        Assertions.assertTrue(engine.hasOnlyDefaultTypeParsers());
+    }
+}
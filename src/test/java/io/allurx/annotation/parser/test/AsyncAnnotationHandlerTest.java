@@ -0,0 +1,214 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.AsyncAnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests {@link AsyncAnnotationHandler} and {@link AnnotationEngine#parseAsync}.
+ *
+ * @author allurx
+ */
+class AsyncAnnotationHandlerTest {
+
+    /**
+     * Verifies that the calls of a parse overlap within the concurrency limit of the handler.
+     */
+    @Test
+    void callsAreConcurrentWithinTheLimit() {
+
+        var engine = AnnotationEngine.builder().build();
+        var list = IntStream.range(0, 40)
+                .mapToObj(i -> "v" + i)
+                .collect(Collectors.toCollection(ArrayList::new));
+        TokenizeHandler.PEAK.set(0);
+
+        var parsed = engine.parseAsync(list, new AnnotatedTypeToken<List<@Tokenize String>>() {
+        }).join();
+
+        Assertions.assertEquals(40, parsed.size());
+        Assertions.assertEquals("tok-v0", parsed.getFirst());
+        Assertions.assertEquals("tok-v39", parsed.get(39));
+        Assertions.assertTrue(TokenizeHandler.PEAK.get() > 1);
+        Assertions.assertTrue(TokenizeHandler.PEAK.get() <= TokenizeHandler.MAX_CONCURRENCY);
+    }
+
+    /**
+     * Verifies that chained async handlers on cascaded fields are resolved in order, and that the synchronous
+     * parse produces the same result.
+     */
+    @Test
+    void chainedHandlersOnCascadedFields() {
+
+        var engine = AnnotationEngine.builder().build();
+        var account = new Account();
+        account.number = "42";
+        account.owner = "alice";
+
+        var parsed = engine.parseAsync(account, new AnnotatedTypeToken<@Cascade Account>() {
+        }).join();
+        Assertions.assertEquals("[tok-42]", parsed.number);
+        Assertions.assertEquals("tok-alice", parsed.owner);
+
+        var parsedSynchronously = engine.parse(account, new AnnotatedTypeToken<@Cascade Account>() {
+        });
+        Assertions.assertEquals("[tok-42]", parsedSynchronously.number);
+        Assertions.assertEquals("tok-alice", parsedSynchronously.owner);
+    }
+
+    /**
+     * Verifies that synchronous handlers next to async handlers are called once per value although the parse is
+     * replayed, and that the replayed rounds are not counted in the parse statistics.
+     */
+    @Test
+    void synchronousHandlersAreCalledOncePerValue() {
+
+        var engine = AnnotationEngine.builder().build();
+        var ledger = new Ledger();
+        ledger.number = "42";
+        ledger.owner = "alice";
+        CountHandler.CALLS.set(0);
+
+        var parsed = engine.parseAsync(ledger, new AnnotatedTypeToken<@Cascade Ledger>() {
+        }).join();
+
+        Assertions.assertEquals("tok-42!", parsed.number);
+        Assertions.assertEquals("alice!", parsed.owner);
+        Assertions.assertEquals(2, CountHandler.CALLS.get());
+
+        var synchronousEngine = AnnotationEngine.builder().build();
+        synchronousEngine.parse(ledger, new AnnotatedTypeToken<@Cascade Ledger>() {
+        });
+        Assertions.assertEquals(1, engine.parseStatistics().parses());
+        Assertions.assertEquals(synchronousEngine.parseStatistics().nodes(), engine.parseStatistics().nodes());
+    }
+
+    /**
+     * Verifies that a failed call fails the parse.
+     */
+    @Test
+    void failedCallFailsTheParse() {
+
+        var future = AnnotationEngine.builder().build().parseAsync("fail", new AnnotatedTypeToken<@Tokenize String>() {
+        });
+        Assertions.assertThrows(Exception.class, future::join);
+    }
+
+    static class Account {
+
+        private @Tokenize @Bracket String number;
+
+        private @Tokenize String owner;
+    }
+
+    static class Ledger {
+
+        private @Count @Tokenize String number;
+
+        private @Count String owner;
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = CountHandler.class, annotation = Count.class)
+    @interface Count {
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = TokenizeHandler.class, annotation = Tokenize.class)
+    @interface Tokenize {
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = BracketHandler.class, annotation = Bracket.class)
+    @interface Bracket {
+    }
+
+    /**
+     * Stands in for a remote tokenization service with a latency of a few milliseconds.
+     */
+    static class TokenizeHandler implements AsyncAnnotationHandler<String, Tokenize, String> {
+
+        static final int MAX_CONCURRENCY = 4;
+        static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+        static final AtomicInteger PEAK = new AtomicInteger();
+
+        @Override
+        public CompletionStage<String> handleAsync(String input, Tokenize annotation) {
+            PEAK.accumulateAndGet(IN_FLIGHT.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                IN_FLIGHT.decrementAndGet();
+                if ("fail".equals(input)) {
+                    throw new IllegalStateException("Tokenization failed.");
+                }
+                return "tok-" + input;
+            }, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public int maxConcurrency() {
+            return MAX_CONCURRENCY;
+        }
+    }
+
+    /**
+     * A synchronous handler that counts its calls.
+     */
+    static class CountHandler implements AnnotationHandler<String, Count, String> {
+
+        static final AtomicInteger CALLS = new AtomicInteger();
+
+        @Override
+        public String handle(String input, Count annotation) {
+            CALLS.incrementAndGet();
+            return input + "!";
+        }
+    }
+
+    static class BracketHandler implements AsyncAnnotationHandler<String, Bracket, String> {
+
+        @Override
+        public CompletionStage<String> handleAsync(String input, Bracket annotation) {
+            return CompletableFuture.supplyAsync(() -> "[" + input + "]");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.handler.BatchAnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests column parsing with {@link BatchAnnotationHandler}.
+ *
+ * @author allurx
+ */
+class BatchAnnotationHandlerTest {
+
+    /**
+     * Verifies that all elements of a collection are handled in one call and that nulls keep their positions.
+     */
+    @Test
+    void collection() {
+
+        var engine = AnnotationEngine.builder().build();
+        var list = IntStream.range(0, 1000)
+                .mapToObj(i -> i % 100 == 0 ? null : "v" + i)
+                .collect(Collectors.toCollection(ArrayList::new));
+        var before = UpperCaseHandler.BATCHES.get();
+
+        var parsed = engine.parse(list, new AnnotatedTypeToken<List<@UpperCase String>>() {
+        });
+
+        Assertions.assertEquals(1, UpperCaseHandler.BATCHES.get() - before);
+        Assertions.assertEquals(1000, parsed.size());
+        Assertions.assertNull(parsed.get(0));
+        Assertions.assertEquals("V1", parsed.get(1));
+        Assertions.assertEquals("V999", parsed.get(999));
+    }
+
+    /**
+     * Verifies that arrays and the keys and values of maps are handled as columns.
+     */
+    @Test
+    void arrayAndMap() {
+
+        var engine = AnnotationEngine.builder().build();
+        var before = UpperCaseHandler.BATCHES.get();
+
+        var array = engine.parse(new String[]{"a", "b", "c"}, new AnnotatedTypeToken<@UpperCase String[]>() {
+        });
+        Assertions.assertArrayEquals(new String[]{"A", "B", "C"}, array);
+        Assertions.assertEquals(1, UpperCaseHandler.BATCHES.get() - before);
+
+        var map = new HashMap<String, String>();
+        map.put("k1", "v1");
+        map.put("k2", "v2");
+        var parsed = engine.parse(map, new AnnotatedTypeToken<Map<@UpperCase String, @UpperCase String>>() {
+        });
+        Assertions.assertEquals(Map.of("K1", "V1", "K2", "V2"), parsed);
+        Assertions.assertEquals(3, UpperCaseHandler.BATCHES.get() - before);
+    }
+
+    /**
+     * Verifies that a single value is handled through the default {@link BatchAnnotationHandler#handle} method.
+     */
+    @Test
+    void singleValue() {
+
+        var parsed = AnnotationEngine.builder().build().parse("value", new AnnotatedTypeToken<@UpperCase String>() {
+        });
+        Assertions.assertEquals("VALUE", parsed);
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = UpperCaseHandler.class, annotation = UpperCase.class)
+    @interface UpperCase {
+    }
+
+    static class UpperCaseHandler implements BatchAnnotationHandler<String, UpperCase, String> {
+
+        static final AtomicInteger BATCHES = new AtomicInteger();
+
+        @Override
+        public List<String> handleBatch(List<String> inputs, UpperCase annotation) {
+            BATCHES.incrementAndGet();
+            return inputs.stream().map(String::toUpperCase).toList();
+        }
+    }
+}
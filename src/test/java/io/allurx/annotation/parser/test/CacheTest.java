@@ -0,0 +1,237 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.cache.BoundedCache;
+import io.allurx.annotation.parser.cache.CacheSpec;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.cache.ClassCache;
+import io.allurx.annotation.parser.cache.EvictionPolicy;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the size bounds, eviction policies and statistics of the caches.
+ *
+ * @author allurx
+ */
+class CacheTest {
+
+    @Test
+    void leastRecentlyUsedClassIsEvicted() {
+
+        var loads = new AtomicInteger();
+        var cache = new ClassCache<>("lru", new CacheSpec(2, EvictionPolicy.LRU), type -> loads.incrementAndGet());
+        cache.get(String.class);
+        cache.get(Integer.class);
+        cache.get(String.class);
+        cache.get(Long.class);
+
+        Assertions.assertEquals(2, cache.size());
+        cache.get(String.class);
+        Assertions.assertEquals(3, loads.get());
+        cache.get(Integer.class);
+        Assertions.assertEquals(4, loads.get());
+
+        var stats = cache.stats();
+        Assertions.assertEquals(2, stats.hits());
+        Assertions.assertEquals(4, stats.misses());
+        Assertions.assertEquals(2, stats.evictions());
+    }
+
+    @Test
+    void leastFrequentlyUsedClassIsEvicted() {
+
+        var loads = new AtomicInteger();
+        var cache = new ClassCache<>("lfu", new CacheSpec(2, EvictionPolicy.LFU), type -> loads.incrementAndGet());
+        for (int i = 0; i < 3; i++) cache.get(String.class);
+        cache.get(Integer.class);
+        cache.get(Long.class);
+
+        cache.get(String.class);
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void tinyLfuKeepsHotClassesDuringScans() {
+
+        var loads = new AtomicInteger();
+        var cache = new ClassCache<>("tiny-lfu", new CacheSpec(4, EvictionPolicy.TINY_LFU), type -> loads.incrementAndGet());
+        for (int i = 0; i < 10; i++) cache.get(String.class);
+        for (var type : arrayTypes(100)) cache.get(type);
+
+        int loaded = loads.get();
+        cache.get(String.class);
+        Assertions.assertEquals(loaded, loads.get());
+        Assertions.assertTrue(cache.size() <= 4);
+        Assertions.assertTrue(cache.stats().evictions() >= 96);
+    }
+
+    @Test
+    void tinyLfuServesNewHotKeysFromItsWindow() {
+
+        var loads = new AtomicInteger();
+        var cache = new ClassCache<>("tiny-lfu-window", new CacheSpec(100, EvictionPolicy.TINY_LFU),
+                type -> type == String.class ? loads.incrementAndGet() : 0);
+        var types = arrayTypes(150);
+        for (int i = 0; i < 10; i++) types.forEach(cache::get);
+
+        for (int i = 0; i < 20; i++) cache.get(String.class);
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertTrue(cache.size() <= 100);
+
+        var boundedCache = new BoundedCache<Integer, Integer>(100, Duration.ZERO, EvictionPolicy.TINY_LFU);
+        loads.set(0);
+        for (int i = 0; i < 10; i++) {
+            for (int key = 0; key < 150; key++) boundedCache.get(key, k -> 0);
+        }
+        for (int i = 0; i < 20; i++) boundedCache.get(-1, k -> loads.incrementAndGet());
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertTrue(boundedCache.size() <= 100);
+    }
+
+    @Test
+    void reconfiguringShrinksTheCache() {
+
+        var cache = new ClassCache<>("shrinking", CacheSpec.unbounded(), Class::getName);
+        arrayTypes(20).forEach(cache::get);
+        Assertions.assertEquals(20, cache.size());
+
+        cache.configure(new CacheSpec(5, EvictionPolicy.LRU));
+        Assertions.assertEquals(5, cache.size());
+        Assertions.assertEquals(15, cache.stats().evictions());
+    }
+
+    @Test
+    void boundedCacheEvictionPolicies() {
+
+        var lfu = new BoundedCache<Integer, Integer>(2, Duration.ZERO, EvictionPolicy.LFU);
+        var loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) lfu.get(1, k -> loads.incrementAndGet());
+        lfu.get(2, k -> loads.incrementAndGet());
+        lfu.get(3, k -> loads.incrementAndGet());
+        lfu.get(1, k -> loads.incrementAndGet());
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertNull(lfu.getIfPresent(2));
+
+        var tinyLfu = new BoundedCache<Integer, Integer>(2, Duration.ZERO, EvictionPolicy.TINY_LFU);
+        loads.set(0);
+        for (int i = 0; i < 5; i++) tinyLfu.get(1, k -> loads.incrementAndGet());
+        for (int key = 10; key < 100; key++) tinyLfu.get(key, k -> loads.incrementAndGet());
+        tinyLfu.get(1, k -> loads.incrementAndGet());
+        Assertions.assertEquals(91, loads.get());
+        Assertions.assertEquals(2, tinyLfu.size());
+    }
+
+    @Test
+    void engineCaches() {
+
+        var engine = AnnotationEngine.builder()
+                .cache(Caches.HANDLER_PIPELINES, new CacheSpec(1, EvictionPolicy.LRU))
+                .build();
+        for (int i = 0; i < 2; i++) {
+            engine.parse(new ArrayList<>(List.of("a")), new AnnotatedTypeToken<List<@EraseString String>>() {
+            });
+            engine.parse(new ArrayList<>(List.of("b")), new AnnotatedTypeToken<List<@Upper String>>() {
+            });
+        }
+
+        var stats = engine.cacheStats().get(Caches.HANDLER_PIPELINES);
+        Assertions.assertEquals(1, stats.size());
+        Assertions.assertEquals(4, stats.misses());
+        Assertions.assertEquals(3, stats.evictions());
+        Assertions.assertEquals(CacheSpec.unbounded(), engine.caches().get(Caches.HANDLER_RESULT_CACHES).spec());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AnnotationEngine.builder().cache("unknown", CacheSpec.unbounded()));
+    }
+
+    @Test
+    void sharedCaches() {
+
+        AnnotationParser.parse(new Person("allurx"), new AnnotatedTypeToken<@Cascade Person>() {
+        });
+        AnnotationParser.parse(new Person("allurx"), new AnnotatedTypeToken<@Cascade Person>() {
+        });
+
+        var stats = Caches.stats();
+        Assertions.assertTrue(stats.keySet().containsAll(List.of(Caches.CASCADE_METADATA, Caches.SINGLETON_MARKS,
+                Caches.INSTANCE_CREATORS, Caches.HANDLER_PIPELINES, Caches.HANDLER_RESULT_CACHES)));
+        Assertions.assertTrue(stats.get(Caches.CASCADE_METADATA).hits() > 0);
+
+        Caches.configure("configured-before-creation", new CacheSpec(7, EvictionPolicy.TINY_LFU));
+        var cache = Caches.create("configured-before-creation", Class::getName);
+        Assertions.assertEquals(new CacheSpec(7, EvictionPolicy.TINY_LFU), cache.spec());
+        Assertions.assertThrows(IllegalStateException.class, () -> Caches.register(cache));
+    }
+
+    @Test
+    void parseSpec() {
+
+        Assertions.assertEquals(new CacheSpec(100, EvictionPolicy.TINY_LFU), CacheSpec.parse("100, tiny_lfu"));
+        Assertions.assertEquals(new CacheSpec(100, EvictionPolicy.LRU), CacheSpec.parse("100"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CacheSpec.parse("many"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CacheSpec.parse("0,LFU"));
+    }
+
+    /**
+     * Distinct classes to fill the caches with: int[], int[][] and so on.
+     */
+    private static List<Class<?>> arrayTypes(int count) {
+        var types = new ArrayList<Class<?>>();
+        Class<?> type = int.class;
+        for (int i = 0; i < count; i++) {
+            type = type.arrayType();
+            types.add(type);
+        }
+        return types;
+    }
+
+    public record Person(@EraseString String name) {
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = UpperHandler.class, annotation = Upper.class)
+    @interface Upper {
+    }
+
+    static class UpperHandler implements AnnotationHandler<String, Upper, String> {
+
+        @Override
+        public String handle(String input, Upper annotation) {
+            return input.toUpperCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.metadata.CascadeSite;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.TypeParser;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.AnnotatedType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests that cascaded values of different runtime classes are parsed through the inline caches of {@link CascadeSite}.
+ *
+ * @author allurx
+ */
+class CascadeSiteTest {
+
+    @Test
+    void heterogeneousElements() {
+
+        var events = new ArrayList<Event>(List.of(new Login("alice"), new Logout("bob"), new Purchase("carol", 3)));
+
+        var parsed = AnnotationParser.parse(events, new AnnotatedTypeToken<List<@Cascade Event>>() {
+        });
+
+        Assertions.assertEquals(List.of(new Login("******"), new Logout("bob"), new Purchase("******", 3)), parsed);
+        Assertions.assertEquals(new Login("alice"), events.getFirst());
+    }
+
+    @Test
+    void polymorphicField() {
+
+        for (var event : List.<Event>of(new Login("alice"), new Purchase("carol", 3), new Refund("dave"))) {
+            var parsed = AnnotationParser.parse(new Audit(event), new AnnotatedTypeToken<@Cascade Audit>() {
+            });
+            Assertions.assertEquals("******", parsed.event().user());
+        }
+
+        var site = CascadeMetadata.of(Audit.class).recordComponents().getFirst().site();
+        Assertions.assertTrue(site.isDirect());
+        Assertions.assertFalse(site.isMegamorphic());
+        Assertions.assertSame(CascadeMetadata.of(Login.class), site.resolve(Login.class));
+    }
+
+    @Test
+    void megamorphicSite() {
+
+        var site = new CascadeSite(new AnnotatedTypeToken<@Cascade Event>() {
+        }.getAnnotatedType());
+        for (var type : List.of(Login.class, Logout.class, Purchase.class, Refund.class)) {
+            Assertions.assertSame(CascadeMetadata.of(type), site.resolve(type));
+        }
+        Assertions.assertFalse(site.isMegamorphic());
+
+        Assertions.assertSame(CascadeMetadata.of(Signup.class), site.resolve(Signup.class));
+        Assertions.assertTrue(site.isMegamorphic());
+        Assertions.assertSame(CascadeMetadata.of(Login.class), site.resolve(Login.class));
+    }
+
+    @Test
+    void sealedHierarchy() {
+
+        var permitted = CascadeMetadata.ofPermittedSubclasses(Shape.class);
+        Assertions.assertEquals(Set.of(Circle.class, Square.class, Triangle.class, Pentagon.class, Hexagon.class), permitted.keySet());
+
+        var shapes = new ArrayList<Shape>(List.of(new Circle("c"), new Square("s"), new Triangle("t"), new Pentagon("p"), new Hexagon("h")));
+        var parsed = AnnotationParser.parse(shapes, new AnnotatedTypeToken<List<@Cascade Shape>>() {
+        });
+        Assertions.assertEquals(List.of(new Circle("******"), new Square("******"), new Triangle("******"), new Pentagon("******"), new Hexagon("******")), parsed);
+
+        var site = new CascadeSite(new AnnotatedTypeToken<@Cascade Shape>() {
+        }.getAnnotatedType());
+        for (var shape : shapes) {
+            Assertions.assertSame(permitted.get(shape.getClass()), site.resolve(shape.getClass()));
+        }
+        Assertions.assertFalse(site.isMegamorphic());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CascadeMetadata.ofPermittedSubclasses(Event.class));
+    }
+
+    @Test
+    void notDirect() {
+
+        Assertions.assertFalse(new CascadeSite(new AnnotatedTypeToken<@EraseString @Cascade Event>() {
+        }.getAnnotatedType()).isDirect());
+        Assertions.assertFalse(new CascadeSite(new AnnotatedTypeToken<List<@Cascade Event>>() {
+        }.getAnnotatedType()).isDirect());
+        Assertions.assertFalse(new CascadeSite(new AnnotatedTypeToken<Event>() {
+        }.getAnnotatedType()).isDirect());
+    }
+
+    @Test
+    void customTypeParsersAreStillApplied() {
+
+        var engine = AnnotationEngine.builder()
+                .addTypeParser(new LogoutTypeParser())
+                .build();
+        Assertions.assertFalse(engine.hasOnlyDefaultTypeParsers());
+        Assertions.assertTrue(AnnotationEngine.builder().build().hasOnlyDefaultTypeParsers());
+
+        var events = new ArrayList<Event>(List.of(new Login("alice"), new Logout("bob")));
+        var parsed = engine.parse(events, new AnnotatedTypeToken<List<@Cascade Event>>() {
+        });
+
+        Assertions.assertEquals(List.of(new Login("******"), new Logout("******")), parsed);
+        Assertions.assertEquals(new Audit(new Logout("******")), engine.parse(new Audit(new Logout("bob")), new AnnotatedTypeToken<@Cascade Audit>() {
+        }));
+    }
+
+    @Test
+    void typeParsersAddedToTheDefaultEngineAreApplied() {
+
+        var typeParser = new LogoutTypeParser();
+        AnnotationParser.addTypeParser(typeParser);
+        try {
+            Assertions.assertFalse(AnnotationParser.defaultEngine().hasOnlyDefaultTypeParsers());
+            Assertions.assertEquals(new Audit(new Logout("******")), AnnotationParser.parse(new Audit(new Logout("bob")), new AnnotatedTypeToken<@Cascade Audit>() {
+            }));
+        } finally {
+            AnnotationParser.removeTypeParser(typeParser);
+        }
+        Assertions.assertTrue(AnnotationParser.defaultEngine().hasOnlyDefaultTypeParsers());
+        Assertions.assertEquals(new Audit(new Logout("bob")), AnnotationParser.parse(new Audit(new Logout("bob")), new AnnotatedTypeToken<@Cascade Audit>() {
+        }));
+    }
+
+    interface Event {
+
+        String user();
+    }
+
+    record Login(@EraseString String user) implements Event {
+    }
+
+    record Logout(String user) implements Event {
+    }
+
+    record Purchase(@EraseString String user, int quantity) implements Event {
+    }
+
+    record Refund(@EraseString String user) implements Event {
+    }
+
+    record Signup(@EraseString String user) implements Event {
+    }
+
+    record Audit(@Cascade Event event) {
+    }
+
+    sealed interface Shape permits Circle, Square, Polygon {
+    }
+
+    sealed interface Polygon extends Shape permits Triangle, Pentagon, Hexagon {
+    }
+
+    record Circle(@EraseString String label) implements Shape {
+    }
+
+    record Square(@EraseString String label) implements Shape {
+    }
+
+    record Triangle(@EraseString String label) implements Polygon {
+    }
+
+    record Pentagon(@EraseString String label) implements Polygon {
+    }
+
+    record Hexagon(@EraseString String label) implements Polygon {
+    }
+
+    /**
+     * Erases the user of a {@link Logout}, which has no handler annotation of its own.
+     */
+    static class LogoutTypeParser implements TypeParser<Object, AnnotatedType> {
+
+        @Override
+        public Object parse(Object input, AnnotatedType annotatedType) {
+            return new Logout("******");
+        }
+
+        @Override
+        public boolean support(Object input, AnnotatedType annotatedType) {
+            return input instanceof Logout;
+        }
+
+        @Override
+        public int order() {
+            return 100;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package io.allurx.annotation.parser.test;
 import io.allurx.annotation.parser.AnnotationParser;
 import io.allurx.annotation.parser.test.annotation.EraseString;
 import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.CopyStrategy;
 import io.allurx.kit.base.reflection.AnnotatedTypeToken;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -91,6 +92,34 @@ class CascadeTest {
         Assertions.assertEquals("******", parsed.childValue);
     }
 
+    @Test
+    void cloneCopiesWithoutConstructing() {
+
+        var input = new Document("secret", new StringBuilder("body"), "final-value");
+        var constructed = Document.constructed;
+        var parsed = AnnotationParser.parse(input, new AnnotatedTypeToken<@Cascade(copy = CopyStrategy.CLONE) Document>() {
+        });
+
+        Assertions.assertNotSame(input, parsed);
+        Assertions.assertEquals(constructed, Document.constructed);
+        Assertions.assertEquals("******", parsed.title);
+        Assertions.assertSame(input.body, parsed.body);
+        Assertions.assertEquals("final-value", parsed.finalValue);
+        Assertions.assertEquals("secret", input.title);
+    }
+
+    @Test
+    void cloneFallsBackToConstructionWhenNotCloneable() {
+
+        var input = new FieldHolder("123456", "source-final", "source-transient");
+        var parsed = AnnotationParser.parse(input, new AnnotatedTypeToken<@Cascade(copy = CopyStrategy.CLONE) FieldHolder>() {
+        });
+
+        Assertions.assertNotSame(input, parsed);
+        Assertions.assertEquals("******", parsed.value);
+        Assertions.assertEquals("source-final", parsed.finalValue);
+    }
+
     /**
      * A record representing a Boy with a name and a nested Girl.
      *
@@ -160,4 +189,32 @@ class CascadeTest {
             this.childValue = childValue;
         }
     }
+
+    static class Document implements Cloneable {
+
+        static int constructed;
+
+        final String finalValue;
+
+        @EraseString
+        String title;
+
+        StringBuilder body;
+
+        Document(String title, StringBuilder body, String finalValue) {
+            constructed++;
+            this.title = title;
+            this.body = body;
+            this.finalValue = finalValue;
+        }
+
+        @Override
+        public Document clone() {
+            try {
+                return (Document) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
 }
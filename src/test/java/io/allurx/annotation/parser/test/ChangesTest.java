@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.Change;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link AnnotationParser#changes}.
+ *
+ * @author allurx
+ */
+class ChangesTest {
+
+    @Test
+    void reportsChangedValuesWithTheirPaths() {
+
+        var account = new Account();
+        account.owner = "alice";
+        account.unmasked = "visible";
+        account.phones = new ArrayList<>(List.of("123", "******", "456"));
+        account.notes = new LinkedHashMap<>(Map.of("pin", "0000"));
+        account.backup = new Account();
+        account.backup.owner = "bob";
+
+        var changes = AnnotationParser.changes(account, new AnnotatedTypeToken<@Cascade Account>() {
+        });
+
+        Assertions.assertEquals(List.of("$.owner", "$.phones[0]", "$.phones[2]", "$.notes[pin]", "$.backup.owner"),
+                changes.stream().map(Change::path).toList());
+        var first = changes.getFirst();
+        Assertions.assertEquals("alice", first.originalValue());
+        Assertions.assertEquals("******", first.newValue());
+        Assertions.assertEquals(EraseString.class, first.annotation().annotationType());
+        Assertions.assertEquals("alice", account.owner);
+    }
+
+    @Test
+    void reportsChangedKeysAtTheirOriginalPath() {
+
+        var holder = new Holder();
+        holder.credentials = new LinkedHashMap<>();
+        holder.credentials.put("alice", "secret");
+        holder.credentials.put("bob", "hunter2");
+
+        var changes = AnnotationParser.changes(holder, new AnnotatedTypeToken<@Cascade Holder>() {
+        });
+
+        Assertions.assertEquals(List.of("$.credentials[alice]", "$.credentials[alice]", "$.credentials[bob]", "$.credentials[bob]"),
+                changes.stream().map(Change::path).toList());
+        Assertions.assertEquals(List.of("alice", "secret", "bob", "hunter2"),
+                changes.stream().map(Change::originalValue).toList());
+    }
+
+    static class Holder {
+
+        private Map<@EraseString String, @EraseString String> credentials;
+    }
+
+    static class Account {
+
+        private @EraseString String owner;
+
+        private String unmasked;
+
+        private List<@EraseString String> phones;
+
+        private Map<String, @EraseString String> notes;
+
+        private @Cascade Account backup;
+    }
+}
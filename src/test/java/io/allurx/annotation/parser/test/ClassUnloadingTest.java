@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.test.redeploy.Redeployed;
+import io.allurx.annotation.parser.util.InstanceRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+
+/**
+ * Tests that the caches of the parser do not keep parsed classes and their class loaders reachable, as happens
+ * when an application is redeployed.
+ *
+ * @author allurx
+ */
+class ClassUnloadingTest {
+
+    private static final String REDEPLOYED_PREFIX = Redeployed.class.getName();
+
+    @Test
+    void classLoaderIsCollectedAfterParsing() throws Exception {
+        assertCollected(deployAndParse());
+    }
+
+    @Test
+    void classLoaderOfAHandlerAnnotationIsCollectedAfterParsing() throws Exception {
+        assertCollected(deployAndParseNote());
+    }
+
+    @Test
+    void removedInstanceCreatorIsDiscoveredAgain() {
+
+        var registry = new InstanceRegistry();
+        registry.add(Redeployed.Profile.class, () -> new Redeployed.Profile("registered"));
+        Assertions.assertEquals("registered", registry.create(Redeployed.Profile.class).email);
+        Assertions.assertTrue(registry.instanceCreators().containsKey(Redeployed.Profile.class));
+
+        registry.remove(Redeployed.Profile.class);
+        Assertions.assertNull(registry.create(Redeployed.Profile.class).email);
+        Assertions.assertFalse(registry.instanceCreators().containsKey(Redeployed.Profile.class));
+    }
+
+    /**
+     * Loads the redeployed classes in a class loader of their own, parses an instance of them and returns a weak
+     * reference to the class loader.
+     */
+    private static WeakReference<ClassLoader> deployAndParse() throws Exception {
+        var classLoader = new RedeployingClassLoader(ClassUnloadingTest.class.getClassLoader());
+        var accountClass = classLoader.loadClass(Redeployed.Account.class.getName());
+        var userClass = classLoader.loadClass(Redeployed.User.class.getName());
+        var profileClass = classLoader.loadClass(Redeployed.Profile.class.getName());
+        var holderClass = classLoader.loadClass(Redeployed.Holder.class.getName());
+        Assertions.assertNotSame(Redeployed.Account.class, accountClass);
+
+        var user = userClass.getConstructor(String.class).newInstance("123456");
+        var profile = profileClass.getConstructor(String.class).newInstance("alice@example.com");
+        var account = accountClass.getConstructor(userClass, profileClass).newInstance(user, profile);
+        var annotatedType = holderClass.getRecordComponents()[0].getAnnotatedType();
+
+        for (int i = 0; i < 3; i++) {
+            var parsed = AnnotationParser.parse(account, annotatedType);
+            var parsedUser = accountClass.getMethod("user").invoke(parsed);
+            var parsedProfile = accountClass.getMethod("profile").invoke(parsed);
+            Assertions.assertEquals("******", userClass.getMethod("password").invoke(parsedUser));
+            Assertions.assertEquals("******", profileClass.getField("email").get(parsedProfile));
+        }
+        return new WeakReference<>(classLoader);
+    }
+
+    /**
+     * Loads a record whose component is a {@link String} annotated with a handler annotation of its own class loader,
+     * parses a value of the component and returns a weak reference to the class loader.
+     */
+    private static WeakReference<ClassLoader> deployAndParseNote() throws Exception {
+        var classLoader = new RedeployingClassLoader(ClassUnloadingTest.class.getClassLoader());
+        var noteClass = classLoader.loadClass(Redeployed.Note.class.getName());
+        var component = noteClass.getRecordComponents()[0];
+        Assertions.assertNotSame(Redeployed.Reverse.class, component.getAnnotatedType().getDeclaredAnnotations()[0].annotationType());
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("cba", AnnotationParser.parse("abc", component.getAnnotatedType()));
+        }
+        return new WeakReference<>(classLoader);
+    }
+
+    private static void assertCollected(WeakReference<ClassLoader> classLoader) throws InterruptedException {
+        for (int i = 0; i < 100 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Assertions.assertNull(classLoader.get());
+    }
+
+    /**
+     * Defines the redeployed classes itself and delegates every other class to its parent.
+     */
+    private static final class RedeployingClassLoader extends ClassLoader {
+
+        RedeployingClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(REDEPLOYED_PREFIX)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                var clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    try (var in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        if (in == null) throw new ClassNotFoundException(name);
+                        var bytes = in.readAllBytes();
+                        clazz = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return clazz;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.TypeParser;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.AnnotatedType;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests the parsing of {@link EnumSet} and {@link EnumMap}.
+ *
+ * @author allurx
+ */
+class EnumContainerTest {
+
+    @Test
+    void enumSet() {
+
+        var flags = EnumSet.of(Flag.READ, Flag.WRITE);
+
+        var unchanged = AnnotationParser.parse(flags, new AnnotatedTypeToken<Set<Flag>>() {
+        });
+        Assertions.assertNotSame(flags, unchanged);
+        Assertions.assertEquals(flags, unchanged);
+
+        var parsed = AnnotationParser.parse(flags, new AnnotatedTypeToken<EnumSet<@NextFlag Flag>>() {
+        });
+        Assertions.assertEquals(EnumSet.of(Flag.WRITE, Flag.EXECUTE), parsed);
+        Assertions.assertEquals(EnumSet.of(Flag.READ, Flag.WRITE), flags);
+    }
+
+    @Test
+    void enumMap() {
+
+        var owners = new EnumMap<Flag, String>(Flag.class);
+        owners.put(Flag.READ, "alice");
+        owners.put(Flag.EXECUTE, "bob");
+
+        var parsed = AnnotationParser.parse(owners, new AnnotatedTypeToken<Map<Flag, @EraseString String>>() {
+        });
+        Assertions.assertEquals(EnumMap.class, parsed.getClass());
+        Assertions.assertEquals(Map.of(Flag.READ, "******", Flag.EXECUTE, "******"), parsed);
+        Assertions.assertEquals("alice", owners.get(Flag.READ));
+
+        var rekeyed = AnnotationParser.parse(owners, new AnnotatedTypeToken<EnumMap<@NextFlag Flag, String>>() {
+        });
+        Assertions.assertEquals(Map.of(Flag.WRITE, "alice", Flag.READ, "bob"), rekeyed);
+    }
+
+    @Test
+    void nullElementsAreRejected() {
+
+        var flags = EnumSet.of(Flag.READ);
+        var exception = Assertions.assertThrows(IllegalStateException.class, () -> AnnotationParser.parse(flags, new AnnotatedTypeToken<EnumSet<@DropFlag Flag>>() {
+        }));
+        Assertions.assertTrue(exception.getMessage().contains("READ"), exception::getMessage);
+
+        var owners = new EnumMap<Flag, String>(Map.of(Flag.READ, "alice"));
+        Assertions.assertThrows(IllegalStateException.class, () -> AnnotationParser.parse(owners, new AnnotatedTypeToken<EnumMap<@DropFlag Flag, String>>() {
+        }));
+    }
+
+    @Test
+    void userTypeParsersKeepSmallOrders() {
+
+        var engine = AnnotationEngine.builder()
+                .addTypeParser(new OrderedTypeParser(3))
+                .addTypeParser(new OrderedTypeParser(4))
+                .build();
+
+        Assertions.assertEquals(AnnotationEngine.defaultTypeParsers().size() + 2, engine.typeParsers().size());
+    }
+
+    enum Flag {
+        READ, WRITE, EXECUTE
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = NextFlagHandler.class, annotation = NextFlag.class)
+    @interface NextFlag {
+    }
+
+    static class NextFlagHandler implements AnnotationHandler<Flag, NextFlag, Flag> {
+
+        @Override
+        public Flag handle(Flag input, NextFlag annotation) {
+            return Flag.values()[(input.ordinal() + 1) % Flag.values().length];
+        }
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = DropFlagHandler.class, annotation = DropFlag.class)
+    @interface DropFlag {
+    }
+
+    static class DropFlagHandler implements AnnotationHandler<Flag, DropFlag, Flag> {
+
+        @Override
+        public Flag handle(Flag input, DropFlag annotation) {
+            return null;
+        }
+    }
+
+    record OrderedTypeParser(int order) implements TypeParser<Object, AnnotatedType> {
+
+        @Override
+        public Object parse(Object input, AnnotatedType annotatedType) {
+            return input;
+        }
+
+        @Override
+        public boolean support(Object input, AnnotatedType annotatedType) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.Explanation;
+import io.allurx.annotation.parser.handler.Location;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.test.handler.EraseStringAnnotationHandler;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.CascadeTypeParser;
+import io.allurx.annotation.parser.type.CollectionTypeParser;
+import io.allurx.annotation.parser.type.ObjectTypeParser;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link AnnotationParser#explain(Object, java.lang.reflect.AnnotatedType)}.
+ *
+ * @author allurx
+ */
+class ExplainTest {
+
+    @Test
+    void declaredType() {
+
+        var explanation = AnnotationParser.explain(new AnnotatedTypeToken<@Cascade Customer>() {
+        });
+
+        Assertions.assertEquals("$", explanation.path());
+        Assertions.assertEquals(Customer.class, explanation.type());
+        Assertions.assertEquals(List.of(ObjectTypeParser.class, CascadeTypeParser.class), typeParserClasses(explanation));
+        Assertions.assertFalse(explanation.prunable());
+        Assertions.assertNull(explanation.counts());
+
+        var name = child(explanation, "$.name");
+        Assertions.assertEquals(1, name.handlers().size());
+        var binding = name.handlers().getFirst();
+        Assertions.assertEquals(EraseString.class, binding.annotationType());
+        Assertions.assertEquals(EraseStringAnnotationHandler.class, binding.handler());
+        Assertions.assertEquals(List.of(Location.DIRECTLY_PRESENT), binding.locations());
+        Assertions.assertEquals(1, binding.annotations().size());
+
+        var addresses = child(explanation, "$.addresses");
+        Assertions.assertEquals(List.of(CollectionTypeParser.class, ObjectTypeParser.class), typeParserClasses(addresses));
+        var address = child(addresses, "$.addresses[*]");
+        Assertions.assertTrue(child(address, "$.addresses[*].city").prunable());
+        Assertions.assertFalse(child(address, "$.addresses[*].street").prunable());
+        Assertions.assertFalse(addresses.prunable());
+
+        var tags = child(explanation, "$.tags");
+        Assertions.assertTrue(tags.prunable());
+        Assertions.assertEquals(2, tags.children().size());
+        Assertions.assertTrue(explanation.toString().contains("$.addresses[*].street String <ObjectTypeParser> @EraseString->EraseStringAnnotationHandler"));
+    }
+
+    @Test
+    void sample() {
+
+        var tags = new HashMap<String, String>();
+        tags.put("a", "1");
+        tags.put("b", "2");
+        tags.put("c", "3");
+        var customer = new Customer("allurx", new ArrayList<>(List.of(new Address("x", "1"), new Address("y", "2"))), tags);
+
+        var explanation = AnnotationParser.explain(customer, new AnnotatedTypeToken<@Cascade Customer>() {
+        });
+
+        Assertions.assertEquals(new Explanation.Counts(16, 10, 5), explanation.counts());
+        var addresses = child(explanation, "$.addresses");
+        Assertions.assertEquals(1, addresses.children().size());
+        Assertions.assertEquals(new Explanation.Counts(7, 6, 3), addresses.counts());
+        Assertions.assertEquals(new Explanation.Counts(7, 0, 1), child(explanation, "$.tags").counts());
+        Assertions.assertEquals("allurx", customer.name());
+    }
+
+    @Test
+    void sealedAndRecursiveTypes() {
+
+        var pet = AnnotationParser.explain(new AnnotatedTypeToken<@Cascade Pet>() {
+        });
+        Assertions.assertEquals(List.of(Cat.class, Dog.class), pet.children().stream().map(Explanation::type).toList());
+        Assertions.assertFalse(child(pet.children().get(0), "$.name").prunable());
+        Assertions.assertTrue(pet.children().get(1).prunable());
+
+        var tree = AnnotationParser.explain(new AnnotatedTypeToken<@Cascade Tree>() {
+        });
+        var subtree = child(child(tree, "$.children"), "$.children[*]");
+        Assertions.assertTrue(subtree.children().isEmpty());
+        Assertions.assertFalse(tree.prunable());
+    }
+
+    private static List<Class<?>> typeParserClasses(Explanation explanation) {
+        return explanation.typeParsers().stream().<Class<?>>map(Object::getClass).toList();
+    }
+
+    private static Explanation child(Explanation explanation, String path) {
+        return explanation.children()
+                .stream()
+                .filter(child -> child.path().equals(path))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    record Customer(@EraseString String name, List<@Cascade Address> addresses, Map<String, String> tags) {
+    }
+
+    record Address(String city, @EraseString String street) {
+    }
+
+    sealed interface Pet permits Cat, Dog {
+    }
+
+    record Cat(@EraseString String name) implements Pet {
+    }
+
+    record Dog(String name) implements Pet {
+    }
+
+    record Tree(@EraseString String label, List<@Cascade Tree> children) {
+    }
+}
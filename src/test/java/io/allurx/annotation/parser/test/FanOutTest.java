@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.Change;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.CopyStrategy;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests parsing the fields of cascaded objects concurrently, see {@link AnnotationEngine.Builder#fanOut(int)}.
+ *
+ * @author allurx
+ */
+class FanOutTest {
+
+    /**
+     * Verifies that the fields of a wide object are parsed on several threads and that the latency of the parse is
+     * bounded by the slowest field.
+     */
+    @Test
+    void wideObjectsAreParsedConcurrently() {
+
+        var engine = AnnotationEngine.builder().fanOut(4).build();
+        var customer = new Customer("alice", "alice@example.com", "123456", "Main Street", "Springfield", "12345");
+        SlowHandler.THREADS.clear();
+
+        long start = System.nanoTime();
+        var parsed = engine.parse(customer, new AnnotatedTypeToken<@Cascade Customer>() {
+        });
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        Assertions.assertEquals(new Customer("ALICE", "ALICE@EXAMPLE.COM", "123456", "MAIN STREET", "SPRINGFIELD", "12345"), parsed);
+        Assertions.assertTrue(SlowHandler.THREADS.size() > 1);
+        Assertions.assertTrue(millis < 5 * SlowHandler.DELAY_MILLIS, "took " + millis + " ms");
+    }
+
+    /**
+     * Verifies that cloned and newly instantiated objects are assembled from the concurrently parsed fields, and
+     * that narrow objects stay on the current thread.
+     */
+    @Test
+    void fieldsAreAssembledAndNarrowObjectsStaySequential() {
+
+        var engine = AnnotationEngine.builder().fanOut(3).build();
+        var address = new Address();
+        address.street = "main street";
+        address.city = "springfield";
+        address.country = "nowhere";
+        address.note = new Note();
+        address.note.text = "ring twice";
+        SlowHandler.THREADS.clear();
+
+        var parsed = engine.parse(address, new AnnotatedTypeToken<@Cascade(copy = CopyStrategy.CLONE) Address>() {
+        });
+
+        Assertions.assertEquals("MAIN STREET", parsed.street);
+        Assertions.assertEquals("SPRINGFIELD", parsed.city);
+        Assertions.assertEquals("nowhere", parsed.country);
+        Assertions.assertEquals("RING TWICE", parsed.note.text);
+        Assertions.assertNotSame(address.note, parsed.note);
+        Assertions.assertEquals("main street", address.street);
+        Assertions.assertFalse(SlowHandler.THREADS.contains(Thread.currentThread()));
+
+        SlowHandler.THREADS.clear();
+        var note = engine.parse(address.note, new AnnotatedTypeToken<@Cascade Note>() {
+        });
+        Assertions.assertEquals("RING TWICE", note.text);
+        Assertions.assertEquals(Set.of(Thread.currentThread()), SlowHandler.THREADS);
+    }
+
+    /**
+     * Verifies that a failed field interrupts the parses of its siblings and fails the parse.
+     */
+    @Test
+    void failedFieldCancelsItsSiblings() {
+
+        var engine = AnnotationEngine.builder().fanOut(2).build();
+        var customer = new Customer("alice", "fail", "123456", "Main Street", "Springfield", "slow");
+        SlowHandler.INTERRUPTED.set(0);
+
+        long start = System.nanoTime();
+        var e = Assertions.assertThrows(IllegalStateException.class, () -> engine.parse(customer, new AnnotatedTypeToken<@Cascade Customer>() {
+        }));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        Assertions.assertEquals("Cannot handle fail.", e.getMessage());
+        Assertions.assertTrue(SlowHandler.INTERRUPTED.get() > 0);
+        Assertions.assertTrue(millis < SlowHandler.DELAY_MILLIS * 5, "took " + millis + " ms");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AnnotationEngine.builder().fanOut(1));
+    }
+
+    /**
+     * Verifies that a cascaded object parsed while changes are recorded, such as a map key, is parsed sequentially, so
+     * that the changes of its fields are recorded.
+     */
+    @Test
+    void changesAreRecordedSequentially() {
+
+        var engine = AnnotationEngine.builder().fanOut(2).build();
+        var registry = new Registry();
+        registry.tags = new LinkedHashMap<>(Map.of(new Tag("a", "b"), "tag"));
+
+        var changes = engine.changes(registry, new AnnotatedTypeToken<@Cascade Registry>() {
+        });
+
+        Assertions.assertEquals(List.of("a", "b"), changes.stream().map(Change::originalValue).toList());
+        Assertions.assertEquals(List.of("A", "B"), changes.stream().map(Change::newValue).toList());
+    }
+
+    static class Registry {
+
+        private Map<@Cascade Tag, String> tags;
+    }
+
+    record Tag(@Slow String first, @Slow String second) {
+    }
+
+    record Customer(@Slow String name, @Slow String email, String password, @Slow String street, @Slow String city, @Slow String zip) {
+    }
+
+    static class Address implements Cloneable {
+
+        private @Slow String street;
+        private @Slow String city;
+        private String country;
+        private @Cascade Note note;
+
+        @Override
+        public Address clone() {
+            try {
+                return (Address) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    static class Note {
+
+        private @Slow String text;
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = SlowHandler.class, annotation = Slow.class)
+    @interface Slow {
+    }
+
+    /**
+     * Stands in for a handler that calls a remote service, upper-casing its input after a delay.
+     */
+    static class SlowHandler implements AnnotationHandler<String, Slow, String> {
+
+        static final long DELAY_MILLIS = 200;
+        static final Set<Thread> THREADS = ConcurrentHashMap.newKeySet();
+        static final AtomicInteger INTERRUPTED = new AtomicInteger();
+
+        @Override
+        public String handle(String input, Slow annotation) {
+            THREADS.add(Thread.currentThread());
+            if (input.equals("fail")) {
+                throw new IllegalStateException("Cannot handle fail.");
+            }
+            try {
+                Thread.sleep(input.equals("slow") ? DELAY_MILLIS * 10 : DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                INTERRUPTED.incrementAndGet();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted.", e);
+            }
+            return input.toUpperCase();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.Change;
+import io.allurx.annotation.parser.handler.FusableStringAnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests that consecutive {@link FusableStringAnnotationHandler}s are fused into one pipeline stage.
+ *
+ * @author allurx
+ */
+class FusedHandlerTest {
+
+    private static final Set<StringBuilder> BUFFERS = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @Test
+    void fusedHandlersShareOneBuffer() {
+
+        var token = new AnnotatedTypeToken<@Trim @Truncate(5) @Mask String>() {
+        };
+        BUFFERS.clear();
+
+        Assertions.assertEquals("*****", AnnotationParser.parse("  abcdefgh ", token));
+        Assertions.assertEquals(1, BUFFERS.size());
+
+        var pipeline = AnnotationParser.defaultEngine().handlerPipeline(token.getAnnotatedType());
+        Assertions.assertTrue(pipeline.isCompiled());
+        Assertions.assertSame(pipeline, AnnotationParser.defaultEngine().handlerPipeline(token.getAnnotatedType()));
+    }
+
+    @Test
+    void unchangedValuesKeepTheirIdentity() {
+
+        var value = new String("abc");
+
+        Assertions.assertSame(value, AnnotationParser.parse(value, new AnnotatedTypeToken<@Trim @Truncate(5) String>() {
+        }));
+    }
+
+    @Test
+    void otherHandlersSplitTheFusedRuns() {
+
+        var parsed = AnnotationParser.parse(new ArrayList<>(List.of(" abc ", "  defghijk")), new AnnotatedTypeToken<List<@Trim @EraseString @Truncate(3) @Mask String>>() {
+        });
+
+        Assertions.assertEquals(List.of("***", "***"), parsed);
+    }
+
+    @Test
+    void changesReportEveryHandler() {
+
+        var changes = AnnotationParser.changes(" abcdef", new AnnotatedTypeToken<@Trim @Truncate(3) @Mask String>() {
+        });
+
+        Assertions.assertEquals(List.of(" abcdef", "abcdef", "abc"), changes.stream().map(Change::originalValue).toList());
+        Assertions.assertEquals(List.of("abcdef", "abc", "***"), changes.stream().map(Change::newValue).toList());
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = TrimHandler.class, annotation = Trim.class)
+    @interface Trim {
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = TruncateHandler.class, annotation = Truncate.class)
+    @interface Truncate {
+
+        int value();
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = MaskHandler.class, annotation = Mask.class)
+    @interface Mask {
+    }
+
+    static class TrimHandler implements FusableStringAnnotationHandler<Trim> {
+
+        @Override
+        public void handle(StringBuilder buffer, Trim annotation) {
+            BUFFERS.add(buffer);
+            int end = buffer.length();
+            while (end > 0 && Character.isWhitespace(buffer.charAt(end - 1))) end--;
+            buffer.setLength(end);
+            int start = 0;
+            while (start < buffer.length() && Character.isWhitespace(buffer.charAt(start))) start++;
+            buffer.delete(0, start);
+        }
+    }
+
+    static class TruncateHandler implements FusableStringAnnotationHandler<Truncate> {
+
+        @Override
+        public void handle(StringBuilder buffer, Truncate annotation) {
+            BUFFERS.add(buffer);
+            if (buffer.length() > annotation.value()) buffer.setLength(annotation.value());
+        }
+    }
+
+    static class MaskHandler implements FusableStringAnnotationHandler<Mask> {
+
+        @Override
+        public void handle(StringBuilder buffer, Mask annotation) {
+            BUFFERS.add(buffer);
+            for (int i = 0; i < buffer.length(); i++) {
+                buffer.setCharAt(i, '*');
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.metadata.AnnotatedTypes;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.AnnotatedType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link Cascade} on parameterizations of generic classes, see {@link CascadeMetadata#resolve(AnnotatedType)}.
+ *
+ * @author allurx
+ */
+class GenericCascadeTest {
+
+    /**
+     * Verifies that the type arguments of a generic class are substituted into the types of its fields.
+     */
+    @Test
+    void typeArgumentsAreSubstitutedIntoFields() {
+
+        var page = page("123456", "654321");
+
+        var parsed = AnnotationParser.parse(page, new AnnotatedTypeToken<@Cascade Page<@EraseString String>>() {
+        });
+        var unannotated = AnnotationParser.parse(page, new AnnotatedTypeToken<@Cascade Page<String>>() {
+        });
+
+        Assertions.assertEquals(List.of("******", "******"), parsed.items);
+        Assertions.assertEquals("******", parsed.first);
+        Assertions.assertEquals(List.of("123456", "654321"), unannotated.items);
+        Assertions.assertEquals("123456", unannotated.first);
+        Assertions.assertEquals(List.of("123456", "654321"), page.items);
+    }
+
+    /**
+     * Verifies that the type arguments of a generic record are substituted into the types of its components, also
+     * when the type argument is itself a parameterized cascaded class.
+     */
+    @Test
+    void typeArgumentsAreSubstitutedIntoNestedGenerics() {
+
+        var envelope = new Envelope<>("123456", new ArrayList<>(List.of("654321")));
+        var parsed = AnnotationParser.parse(envelope, new AnnotatedTypeToken<@Cascade Envelope<@EraseString String>>() {
+        });
+        Assertions.assertEquals(new Envelope<>("******", List.of("******")), parsed);
+
+        var nested = new Envelope<>(page("123456"), new ArrayList<>(List.of(page("654321"))));
+        var parsedNested = AnnotationParser.parse(nested, new AnnotatedTypeToken<@Cascade Envelope<@Cascade Page<@EraseString String>>>() {
+        });
+        Assertions.assertEquals(List.of("******"), parsedNested.payload().items);
+        Assertions.assertEquals("******", parsedNested.history().getFirst().first);
+    }
+
+    /**
+     * Verifies that the type arguments a class passes to its superclass are substituted into inherited fields.
+     */
+    @Test
+    void typeArgumentsOfSuperclassesAreSubstituted() {
+
+        var page = new ErasedPage();
+        page.items = new ArrayList<>(List.of("123456"));
+        page.first = "123456";
+        page.title = "title";
+
+        var parsed = AnnotationParser.parse(page, new AnnotatedTypeToken<@Cascade(inherited = true) ErasedPage>() {
+        });
+
+        Assertions.assertEquals(List.of("******"), parsed.items);
+        Assertions.assertEquals("******", parsed.first);
+        Assertions.assertEquals("title", parsed.title);
+    }
+
+    /**
+     * Verifies that the substituted metadata is resolved once per annotated type and that its field types are the
+     * interned types the JDK reports for the same declarations.
+     */
+    @Test
+    void substitutedMetadataIsShared() {
+
+        var metadata = CascadeMetadata.of(Page.class);
+        var first = metadata.resolve(new AnnotatedTypeToken<@Cascade Page<@EraseString String>>() {
+        }.getAnnotatedType());
+        var second = metadata.resolve(new AnnotatedTypeToken<@Cascade Page<@EraseString String>>() {
+        }.getAnnotatedType());
+
+        Assertions.assertSame(first, second);
+        Assertions.assertSame(metadata, metadata.resolve(new AnnotatedTypeToken<@Cascade Page>() {
+        }.getAnnotatedType()));
+        var items = first.fields().getFirst();
+        var declared = AnnotatedTypes.intern(new AnnotatedTypeToken<List<@EraseString String>>() {
+        }.getAnnotatedType());
+        Assertions.assertEquals("items", items.field().getName());
+        Assertions.assertSame(declared, items.annotatedType());
+        Assertions.assertEquals(declared.getType(), items.annotatedType().getType());
+        Assertions.assertEquals(items.annotatedType().getType(), declared.getType());
+        Assertions.assertSame(AnnotatedTypes.site(declared), items.site());
+    }
+
+    private static Page<String> page(String... items) {
+        var page = new Page<String>();
+        page.items = new ArrayList<>(List.of(items));
+        page.first = items[0];
+        return page;
+    }
+
+    static class Page<T> {
+
+        List<T> items;
+        T first;
+    }
+
+    static class ErasedPage extends Page<@EraseString String> {
+
+        String title;
+    }
+
+    record Envelope<T>(T payload, List<T> history) {
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.cache.Caches;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.management.AnnotationParserManagement;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.CascadeTypeParser;
+import io.allurx.annotation.parser.util.Singleton;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.openmbean.TabularData;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests the {@link AnnotationParserManagement MBean} of an engine through the platform MBean server.
+ *
+ * @author allurx
+ */
+class ManagementTest {
+
+    @Test
+    void inspectAndManageAnEngine() throws Exception {
+
+        var engine = AnnotationEngine.builder().build();
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = AnnotationParserManagement.register(engine, "management-test");
+        try {
+            Assertions.assertThrows(IllegalStateException.class, () -> AnnotationParserManagement.register(engine, "management-test"));
+
+            var people = new ArrayList<>(List.of(new Person("alice"), new Person("bob")));
+            engine.parse(people, new AnnotatedTypeToken<List<@Cascade Person>>() {
+            });
+
+            Assertions.assertEquals(1L, server.getAttribute(name, "ParseCount"));
+            Assertions.assertTrue((Long) server.getAttribute(name, "NodeCount") >= 5);
+            Assertions.assertTrue((Long) server.getAttribute(name, "TotalParseTimeNanos") > 0);
+
+            var typeParsers = (TabularData) server.getAttribute(name, "TypeParsers");
+            var cascade = typeParsers.get(new Object[]{CascadeTypeParser.class.getName()});
+            Assertions.assertEquals(new CascadeTypeParser().order(), cascade.get("value"));
+
+            var cacheSizes = (TabularData) server.getAttribute(name, "CacheSizes");
+            Assertions.assertTrue((Long) cacheSizes.get(new Object[]{Caches.HANDLER_PIPELINES}).get("value") > 0);
+
+            server.invoke(name, "configureCache", new Object[]{Caches.HANDLER_PIPELINES, "1,LFU"}, new String[]{String.class.getName(), String.class.getName()});
+            Assertions.assertEquals(1, engine.caches().get(Caches.HANDLER_PIPELINES).spec().maximumSize());
+            server.invoke(name, "clearCache", new Object[]{Caches.HANDLER_PIPELINES}, new String[]{String.class.getName()});
+            Assertions.assertEquals(0, engine.caches().get(Caches.HANDLER_PIPELINES).size());
+
+            server.setAttribute(name, new Attribute("ReflectionFree", true));
+            Assertions.assertTrue(engine.instanceRegistry().isReflectionFree());
+            server.setAttribute(name, new Attribute("ReflectionFree", false));
+            Assertions.assertEquals(0, server.getAttribute(name, "FanOutThreshold"));
+            server.setAttribute(name, new Attribute("FanOutThreshold", 4));
+            Assertions.assertEquals(4, engine.fanOutThreshold());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> engine.fanOutThreshold(1));
+            engine.fanOutThreshold(0);
+
+            server.invoke(name, "prepare", new Object[]{new String[]{Person.class.getName()}}, new String[]{String[].class.getName()});
+            server.invoke(name, "resetStatistics", new Object[0], new String[0]);
+            Assertions.assertEquals(0L, server.getAttribute(name, "ParseCount"));
+        } finally {
+            AnnotationParserManagement.unregister("management-test");
+        }
+        Assertions.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    void singletonsAreListed() {
+
+        var engine = AnnotationEngine.builder().build();
+        var management = new AnnotationParserManagement(engine, ManagementTest.class.getClassLoader());
+        Assertions.assertEquals(List.of(), management.getSingletons());
+
+        engine.parse("quiet", new AnnotatedTypeToken<@Shout String>() {
+        });
+        Assertions.assertEquals(List.of(ShoutHandler.class.getName()), management.getSingletons());
+
+        engine.instanceRegistry().removeSingleton(ShoutHandler.class);
+        Assertions.assertEquals(List.of(), management.getSingletons());
+    }
+
+    public record Person(@EraseString String name) {
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = ShoutHandler.class, annotation = Shout.class)
+    @interface Shout {
+    }
+
+    @Singleton
+    static class ShoutHandler implements AnnotationHandler<String, Shout, String> {
+
+        @Override
+        public String handle(String input, Shout annotation) {
+            return input.toUpperCase(Locale.ROOT);
+        }
+    }
+}
@@ -21,8 +21,12 @@ import io.allurx.kit.base.reflection.AnnotatedTypeToken;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -72,4 +76,89 @@ class MapTest {
         Assertions.assertEquals("2", parsed.get("******"));
     }
 
+    @Test
+    void sortedMapsKeepTheirComparator() {
+
+        var treeMap = new TreeMap<String, String>(Comparator.reverseOrder());
+        IntStream.range(0, 100).forEach(i -> treeMap.put("k" + i, "v" + i));
+        var parsedTreeMap = AnnotationParser.parse(treeMap, new AnnotatedTypeToken<TreeMap<String, @EraseString String>>() {
+        });
+        Assertions.assertEquals(TreeMap.class, parsedTreeMap.getClass());
+        Assertions.assertEquals(Comparator.reverseOrder(), parsedTreeMap.comparator());
+        Assertions.assertEquals(List.copyOf(treeMap.keySet()), List.copyOf(parsedTreeMap.keySet()));
+        Assertions.assertEquals("******", parsedTreeMap.get("k42"));
+
+        var skipListMap = new ConcurrentSkipListMap<String, String>(Comparator.reverseOrder());
+        skipListMap.putAll(treeMap);
+        var parsedSkipListMap = AnnotationParser.parse(skipListMap, new AnnotatedTypeToken<ConcurrentSkipListMap<String, @EraseString String>>() {
+        });
+        Assertions.assertEquals(Comparator.reverseOrder(), parsedSkipListMap.comparator());
+        Assertions.assertEquals(List.copyOf(skipListMap.keySet()), List.copyOf(parsedSkipListMap.keySet()));
+    }
+
+    @Test
+    void changedKeysAreResorted() {
+
+        var treeMap = new TreeMap<String, String>(Comparator.reverseOrder());
+        treeMap.put("b", "2");
+        treeMap.put("a", "1");
+        var parsed = AnnotationParser.parse(treeMap, new AnnotatedTypeToken<TreeMap<@EraseString String, String>>() {
+        });
+        Assertions.assertEquals(Map.of("******", "1"), parsed);
+        Assertions.assertEquals(Comparator.reverseOrder(), parsed.comparator());
+    }
+
+    @Test
+    void linkedHashMapKeepsAccessOrder() {
+
+        var map = new LinkedHashMap<String, String>(16, 0.75f, true);
+        map.put("a", "1");
+        map.put("b", "2");
+        map.put("c", "3");
+        var parsed = AnnotationParser.parse(map, new AnnotatedTypeToken<LinkedHashMap<String, @EraseString String>>() {
+        });
+        Assertions.assertEquals(List.of("a", "b", "c"), List.copyOf(parsed.keySet()));
+        parsed.get("a");
+        Assertions.assertEquals(List.of("b", "c", "a"), List.copyOf(parsed.keySet()));
+    }
+
+    @Test
+    void subclassesKeepTheirComparatorAndAccessOrder() {
+
+        var treeMap = new ReversedTreeMap<String, String>();
+        treeMap.put("a", "1");
+        treeMap.put("b", "2");
+        var parsedTreeMap = AnnotationParser.parse(treeMap, new AnnotatedTypeToken<ReversedTreeMap<String, @EraseString String>>() {
+        });
+        Assertions.assertEquals(ReversedTreeMap.class, parsedTreeMap.getClass());
+        Assertions.assertEquals(Comparator.reverseOrder(), parsedTreeMap.comparator());
+        Assertions.assertEquals(List.of("b", "a"), List.copyOf(parsedTreeMap.keySet()));
+        Assertions.assertEquals("******", parsedTreeMap.get("a"));
+
+        var map = new AccessOrderedMap<String, String>();
+        map.put("a", "1");
+        map.put("b", "2");
+        map.put("c", "3");
+        var parsed = AnnotationParser.parse(map, new AnnotatedTypeToken<AccessOrderedMap<String, @EraseString String>>() {
+        });
+        Assertions.assertEquals(AccessOrderedMap.class, parsed.getClass());
+        Assertions.assertEquals(List.of("a", "b", "c"), List.copyOf(parsed.keySet()));
+        Assertions.assertEquals("******", parsed.get("a"));
+        Assertions.assertEquals(List.of("b", "c", "a"), List.copyOf(parsed.keySet()));
+        Assertions.assertEquals("1", map.get("a"));
+    }
+
+    static class ReversedTreeMap<K extends Comparable<K>, V> extends TreeMap<K, V> {
+
+        ReversedTreeMap() {
+            super(Comparator.reverseOrder());
+        }
+    }
+
+    static class AccessOrderedMap<K, V> extends LinkedHashMap<K, V> {
+
+        AccessOrderedMap() {
+            super(16, 0.75f, true);
+        }
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.cache.BoundedCache;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Memoized;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests the {@link Memoized} handler result cache.
+ *
+ * @author allurx
+ */
+class MemoizedHandlerTest {
+
+    /**
+     * Verifies that repeated values are served from the cache without invoking the handler.
+     */
+    @Test
+    void repeatedValuesSkipTheHandler() {
+
+        var engine = AnnotationEngine.builder().build();
+        var list = IntStream.range(0, 100)
+                .mapToObj(i -> "id-" + i % 10)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        var parsed = engine.parse(list, new AnnotatedTypeToken<List<@Pseudonymize String>>() {
+        });
+
+        Assertions.assertEquals("pseudonym-id-3", parsed.get(13));
+        Assertions.assertEquals(10, PseudonymizeHandler.INVOCATIONS.get());
+        var stats = engine.handlerCache(PseudonymizeHandler.class).orElseThrow().stats();
+        Assertions.assertEquals(90, stats.hits());
+        Assertions.assertEquals(10, stats.misses());
+        Assertions.assertTrue(engine.handlerCache(NotMemoizedHandler.class).isEmpty());
+    }
+
+    /**
+     * Verifies the size bound and the time-to-live of the cache.
+     */
+    @Test
+    void boundedCache() throws InterruptedException {
+
+        var bounded = new BoundedCache<Integer, Integer>(2, Duration.ZERO);
+        IntStream.range(0, 5).forEach(i -> bounded.get(i, k -> k));
+        Assertions.assertEquals(2, bounded.size());
+        Assertions.assertEquals(3, bounded.stats().evictions());
+
+        var expiring = new BoundedCache<Integer, Integer>(10, Duration.ofMillis(1));
+        var loads = new AtomicInteger();
+        expiring.get(1, k -> loads.incrementAndGet());
+        Thread.sleep(5);
+        expiring.get(1, k -> loads.incrementAndGet());
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    /**
+     * Verifies that invalid {@link Memoized} attributes are rejected with the handler class in the message.
+     */
+    @Test
+    void invalidAttributesAreRejected() {
+
+        var engine = AnnotationEngine.builder().build();
+
+        for (var handlerClass : List.of(WeeklyHandler.class, NegativeHandler.class, CenturiesHandler.class)) {
+            var exception = Assertions.assertThrows(IllegalArgumentException.class, () -> engine.handlerCache(handlerClass));
+            Assertions.assertTrue(exception.getMessage().contains(handlerClass.getName()), exception::getMessage);
+        }
+        Assertions.assertTrue(engine.handlerCache(DailyHandler.class).isPresent());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>(10, Duration.ofSeconds(-1)));
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = PseudonymizeHandler.class, annotation = Pseudonymize.class)
+    @interface Pseudonymize {
+    }
+
+    @Memoized(maximumSize = 100)
+    static class PseudonymizeHandler implements AnnotationHandler<String, Pseudonymize, String> {
+
+        static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+        @Override
+        public String handle(String input, Pseudonymize annotation) {
+            INVOCATIONS.incrementAndGet();
+            return "pseudonym-" + input;
+        }
+    }
+
+    static class NotMemoizedHandler implements AnnotationHandler<String, Pseudonymize, String> {
+
+        @Override
+        public String handle(String input, Pseudonymize annotation) {
+            return input;
+        }
+    }
+
+    @Memoized(expireAfterWrite = 1, unit = ChronoUnit.WEEKS)
+    static class WeeklyHandler extends NotMemoizedHandler {
+    }
+
+    @Memoized(expireAfterWrite = -1)
+    static class NegativeHandler extends NotMemoizedHandler {
+    }
+
+    @Memoized(expireAfterWrite = 365 * 1000, unit = ChronoUnit.DAYS)
+    static class CenturiesHandler extends NotMemoizedHandler {
+    }
+
+    @Memoized(expireAfterWrite = 1, unit = ChronoUnit.DAYS)
+    static class DailyHandler extends NotMemoizedHandler {
+    }
+}
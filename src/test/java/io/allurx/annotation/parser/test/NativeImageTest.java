@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.aot.ReachabilityMetadataGenerator;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.test.handler.EraseStringAnnotationHandler;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.util.InstanceCreators;
+import io.allurx.annotation.parser.util.UnableCreateInstanceException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Tests the native-image support: the generated reachability metadata and the reflection-free mode.
+ *
+ * @author allurx
+ */
+class NativeImageTest {
+
+    /**
+     * Verifies that handlers, cascaded types and annotated arrays are registered.
+     */
+    @Test
+    void generatesReachabilityMetadata() {
+
+        var json = ReachabilityMetadataGenerator.generate(Order.class);
+
+        Assertions.assertTrue(json.contains("\"type\": \"" + EraseStringAnnotationHandler.class.getName() + "\""));
+        Assertions.assertTrue(json.contains("\"type\": \"" + Order.class.getName() + "\""));
+        Assertions.assertTrue(json.contains("\"type\": \"" + Item.class.getName() + "\""));
+        Assertions.assertTrue(json.contains("\"type\": \"java.lang.String[]\""));
+        Assertions.assertTrue(json.contains("{\"name\": \"name\", \"parameterTypes\": []}"));
+    }
+
+    /**
+     * Verifies that constructors are not discovered reflectively in reflection-free mode.
+     */
+    @Test
+    void reflectionFreeModeOnlyUsesRegisteredCreators() {
+
+        InstanceCreators.reflectionFree(true);
+        try {
+            Assertions.assertThrows(UnableCreateInstanceException.class, () -> InstanceCreators.find(Unregistered.class));
+            InstanceCreators.add(Unregistered.class, Unregistered::new);
+            Assertions.assertNotNull(InstanceCreators.find(Unregistered.class).create());
+        } finally {
+            InstanceCreators.reflectionFree(false);
+            InstanceCreators.remove(Unregistered.class);
+        }
+    }
+
+    record Order(List<@Cascade Item> items, @EraseString String[] codes) {
+    }
+
+    record Item(@EraseString String name) {
+    }
+
+    static class Unregistered {
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.ParseProcessor;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Tests {@link ParseProcessor}.
+ *
+ * @author allurx
+ */
+class ParseProcessorTest {
+
+    private static final AnnotatedTypeToken<@Jitter String> TOKEN = new AnnotatedTypeToken<@Jitter String>() {
+    };
+
+    /**
+     * Verifies that items parsed in parallel are published in the order they arrived.
+     */
+    @Test
+    void orderedParallelParsesKeepTheOrder() throws InterruptedException {
+
+        var processor = ParseProcessor.builder(TOKEN).parallelism(4).bufferSize(8).build();
+        var subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        try (var publisher = new SubmissionPublisher<String>()) {
+            publisher.subscribe(processor);
+            IntStream.range(0, 100).forEach(i -> publisher.submit("v" + i));
+        }
+
+        subscriber.await();
+        Assertions.assertNull(subscriber.error);
+        Assertions.assertEquals(IntStream.range(0, 100).mapToObj(i -> "V" + i).toList(), subscriber.items);
+    }
+
+    /**
+     * Verifies that an unordered processor publishes every item.
+     */
+    @Test
+    void unorderedParsesPublishEveryItem() throws InterruptedException {
+
+        var processor = ParseProcessor.builder(TOKEN).parallelism(4).ordered(false).build();
+        var subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        try (var publisher = new SubmissionPublisher<String>()) {
+            publisher.subscribe(processor);
+            IntStream.range(0, 100).forEach(i -> publisher.submit("v" + i));
+        }
+
+        subscriber.await();
+        Assertions.assertNull(subscriber.error);
+        Assertions.assertEquals(IntStream.range(0, 100).mapToObj(i -> "V" + i).sorted().toList(),
+                subscriber.items.stream().sorted().toList());
+    }
+
+    /**
+     * Verifies that the processor requests no more items from upstream than its buffer holds and that it publishes
+     * no more items than the subscriber requested.
+     */
+    @Test
+    void demandIsPropagatedUpstream() throws InterruptedException {
+
+        var processor = ParseProcessor.builder(TOKEN).parallelism(2).bufferSize(4).build();
+        var publisher = new CountingPublisher(50);
+        var subscriber = new CollectingSubscriber(3);
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.awaitItems(3);
+        Thread.sleep(50);
+        Assertions.assertEquals(3, subscriber.items.size());
+        Assertions.assertTrue(publisher.requested.get() <= 3 + 4);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.await();
+        Assertions.assertEquals(50, subscriber.items.size());
+        Assertions.assertEquals("V49", subscriber.items.getLast());
+    }
+
+    /**
+     * Verifies that a failed parse cancels the upstream subscription and fails the subscriber.
+     */
+    @Test
+    void failedParseFailsTheSubscriber() throws InterruptedException {
+
+        var processor = ParseProcessor.builder(TOKEN).bufferSize(2).build();
+        var publisher = new CountingPublisher(10);
+        var subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        publisher.failAt = 5;
+        publisher.subscribe(processor);
+
+        subscriber.await();
+        Assertions.assertInstanceOf(IllegalStateException.class, subscriber.error);
+        Assertions.assertEquals(List.of("V0", "V1", "V2", "V3", "V4"), subscriber.items);
+        Assertions.assertTrue(publisher.cancelled);
+    }
+
+    /**
+     * Verifies that a second subscriber is rejected and that a non-positive request fails the subscriber.
+     */
+    @Test
+    void invalidUseIsReported() throws InterruptedException {
+
+        var processor = ParseProcessor.builder(TOKEN).engine(AnnotationEngine.builder().build()).build();
+        processor.subscribe(new CollectingSubscriber(0));
+        var second = new CollectingSubscriber(1);
+        processor.subscribe(second);
+        second.await();
+        Assertions.assertInstanceOf(IllegalStateException.class, second.error);
+
+        var other = ParseProcessor.builder(TOKEN).build();
+        var subscriber = new CollectingSubscriber(0);
+        other.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        subscriber.await();
+        Assertions.assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParseProcessor.builder(TOKEN).bufferSize(0));
+    }
+
+    /**
+     * Verifies that of several subscribers that subscribe at the same time, only one is subscribed.
+     */
+    @Test
+    void concurrentSubscribersAreRejected() throws InterruptedException {
+
+        for (int round = 0; round < 20; round++) {
+            var processor = ParseProcessor.builder(TOKEN).build();
+            var subscribers = IntStream.range(0, 8).mapToObj(i -> new CollectingSubscriber(0)).toList();
+            var start = new CountDownLatch(1);
+            var threads = new ArrayList<Thread>();
+            for (var subscriber : subscribers) {
+                threads.add(Thread.ofVirtual().start(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    processor.subscribe(subscriber);
+                }));
+            }
+            start.countDown();
+            for (var thread : threads) {
+                thread.join();
+            }
+
+            Assertions.assertEquals(7, subscribers.stream().filter(subscriber -> subscriber.error instanceof IllegalStateException).count());
+        }
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = JitterHandler.class, annotation = Jitter.class)
+    @interface Jitter {
+    }
+
+    /**
+     * Upper-cases its input after a random delay, so that parallel parses complete out of order.
+     */
+    static class JitterHandler implements AnnotationHandler<String, Jitter, String> {
+
+        @Override
+        public String handle(String input, Jitter annotation) {
+            if (input.equals("fail")) {
+                throw new IllegalStateException("Parse failed.");
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return input.toUpperCase();
+        }
+    }
+
+    /**
+     * Publishes "v0", "v1", ... on the requesting thread as they are requested and records the total demand.
+     */
+    static class CountingPublisher implements Flow.Publisher<String> {
+
+        final AtomicLong requested = new AtomicLong();
+        final int count;
+        volatile int failAt = -1;
+        volatile boolean cancelled;
+
+        CountingPublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super String> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                private int next;
+
+                @Override
+                public synchronized void request(long n) {
+                    requested.addAndGet(n);
+                    for (long i = 0; i < n && next < count && !cancelled; i++, next++) {
+                        subscriber.onNext(next == failAt ? "fail" : "v" + next);
+                    }
+                    if (next == count && !cancelled) {
+                        next++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    static class CollectingSubscriber implements Flow.Subscriber<String> {
+
+        final List<String> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final long initialRequest;
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        void awaitItems(int count) throws InterruptedException {
+            for (int i = 0; i < 1000 && items.size() < count; i++) {
+                Thread.sleep(5);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationEngine;
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.ParseSink;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link AnnotationEngine#emit} with a {@link ParseSink}.
+ *
+ * @author allurx
+ */
+class ParseSinkTest {
+
+    /**
+     * Verifies the events of a cascaded object with nested containers, and that no parsed copy is created.
+     */
+    @Test
+    void emitsWithoutCopying() {
+
+        var copies = new AtomicInteger();
+        var engine = AnnotationEngine.builder()
+                .instanceCreator(Person.class, () -> {
+                    copies.incrementAndGet();
+                    return new Person();
+                })
+                .build();
+        var person = new Person();
+        person.name = "alice";
+        person.phones = new ArrayList<>(List.of("123", "456"));
+        person.notes = new LinkedHashMap<>(Map.of("k", "secret"));
+        person.friend = new Person();
+        person.friend.name = "bob";
+
+        var sink = new RecordingSink();
+        engine.emit(person, new AnnotatedTypeToken<@Cascade Person>() {
+        }, sink);
+
+        Assertions.assertEquals("{Person name=****** phones=[2 ****** ******] notes={1 k:******} "
+                + "friend={Person name=****** phones=null notes=null friend=null}}", sink.toString());
+        Assertions.assertEquals(0, copies.get());
+        Assertions.assertEquals("alice", person.name);
+    }
+
+    /**
+     * Verifies that the default engine binds itself for an emit like any other engine, so that the values parsed
+     * while emitting are counted as values of one walk rather than as parses of their own.
+     */
+    @Test
+    void defaultEngineBindsItselfLikeOtherEngines() {
+
+        var list = new ArrayList<>(List.of("1", "2", "3"));
+        var defaultEngine = AnnotationParser.defaultEngine();
+        var engine = AnnotationEngine.builder().build();
+        var parses = defaultEngine.parseStatistics().parses();
+        var nodes = defaultEngine.parseStatistics().nodes();
+
+        defaultEngine.emit(list, new AnnotatedTypeToken<List<@EraseString String>>() {
+        }, new RecordingSink());
+        engine.emit(list, new AnnotatedTypeToken<List<@EraseString String>>() {
+        }, new RecordingSink());
+
+        Assertions.assertEquals(engine.parseStatistics().parses(), defaultEngine.parseStatistics().parses() - parses);
+        Assertions.assertEquals(engine.parseStatistics().nodes(), defaultEngine.parseStatistics().nodes() - nodes);
+    }
+
+    /**
+     * Verifies that a plain value is reported as a single parsed value.
+     */
+    @Test
+    void emitsValues() {
+
+        var sink = new RecordingSink();
+        AnnotationEngine.builder().build().emit("123", new AnnotatedTypeToken<@EraseString String>() {
+        }, sink);
+        Assertions.assertEquals("******", sink.toString());
+    }
+
+    static class Person {
+
+        private @EraseString String name;
+
+        private List<@EraseString String> phones;
+
+        private Map<String, @EraseString String> notes;
+
+        private @Cascade Person friend;
+    }
+
+    /**
+     * Writes the events in a compact notation.
+     */
+    static class RecordingSink implements ParseSink {
+
+        private final StringBuilder out = new StringBuilder();
+
+        @Override
+        public void beginObject(Class<?> type) {
+            separate();
+            out.append('{').append(type.getSimpleName());
+        }
+
+        @Override
+        public void name(String name) {
+            separate();
+            out.append(name).append('=');
+        }
+
+        @Override
+        public void beginArray(int size) {
+            separate();
+            out.append('[').append(size);
+        }
+
+        @Override
+        public void beginMap(int size) {
+            separate();
+            out.append('{').append(size);
+        }
+
+        @Override
+        public void key(Object key) {
+            separate();
+            out.append(key).append(':');
+        }
+
+        @Override
+        public void value(Object value) {
+            separate();
+            out.append(value);
+        }
+
+        @Override
+        public void end() {
+            out.append(out.charAt(lastOpen()) == '[' ? ']' : '}');
+        }
+
+        private void separate() {
+            if (!out.isEmpty() && "=:[{".indexOf(out.charAt(out.length() - 1)) < 0) {
+                out.append(' ');
+            }
+        }
+
+        private int lastOpen() {
+            int depth = 0;
+            for (int i = out.length() - 1; i >= 0; i--) {
+                char c = out.charAt(i);
+                if (c == ']' || c == '}') depth++;
+                if (c == '[' || c == '{') {
+                    if (depth == 0) return i;
+                    depth--;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
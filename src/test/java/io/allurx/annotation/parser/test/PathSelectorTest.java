@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.annotation.parser.type.CopyStrategy;
+import io.allurx.annotation.parser.type.PathSelector;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests parsing with a {@link PathSelector}.
+ *
+ * @author allurx
+ */
+class PathSelectorTest {
+
+    @Test
+    void parsesOnlySelectedBranches() {
+
+        var customer = new Customer("alice", new Contact("alice@example.com", "123456"));
+        var orders = new ArrayList<>(List.of(new Order("4111", "note-1"), new Order("5500", "note-2")));
+        var attributes = new HashMap<>(Map.of("pin", "0000", "tier", "gold"));
+        var account = new Account(customer, orders, attributes);
+
+        var parsed = AnnotationParser.parse(account, new AnnotatedTypeToken<@Cascade Account>() {
+        }, PathSelector.compile("customer.contact.*", "orders[*].card", "attributes{pin}"));
+
+        Assertions.assertEquals("alice", parsed.customer().name());
+        Assertions.assertEquals("******", parsed.customer().contact().email());
+        Assertions.assertEquals("******", parsed.customer().contact().phone());
+        Assertions.assertEquals(List.of("******", "******"), parsed.orders().stream().map(Order::card).toList());
+        Assertions.assertEquals(List.of("note-1", "note-2"), parsed.orders().stream().map(Order::note).toList());
+        Assertions.assertEquals(Map.of("pin", "******", "tier", "gold"), parsed.attributes());
+    }
+
+    @Test
+    void wildcardsAndNamesAreMerged() {
+
+        var contact = new Contact("alice@example.com", "123456");
+        var customer = new Customer("alice", contact);
+
+        var parsed = AnnotationParser.parse(customer, new AnnotatedTypeToken<@Cascade Customer>() {
+        }, PathSelector.compile("*.email", "contact.phone"));
+
+        Assertions.assertEquals("alice", parsed.name());
+        Assertions.assertEquals("******", parsed.contact().email());
+        Assertions.assertEquals("******", parsed.contact().phone());
+    }
+
+    @Test
+    void clonesKeepUnselectedFields() {
+
+        var profile = new Profile("alice@example.com", "123456");
+
+        var parsed = AnnotationParser.parse(profile, new AnnotatedTypeToken<@Cascade(copy = CopyStrategy.CLONE) Profile>() {
+        }, PathSelector.compile("phone"));
+
+        Assertions.assertNotSame(profile, parsed);
+        Assertions.assertEquals("alice@example.com", parsed.email);
+        Assertions.assertEquals("******", parsed.phone);
+        Assertions.assertEquals("123456", profile.phone);
+    }
+
+    @Test
+    void malformedPaths() {
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PathSelector.compile("orders[0]"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PathSelector.compile("attributes{pin"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PathSelector.compile(""));
+    }
+
+    record Account(@Cascade Customer customer,
+                   List<@Cascade Order> orders,
+                   Map<String, @EraseString String> attributes) {
+    }
+
+    record Customer(@EraseString String name, @Cascade Contact contact) {
+    }
+
+    record Contact(@EraseString String email, @EraseString String phone) {
+    }
+
+    record Order(@EraseString String card, @EraseString String note) {
+    }
+
+    static class Profile implements Cloneable {
+
+        @EraseString
+        String email;
+
+        @EraseString
+        String phone;
+
+        Profile(String email, String phone) {
+            this.email = email;
+            this.phone = phone;
+        }
+
+        @Override
+        public Profile clone() {
+            try {
+                return (Profile) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
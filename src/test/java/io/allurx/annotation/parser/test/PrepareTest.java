@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.metadata.CascadeMetadata;
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that {@link AnnotationParser#prepare} resolves metadata and handlers before the first parse.
+ *
+ * @author allurx
+ */
+class PrepareTest {
+
+    /**
+     * Verifies that the handler is created and the metadata is cached by {@code prepare}, not by the first parse.
+     */
+    @Test
+    void test() {
+
+        AnnotationParser.prepare(new AnnotatedTypeToken<@Cascade Account>() {
+        });
+
+        Assertions.assertEquals(1, CountingHandler.CREATED.get());
+        var metadata = CascadeMetadata.of(Holder.class);
+
+        var parsed = AnnotationParser.parse(new Account(new ArrayList<>(List.of(new Holder("123456")))), new AnnotatedTypeToken<@Cascade Account>() {
+        });
+
+        Assertions.assertEquals("counted", parsed.holders().getFirst().name);
+        Assertions.assertEquals(1, CountingHandler.CREATED.get());
+        Assertions.assertSame(metadata, CascadeMetadata.of(Holder.class));
+    }
+
+    record Account(List<@Cascade Holder> holders) {
+    }
+
+    static class Holder {
+
+        @Counted
+        String name;
+
+        Holder() {
+        }
+
+        Holder(String name) {
+            this.name = name;
+        }
+    }
+
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @Parse(handler = CountingHandler.class, annotation = Counted.class)
+    @interface Counted {
+    }
+
+    static class CountingHandler implements AnnotationHandler<String, Counted, String> {
+
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        CountingHandler() {
+            CREATED.incrementAndGet();
+        }
+
+        @Override
+        public String handle(String input, Counted annotation) {
+            return "counted";
+        }
+    }
+}
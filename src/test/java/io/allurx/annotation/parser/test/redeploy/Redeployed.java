@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.annotation.parser.test.redeploy;
+
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.test.annotation.EraseString;
+import io.allurx.annotation.parser.type.Cascade;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Classes that are loaded by a class loader of their own to simulate a redeployed application.
+ *
+ * @author allurx
+ */
+public final class Redeployed {
+
+    private Redeployed() {
+    }
+
+    public record Holder(@Cascade Account account) {
+    }
+
+    public record Account(@Cascade User user, @Cascade Profile profile) {
+    }
+
+    public record User(@EraseString String password) {
+    }
+
+    public static class Profile {
+
+        @EraseString
+        public String email;
+
+        public Profile() {
+        }
+
+        public Profile(String email) {
+            this.email = email;
+        }
+    }
+
+    public record Note(@Reverse String text) {
+    }
+
+    /**
+     * A handler annotation of the redeployed application, on a type of the bootstrap class loader.
+     */
+    @Target({ElementType.TYPE_USE})
+    @Retention(RetentionPolicy.RUNTIME)
+    @Parse(handler = ReverseHandler.class, annotation = Reverse.class)
+    public @interface Reverse {
+    }
+
+    public static class ReverseHandler implements AnnotationHandler<String, Reverse, String> {
+
+        @Override
+        public String handle(String input, Reverse annotation) {
+            return new StringBuilder(input).reverse().toString();
+        }
+    }
+}
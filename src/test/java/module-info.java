@@ -22,10 +22,13 @@ module io.allurx.annotation.parser.test {
     requires org.junit.jupiter.api;
     requires io.allurx.kit.base;
     requires io.allurx.annotation.parser;
+    requires jdk.management;
     exports io.allurx.annotation.parser.test;
     exports io.allurx.annotation.parser.test.annotation;
     exports io.allurx.annotation.parser.test.handler;
+    exports io.allurx.annotation.parser.test.redeploy;
     opens io.allurx.annotation.parser.test;
     opens io.allurx.annotation.parser.test.annotation;
     opens io.allurx.annotation.parser.test.handler;
+    opens io.allurx.annotation.parser.test.redeploy;
 }
\ No newline at end of file